@@ -0,0 +1,55 @@
+package ee.digit25.detector.benchmark;
+
+import ee.digit25.detector.domain.transaction.TransactionValidator;
+import ee.digit25.detector.domain.transaction.external.api.Transaction;
+import ee.digit25.detector.process.BatchSizeControllers;
+import ee.digit25.detector.process.BatchingProperties;
+import ee.digit25.detector.process.ProcessingProperties;
+import ee.digit25.detector.process.Processor;
+import ee.digit25.detector.process.TransactionBatchOptimizer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.List;
+
+/**
+ * Batch level paths: sender grouping in {@link TransactionBatchOptimizer} and a full {@link Processor} cycle
+ * (fetch, validate on warm caches, partition and hand verdicts to the verifier).
+ */
+@State(Scope.Thread)
+public class BatchProcessingBenchmark {
+
+    private static final int BATCH_SIZE = 100;
+
+    private TransactionBatchOptimizer optimizer;
+    private Processor processor;
+    private BenchmarkData.CountingTransactionVerifier verifier;
+    private List<Transaction> batch;
+
+    @Setup
+    public void setUp() {
+        BenchmarkData data = new BenchmarkData(2_000, 500, 10_000);
+        TransactionValidator validator = data.transactionValidator(
+            data.personValidator(), data.deviceValidator(), data.accountValidator());
+        data.warmUp(validator);
+
+        batch = data.transactions.subList(0, BATCH_SIZE);
+        optimizer = new TransactionBatchOptimizer();
+        verifier = new BenchmarkData.CountingTransactionVerifier();
+        processor = new Processor(new BenchmarkData.StubTransactionRequester(batch), validator, verifier,
+            new ProcessingProperties(), new BatchSizeControllers(new BatchingProperties()));
+    }
+
+    @Benchmark
+    public List<List<Transaction>> optimizeBatch() {
+        return optimizer.optimizeBatch(batch);
+    }
+
+    @Benchmark
+    public long verdictBatching() {
+        processor.process();
+        return verifier.verified + verifier.rejected;
+    }
+}
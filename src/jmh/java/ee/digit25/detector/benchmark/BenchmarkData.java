@@ -0,0 +1,235 @@
+package ee.digit25.detector.benchmark;
+
+import ee.digit25.detector.api.BulkheadProperties;
+import ee.digit25.detector.api.Bulkheads;
+import ee.digit25.detector.api.LocalRequestPermits;
+import ee.digit25.detector.common.BackgroundLookups;
+import ee.digit25.detector.config.CacheProperties;
+import ee.digit25.detector.domain.account.AccountValidator;
+import ee.digit25.detector.domain.account.external.AccountRequester;
+import ee.digit25.detector.domain.account.external.api.Account;
+import ee.digit25.detector.domain.device.DeviceValidator;
+import ee.digit25.detector.domain.device.external.DeviceRequester;
+import ee.digit25.detector.domain.device.external.api.Device;
+import ee.digit25.detector.domain.person.PersonValidator;
+import ee.digit25.detector.domain.person.external.PersonRequester;
+import ee.digit25.detector.domain.person.external.api.Person;
+import ee.digit25.detector.domain.transaction.TransactionValidator;
+import ee.digit25.detector.domain.transaction.VerdictMemo;
+import ee.digit25.detector.domain.transaction.VerdictMemoProperties;
+import ee.digit25.detector.domain.transaction.external.TransactionRequester;
+import ee.digit25.detector.domain.transaction.external.TransactionVerifier;
+import ee.digit25.detector.domain.transaction.external.api.Transaction;
+import ee.digit25.detector.monitoring.TracingProperties;
+import ee.digit25.detector.monitoring.TransactionTracer;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.Function;
+
+/**
+ * Deterministic data set and in-memory stand-ins for the external services, shared by all benchmarks.
+ * Requesters and the verifier are subclassed so that no HTTP call is ever made.
+ */
+public class BenchmarkData {
+
+    private static final long SEED = 25L;
+
+    final List<Person> persons = new ArrayList<>();
+    final List<Account> accounts = new ArrayList<>();
+    final List<Device> devices = new ArrayList<>();
+    final List<Transaction> transactions = new ArrayList<>();
+
+    final StubPersonRequester personRequester;
+    final StubAccountRequester accountRequester;
+    final StubDeviceRequester deviceRequester;
+    final TransactionTracer tracer = new TransactionTracer(new TracingProperties());
+    // Cache refreshes run inline on the reading thread against the stubs
+    final BackgroundLookups backgroundLookups =
+        new BackgroundLookups(new Bulkheads(new LocalRequestPermits(45), new BulkheadProperties()), Runnable::run);
+
+    public BenchmarkData(int personCount, int deviceCount, int transactionCount) {
+        Random random = new Random(SEED);
+
+        for (int i = 0; i < personCount; i++) {
+            String personCode = "P" + (10_000_000 + i);
+            persons.add(new Person("First" + i, "Last" + i, personCode,
+                random.nextInt(50) == 0, random.nextInt(30) != 0, random.nextInt(40) == 0));
+            accounts.add(new Account("EE" + (100_000_000 + i), personCode, random.nextInt(50) == 0,
+                BigDecimal.valueOf(random.nextInt(100_000), 2)));
+        }
+
+        for (int i = 0; i < deviceCount; i++) {
+            Device device = new Device();
+            device.setMac(String.format("00:1A:2B:%02X:%02X:%02X", (i >> 16) & 0xFF, (i >> 8) & 0xFF, i & 0xFF));
+            device.setIsBlacklisted(random.nextInt(40) == 0);
+            devices.add(device);
+        }
+
+        LocalDateTime now = LocalDateTime.of(2025, 5, 7, 21, 0);
+        for (int i = 0; i < transactionCount; i++) {
+            int sender = random.nextInt(personCount);
+            int recipient = random.nextInt(personCount);
+            transactions.add(new Transaction(
+                "T" + i,
+                BigDecimal.valueOf(random.nextInt(50_000), 2),
+                persons.get(sender).getPersonCode(),
+                persons.get(recipient).getPersonCode(),
+                accounts.get(sender).getNumber(),
+                accounts.get(recipient).getNumber(),
+                devices.get(random.nextInt(deviceCount)).getMac(),
+                now.plusNanos(i * 1_000_000L),
+                now.plusSeconds(30).plusNanos(i * 1_000_000L)
+            ));
+        }
+
+        personRequester = new StubPersonRequester(index(persons, Person::getPersonCode));
+        accountRequester = new StubAccountRequester(index(accounts, Account::getNumber));
+        deviceRequester = new StubDeviceRequester(index(devices, Device::getMac));
+    }
+
+    PersonValidator personValidator() {
+        return new PersonValidator(personRequester, new CacheProperties(), backgroundLookups);
+    }
+
+    AccountValidator accountValidator() {
+        return new AccountValidator(accountRequester, new CacheProperties(), backgroundLookups);
+    }
+
+    DeviceValidator deviceValidator() {
+        return new DeviceValidator(deviceRequester, new CacheProperties(), backgroundLookups);
+    }
+
+    TransactionValidator transactionValidator(PersonValidator persons, DeviceValidator devices, AccountValidator accounts) {
+        return transactionValidator(persons, devices, accounts, new VerdictMemoProperties());
+    }
+
+    TransactionValidator transactionValidator(PersonValidator persons, DeviceValidator devices, AccountValidator accounts,
+                                              VerdictMemoProperties memoProperties) {
+        return new TransactionValidator(persons, devices, accounts, tracer,
+            new VerdictMemo(memoProperties, persons, accounts, devices));
+    }
+
+    /**
+     * Runs every transaction through the validator once so that all entity caches are populated.
+     */
+    void warmUp(TransactionValidator validator) {
+        for (Transaction transaction : transactions) {
+            validator.isLegitimate(transaction);
+        }
+    }
+
+    private static <T> Map<String, T> index(List<T> values, Function<T, String> key) {
+        Map<String, T> result = new HashMap<>();
+        for (T value : values) {
+            result.put(key.apply(value), value);
+        }
+        return result;
+    }
+
+    static class StubPersonRequester extends PersonRequester {
+
+        private final Map<String, Person> persons;
+
+        StubPersonRequester(Map<String, Person> persons) {
+            super(null, null, null, null, null, null);
+            this.persons = persons;
+        }
+
+        @Override
+        public Person get(String personCode) {
+            return persons.get(personCode);
+        }
+
+        @Override
+        public List<Person> get(List<String> personCodes) {
+            return personCodes.stream().map(persons::get).toList();
+        }
+    }
+
+    static class StubAccountRequester extends AccountRequester {
+
+        private final Map<String, Account> accounts;
+
+        StubAccountRequester(Map<String, Account> accounts) {
+            super(null, null, null, null, null, null);
+            this.accounts = accounts;
+        }
+
+        @Override
+        public Account get(String accountNumber) {
+            return accounts.get(accountNumber);
+        }
+
+        @Override
+        public List<Account> get(List<String> numbers) {
+            return numbers.stream().map(accounts::get).toList();
+        }
+    }
+
+    static class StubDeviceRequester extends DeviceRequester {
+
+        private final Map<String, Device> devices;
+
+        StubDeviceRequester(Map<String, Device> devices) {
+            super(null, null, null, null, null, null);
+            this.devices = devices;
+        }
+
+        @Override
+        public Device get(String mac) {
+            return devices.get(mac);
+        }
+
+        @Override
+        public List<Device> get(List<String> macs) {
+            return macs.stream().map(devices::get).toList();
+        }
+    }
+
+    /**
+     * Hands out the same pre-built batch on every fetch.
+     */
+    static class StubTransactionRequester extends TransactionRequester {
+
+        private final List<Transaction> batch;
+
+        StubTransactionRequester(List<Transaction> batch) {
+            super(null, null, null, null, null, null, null, null);
+            this.batch = batch;
+        }
+
+        @Override
+        public List<Transaction> getUnverified(int amount) {
+            return batch.size() <= amount ? batch : batch.subList(0, amount);
+        }
+    }
+
+    /**
+     * Counts verdicts instead of posting them, so the JIT cannot eliminate the batching work.
+     */
+    static class CountingTransactionVerifier extends TransactionVerifier {
+
+        long verified;
+        long rejected;
+
+        CountingTransactionVerifier() {
+            super(null, null, null, null, null, null, null, null);
+        }
+
+        @Override
+        public void verify(List<Transaction> transactions) {
+            verified += transactions.size();
+        }
+
+        @Override
+        public void reject(List<Transaction> transactions) {
+            rejected += transactions.size();
+        }
+    }
+}
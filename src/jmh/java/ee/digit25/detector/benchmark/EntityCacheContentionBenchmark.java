@@ -0,0 +1,68 @@
+package ee.digit25.detector.benchmark;
+
+import ee.digit25.detector.domain.account.AccountValidator;
+import ee.digit25.detector.domain.device.DeviceValidator;
+import ee.digit25.detector.domain.person.PersonValidator;
+import ee.digit25.detector.domain.transaction.external.api.Transaction;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+
+import java.util.List;
+
+/**
+ * Warm entity caches hammered by as many threads as the task executor may run at once, to expose
+ * contention on the shared cache maps.
+ */
+@Threads(8)
+public class EntityCacheContentionBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Caches {
+
+        PersonValidator persons;
+        AccountValidator accounts;
+        DeviceValidator devices;
+        List<Transaction> transactions;
+
+        @Setup
+        public void setUp() {
+            BenchmarkData data = new BenchmarkData(2_000, 500, 10_000);
+            persons = data.personValidator();
+            accounts = data.accountValidator();
+            devices = data.deviceValidator();
+            data.warmUp(data.transactionValidator(persons, devices, accounts));
+            transactions = data.transactions;
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Cursor {
+
+        int position;
+
+        Transaction next(List<Transaction> transactions) {
+            position = (position + 1) % transactions.size();
+            return transactions.get(position);
+        }
+    }
+
+    @Benchmark
+    public boolean person(Caches caches, Cursor cursor) {
+        return caches.persons.isValid(cursor.next(caches.transactions).getSender());
+    }
+
+    @Benchmark
+    public boolean device(Caches caches, Cursor cursor) {
+        return caches.devices.isValid(cursor.next(caches.transactions).getDeviceMac());
+    }
+
+    @Benchmark
+    public boolean senderAccount(Caches caches, Cursor cursor) {
+        Transaction transaction = cursor.next(caches.transactions);
+        return caches.accounts.isValidSenderAccount(transaction.getSenderAccount(), transaction.getAmount(),
+            transaction.getSender());
+    }
+}
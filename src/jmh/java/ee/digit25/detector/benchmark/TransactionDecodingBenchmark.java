@@ -0,0 +1,44 @@
+package ee.digit25.detector.benchmark;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import ee.digit25.detector.domain.transaction.external.api.Transaction;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Decoding a {@code GET /transactions/unverified} response body into {@link Transaction}s.
+ */
+@State(Scope.Thread)
+public class TransactionDecodingBenchmark {
+
+    private static final TypeReference<List<Transaction>> TRANSACTIONS = new TypeReference<>() {
+    };
+
+    @Param({"50", "100", "1000"})
+    public int batchSize;
+
+    private ObjectMapper mapper;
+    private byte[] body;
+
+    @Setup
+    public void setUp() throws IOException {
+        mapper = new ObjectMapper()
+            .registerModule(new JavaTimeModule())
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+        body = mapper.writeValueAsBytes(new BenchmarkData(2_000, 500, batchSize).transactions);
+    }
+
+    @Benchmark
+    public List<Transaction> decode() throws IOException {
+        return mapper.readValue(body, TRANSACTIONS);
+    }
+}
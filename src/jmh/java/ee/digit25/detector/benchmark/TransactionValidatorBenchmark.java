@@ -0,0 +1,37 @@
+package ee.digit25.detector.benchmark;
+
+import ee.digit25.detector.domain.transaction.TransactionValidator;
+import ee.digit25.detector.domain.transaction.external.api.Transaction;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.List;
+
+/**
+ * {@link TransactionValidator#isLegitimate} with every entity already cached, i.e. the cost we pay per
+ * transaction once the warm-up is over.
+ */
+@State(Scope.Thread)
+public class TransactionValidatorBenchmark {
+
+    private TransactionValidator validator;
+    private List<Transaction> transactions;
+    private int cursor;
+
+    @Setup
+    public void setUp() {
+        BenchmarkData data = new BenchmarkData(2_000, 500, 10_000);
+        validator = data.transactionValidator(data.personValidator(), data.deviceValidator(), data.accountValidator());
+        data.warmUp(validator);
+        transactions = data.transactions;
+    }
+
+    @Benchmark
+    public boolean isLegitimateWarm() {
+        Transaction transaction = transactions.get(cursor);
+        cursor = (cursor + 1) % transactions.size();
+        return validator.isLegitimate(transaction);
+    }
+}
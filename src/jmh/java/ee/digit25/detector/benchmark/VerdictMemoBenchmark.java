@@ -0,0 +1,59 @@
+package ee.digit25.detector.benchmark;
+
+import ee.digit25.detector.domain.transaction.TransactionValidator;
+import ee.digit25.detector.domain.transaction.VerdictMemo;
+import ee.digit25.detector.domain.transaction.VerdictMemoProperties;
+import ee.digit25.detector.domain.transaction.external.api.Transaction;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * A transaction answered from the {@link VerdictMemo} against one validated check by check, both with every
+ * entity cached. The memo TTL is raised above the length of the run, so every {@link #memoHit()} is a hit.
+ */
+@State(Scope.Thread)
+public class VerdictMemoBenchmark {
+
+    private TransactionValidator memoised;
+    private TransactionValidator unmemoised;
+    private List<Transaction> transactions;
+    private int cursor;
+
+    @Setup
+    public void setUp() {
+        BenchmarkData data = new BenchmarkData(2_000, 500, 10_000);
+        VerdictMemoProperties memoProperties = new VerdictMemoProperties();
+        memoProperties.setTtl(Duration.ofHours(1));
+        VerdictMemoProperties disabled = new VerdictMemoProperties();
+        disabled.setEnabled(false);
+
+        memoised = data.transactionValidator(data.personValidator(), data.deviceValidator(), data.accountValidator(),
+            memoProperties);
+        unmemoised = data.transactionValidator(data.personValidator(), data.deviceValidator(), data.accountValidator(),
+            disabled);
+        data.warmUp(memoised);
+        data.warmUp(unmemoised);
+        transactions = data.transactions;
+    }
+
+    @Benchmark
+    public boolean memoHit() {
+        return memoised.isLegitimate(next());
+    }
+
+    @Benchmark
+    public boolean warmValidation() {
+        return unmemoised.isLegitimate(next());
+    }
+
+    private Transaction next() {
+        Transaction transaction = transactions.get(cursor);
+        cursor = (cursor + 1) % transactions.size();
+        return transaction;
+    }
+}
@@ -0,0 +1,109 @@
+package ee.digit25.detector.loadtest;
+
+import ee.digit25.detector.domain.account.external.api.Account;
+import ee.digit25.detector.domain.device.external.api.Device;
+import ee.digit25.detector.domain.person.external.api.Person;
+import ee.digit25.detector.domain.transaction.external.api.Transaction;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Seeded persons, accounts and devices plus a generator of transactions over them. Every generated
+ * transaction carries the verdict the real detector rules would give it, so decisions can be scored.
+ */
+class FakeDataSet {
+
+    private final Random random;
+    private final int deadlineSeconds;
+    private long sequence;
+
+    final List<Person> persons = new ArrayList<>();
+    final List<Account> accounts = new ArrayList<>();
+    final List<Device> devices = new ArrayList<>();
+    final Map<String, Person> personsByCode = new HashMap<>();
+    final Map<String, Account> accountsByNumber = new HashMap<>();
+    final Map<String, Device> devicesByMac = new HashMap<>();
+
+    FakeDataSet(FakeServiceSettings settings) {
+        this.random = new Random(settings.seed);
+        this.deadlineSeconds = settings.deadlineSeconds;
+
+        for (int i = 0; i < settings.persons; i++) {
+            String personCode = String.valueOf(30_000_000_000L + i);
+            Person person = new Person("First" + i, "Last" + i, personCode,
+                random.nextInt(50) == 0, random.nextInt(25) != 0, random.nextInt(40) == 0);
+            persons.add(person);
+            personsByCode.put(personCode, person);
+
+            Account account = new Account("EE" + (1_000_000_000L + i), personCode, random.nextInt(40) == 0,
+                BigDecimal.valueOf(random.nextInt(200_000), 2));
+            accounts.add(account);
+            accountsByNumber.put(account.getNumber(), account);
+        }
+
+        for (int i = 0; i < settings.devices; i++) {
+            Device device = new Device();
+            device.setMac(String.format("02:00:%02X:%02X:%02X:%02X",
+                (i >> 24) & 0xFF, (i >> 16) & 0xFF, (i >> 8) & 0xFF, i & 0xFF));
+            device.setIsBlacklisted(random.nextInt(40) == 0);
+            devices.add(device);
+            devicesByMac.put(device.getMac(), device);
+        }
+    }
+
+    synchronized GeneratedTransaction next(LocalDateTime now) {
+        int sender = random.nextInt(persons.size());
+        int recipient = random.nextInt(persons.size());
+        // Most transactions use the parties' own accounts, a few are deliberately mismatched
+        Account senderAccount = accounts.get(random.nextInt(20) == 0 ? random.nextInt(accounts.size()) : sender);
+        Account recipientAccount = accounts.get(random.nextInt(20) == 0 ? random.nextInt(accounts.size()) : recipient);
+
+        Transaction transaction = new Transaction(
+            "lt-" + (++sequence),
+            BigDecimal.valueOf(random.nextInt(100_000), 2),
+            persons.get(sender).getPersonCode(),
+            persons.get(recipient).getPersonCode(),
+            senderAccount.getNumber(),
+            recipientAccount.getNumber(),
+            devices.get(random.nextInt(devices.size())).getMac(),
+            now,
+            now.plusSeconds(deadlineSeconds)
+        );
+
+        return new GeneratedTransaction(transaction, isLegitimate(transaction));
+    }
+
+    <T> List<T> page(List<T> values, int pageNumber, int pageSize) {
+        int from = Math.min(values.size(), Math.max(0, pageNumber) * pageSize);
+        int to = Math.min(values.size(), from + pageSize);
+        return values.subList(from, to);
+    }
+
+    private boolean isLegitimate(Transaction transaction) {
+        Device device = devicesByMac.get(transaction.getDeviceMac());
+        Account senderAccount = accountsByNumber.get(transaction.getSenderAccount());
+        Account recipientAccount = accountsByNumber.get(transaction.getRecipientAccount());
+
+        return !device.getIsBlacklisted()
+            && isValidPerson(personsByCode.get(transaction.getSender()))
+            && isValidPerson(personsByCode.get(transaction.getRecipient()))
+            && !senderAccount.getClosed()
+            && senderAccount.getOwner().equals(transaction.getSender())
+            && senderAccount.getBalance().compareTo(transaction.getAmount()) >= 0
+            && !recipientAccount.getClosed()
+            && recipientAccount.getOwner().equals(transaction.getRecipient());
+    }
+
+    private static boolean isValidPerson(Person person) {
+        return !person.getWarrantIssued() && !person.getBlacklisted() && person.getHasContract();
+    }
+
+    record GeneratedTransaction(Transaction transaction, boolean legitimate) {
+    }
+}
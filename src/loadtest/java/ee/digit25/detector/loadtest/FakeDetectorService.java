@@ -0,0 +1,305 @@
+package ee.digit25.detector.loadtest;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import ee.digit25.detector.domain.transaction.external.api.Transaction;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Embeddable stand-in for the sandbox service. Implements the endpoints behind {@code TransactionsApi},
+ * {@code AccountApi}, {@code PersonApi} and {@code DeviceApi}, enforces the per-token concurrent request and
+ * pending transaction limits, and injects configurable latency and errors. Transactions left undecided for
+ * {@code pendingExpirySeconds} are dropped, so verdicts lost by the detector do not hold the pending limit forever.
+ */
+@Slf4j
+public class FakeDetectorService implements AutoCloseable {
+
+    private static final TypeReference<List<String>> STRING_LIST = new TypeReference<>() {
+    };
+
+    private final FakeServiceSettings settings;
+    private final FakeDataSet data;
+    private final FakeServiceStats stats = new FakeServiceStats();
+    private final ObjectMapper mapper = new ObjectMapper()
+        .registerModule(new JavaTimeModule())
+        .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final Map<String, Pending> pending = new ConcurrentHashMap<>();
+    private final List<String> recentlyDelivered = new ArrayList<>();
+    private final ArrayDeque<Pending> deliveryOrder = new ArrayDeque<>();
+    private final AtomicLong requestSequence = new AtomicLong();
+    private final Random deliveryRandom;
+
+    private HttpServer server;
+    private ExecutorService executor;
+
+    public FakeDetectorService(FakeServiceSettings settings) {
+        this.settings = settings;
+        this.data = new FakeDataSet(settings);
+        this.deliveryRandom = new Random(settings.seed ^ 0x5DEECE66DL);
+    }
+
+    public FakeDetectorService start() throws IOException {
+        executor = Executors.newCachedThreadPool();
+        server = HttpServer.create(new InetSocketAddress("localhost", settings.port), 0);
+        server.createContext("/", this::handle);
+        server.setExecutor(executor);
+        server.start();
+        log.info("Fake detector service listening on {} ({})", getBaseUrl(), settings);
+        return this;
+    }
+
+    public String getBaseUrl() {
+        return "http://localhost:" + server.getAddress().getPort();
+    }
+
+    public FakeServiceStats getStats() {
+        return stats;
+    }
+
+    public int getPendingCount() {
+        return pending.size();
+    }
+
+    @Override
+    public void close() {
+        if (server != null) {
+            server.stop(0);
+        }
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        stats.requests.incrementAndGet();
+
+        if (inFlight.incrementAndGet() > settings.maxConcurrentRequests) {
+            inFlight.decrementAndGet();
+            stats.throttled.incrementAndGet();
+            respond(exchange, 429, null);
+            return;
+        }
+
+        try {
+            // Latency and errors are drawn from the seed and the request's arrival number, not from whichever
+            // pool thread serves it, so the n-th request of every run gets the same draws
+            Random random = new Random(mix(settings.seed, requestSequence.incrementAndGet()));
+            long latency = settings.latency.sampleMillis(random);
+            if (latency > 0) {
+                TimeUnit.MILLISECONDS.sleep(latency);
+            }
+
+            if (random.nextDouble() < settings.errorRate) {
+                stats.injectedErrors.incrementAndGet();
+                respond(exchange, 500, null);
+                return;
+            }
+
+            route(exchange);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            respond(exchange, 503, null);
+        } catch (RuntimeException e) {
+            log.error("Fake service failed to handle {} {}", exchange.getRequestMethod(), exchange.getRequestURI(), e);
+            respond(exchange, 500, null);
+        } finally {
+            inFlight.decrementAndGet();
+        }
+    }
+
+    private void route(HttpExchange exchange) throws IOException {
+        String method = exchange.getRequestMethod();
+        String[] path = exchange.getRequestURI().getPath().substring(1).split("/");
+        Map<String, String> query = query(exchange);
+
+        switch (path[0]) {
+            case "transactions" -> {
+                if (path.length == 2 && path[1].equals("unverified") && method.equals("GET")) {
+                    respond(exchange, 200, unverified(Integer.parseInt(query.getOrDefault("amount", "1"))));
+                } else if (path.length == 2 && method.equals("POST")) {
+                    List<String> ids = mapper.readValue(body(exchange), STRING_LIST);
+                    ids.forEach(id -> decide(id, path[1].equals("verify")));
+                    respond(exchange, 200, null);
+                } else if (path.length == 3 && method.equals("POST")) {
+                    decide(path[1], path[2].equals("verify"));
+                    respond(exchange, 200, null);
+                } else {
+                    respond(exchange, 404, null);
+                }
+            }
+            case "accounts" -> entities(exchange, path, query, "by-numbers", data.accountsByNumber, data.accounts);
+            case "persons" -> entities(exchange, path, query, "by-person-codes", data.personsByCode, data.persons);
+            case "devices" -> entities(exchange, path, query, "by-macs", data.devicesByMac, data.devices);
+            default -> respond(exchange, 404, null);
+        }
+    }
+
+    private <T> void entities(HttpExchange exchange, String[] path, Map<String, String> query, String bulkPath,
+                              Map<String, T> byKey, List<T> all) throws IOException {
+        if (path.length == 1) {
+            respond(exchange, 200, data.page(all,
+                Integer.parseInt(query.getOrDefault("pageNumber", "0")),
+                Integer.parseInt(query.getOrDefault("pageSize", "100"))));
+        } else if (path[1].equals(bulkPath) && exchange.getRequestMethod().equals("POST")) {
+            respond(exchange, 200, mapper.readValue(body(exchange), STRING_LIST).stream()
+                .map(byKey::get)
+                .filter(Objects::nonNull)
+                .toList());
+        } else {
+            T entity = byKey.get(URLDecoder.decode(path[1], StandardCharsets.UTF_8));
+            respond(exchange, entity == null ? 404 : 200, entity);
+        }
+    }
+
+    private List<Transaction> unverified(int amount) {
+        long now = System.nanoTime();
+        List<Transaction> batch = new ArrayList<>(amount);
+        // Redelivery draws happen under the lock, so one seeded generator gives the same sequence every run
+        Random random = deliveryRandom;
+
+        synchronized (recentlyDelivered) {
+            expire(now);
+            int available = Math.max(0, settings.maxPendingTransactions - pending.size());
+            for (int i = 0; i < amount; i++) {
+                if (!recentlyDelivered.isEmpty() && random.nextDouble() < settings.redeliveryRate) {
+                    Pending again = pending.get(recentlyDelivered.get(random.nextInt(recentlyDelivered.size())));
+                    if (again != null) {
+                        stats.redelivered.incrementAndGet();
+                        batch.add(again.transaction);
+                        continue;
+                    }
+                }
+
+                if (available-- <= 0) {
+                    continue;
+                }
+
+                FakeDataSet.GeneratedTransaction generated = data.next(LocalDateTime.now());
+                Pending delivered = new Pending(generated.transaction(), generated.legitimate(), now);
+                pending.put(generated.transaction().getId(), delivered);
+                if (settings.pendingExpirySeconds > 0) {
+                    deliveryOrder.add(delivered);
+                }
+                batch.add(generated.transaction());
+                recentlyDelivered.add(generated.transaction().getId());
+                if (recentlyDelivered.size() > 1_000) {
+                    recentlyDelivered.remove(0);
+                }
+            }
+        }
+
+        stats.delivered.addAndGet(batch.size());
+        return batch;
+    }
+
+    /**
+     * Drops transactions delivered more than {@code pendingExpirySeconds} ago. Deliveries are appended under the
+     * same lock in time order, so only the head of the queue has to be looked at; entries decided in the
+     * meantime are no longer in {@link #pending} and are just skipped.
+     */
+    private void expire(long now) {
+        if (settings.pendingExpirySeconds <= 0) {
+            return;
+        }
+
+        long expiredBefore = now - TimeUnit.SECONDS.toNanos(settings.pendingExpirySeconds);
+        while (!deliveryOrder.isEmpty() && deliveryOrder.peekFirst().deliveredAt - expiredBefore < 0) {
+            Pending oldest = deliveryOrder.pollFirst();
+            if (pending.remove(oldest.transaction.getId(), oldest)) {
+                stats.expired.incrementAndGet();
+            }
+        }
+    }
+
+    private void decide(String id, boolean verified) {
+        Pending decided = pending.remove(id);
+        if (decided == null) {
+            stats.unknownVerdicts.incrementAndGet();
+            return;
+        }
+
+        stats.recordDecision(
+            TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - decided.deliveredAt),
+            decided.legitimate == verified,
+            LocalDateTime.now().isAfter(decided.transaction.getDeadline()));
+    }
+
+    private void respond(HttpExchange exchange, int status, Object body) throws IOException {
+        if (body == null) {
+            exchange.sendResponseHeaders(status, -1);
+            exchange.close();
+            return;
+        }
+
+        byte[] bytes = mapper.writeValueAsBytes(body);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private static byte[] body(HttpExchange exchange) throws IOException {
+        try (InputStream in = exchange.getRequestBody()) {
+            return in.readAllBytes();
+        }
+    }
+
+    private static Map<String, String> query(HttpExchange exchange) {
+        Map<String, String> result = new HashMap<>();
+        String raw = exchange.getRequestURI().getRawQuery();
+        if (raw == null) {
+            return result;
+        }
+
+        for (String pair : raw.split("&")) {
+            int separator = pair.indexOf('=');
+            if (separator > 0) {
+                result.put(URLDecoder.decode(pair.substring(0, separator), StandardCharsets.UTF_8),
+                    URLDecoder.decode(pair.substring(separator + 1), StandardCharsets.UTF_8));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Spreads the seed and a sequence number over all 64 bits (the MurmurHash3 finalizer), because
+     * {@link Random} seeded with neighbouring values starts with strongly correlated draws.
+     */
+    private static long mix(long seed, long sequence) {
+        long mixed = seed * 0x9E3779B97F4A7C15L + sequence;
+        mixed = (mixed ^ (mixed >>> 33)) * 0xFF51AFD7ED558CCDL;
+        mixed = (mixed ^ (mixed >>> 33)) * 0xC4CEB93FE1A85EC3L;
+        return mixed ^ (mixed >>> 33);
+    }
+
+    private record Pending(Transaction transaction, boolean legitimate, long deliveredAt) {
+    }
+}
@@ -0,0 +1,57 @@
+package ee.digit25.detector.loadtest;
+
+import java.util.Map;
+
+/**
+ * Knobs of the fake transaction/entity service. Defaults mirror the limits of the sandbox service.
+ */
+public class FakeServiceSettings {
+
+    int port = 0;
+    int maxConcurrentRequests = 50;
+    int maxPendingTransactions = 10_000;
+    LatencyDistribution latency = LatencyDistribution.parse("lognormal:15,80");
+    double errorRate = 0.0;
+    double redeliveryRate = 0.0;
+    int persons = 5_000;
+    int devices = 2_000;
+    int deadlineSeconds = 30;
+    int pendingExpirySeconds = 60;
+    long seed = 25L;
+
+    /**
+     * Reads settings from {@code --service.*} style entries, e.g. {@code service.latency=uniform:5-50}.
+     */
+    static FakeServiceSettings from(Map<String, String> options) {
+        FakeServiceSettings settings = new FakeServiceSettings();
+        settings.port = Integer.parseInt(options.getOrDefault("service.port", String.valueOf(settings.port)));
+        settings.maxConcurrentRequests = Integer.parseInt(options.getOrDefault("service.max-concurrent-requests",
+            String.valueOf(settings.maxConcurrentRequests)));
+        settings.maxPendingTransactions = Integer.parseInt(options.getOrDefault("service.max-pending-transactions",
+            String.valueOf(settings.maxPendingTransactions)));
+        if (options.containsKey("service.latency")) {
+            settings.latency = LatencyDistribution.parse(options.get("service.latency"));
+        }
+        settings.errorRate = Double.parseDouble(options.getOrDefault("service.error-rate",
+            String.valueOf(settings.errorRate)));
+        settings.redeliveryRate = Double.parseDouble(options.getOrDefault("service.redelivery-rate",
+            String.valueOf(settings.redeliveryRate)));
+        settings.persons = Integer.parseInt(options.getOrDefault("service.persons", String.valueOf(settings.persons)));
+        settings.devices = Integer.parseInt(options.getOrDefault("service.devices", String.valueOf(settings.devices)));
+        settings.deadlineSeconds = Integer.parseInt(options.getOrDefault("service.deadline-seconds",
+            String.valueOf(settings.deadlineSeconds)));
+        settings.pendingExpirySeconds = Integer.parseInt(options.getOrDefault("service.pending-expiry-seconds",
+            String.valueOf(settings.pendingExpirySeconds)));
+        settings.seed = Long.parseLong(options.getOrDefault("service.seed", String.valueOf(settings.seed)));
+        return settings;
+    }
+
+    @Override
+    public String toString() {
+        return "port=" + port + ", maxConcurrentRequests=" + maxConcurrentRequests
+            + ", maxPendingTransactions=" + maxPendingTransactions + ", errorRate=" + errorRate
+            + ", redeliveryRate=" + redeliveryRate + ", persons=" + persons + ", devices=" + devices
+            + ", deadlineSeconds=" + deadlineSeconds + ", pendingExpirySeconds=" + pendingExpirySeconds
+            + ", seed=" + seed;
+    }
+}
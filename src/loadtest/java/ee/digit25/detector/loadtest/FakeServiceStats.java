@@ -0,0 +1,126 @@
+package ee.digit25.detector.loadtest;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counters collected by the fake service. Decision latency is kept in 1 ms buckets, which is plenty for
+ * p50/p99 reporting and never allocates on the request path.
+ */
+public class FakeServiceStats {
+
+    private static final int MAX_LATENCY_MILLIS = 120_000;
+
+    final AtomicLong requests = new AtomicLong();
+    final AtomicLong throttled = new AtomicLong();
+    final AtomicLong injectedErrors = new AtomicLong();
+    final AtomicLong delivered = new AtomicLong();
+    final AtomicLong redelivered = new AtomicLong();
+    final AtomicLong decided = new AtomicLong();
+    final AtomicLong correct = new AtomicLong();
+    final AtomicLong unknownVerdicts = new AtomicLong();
+    final AtomicLong missedDeadlines = new AtomicLong();
+    final AtomicLong expired = new AtomicLong();
+    private final AtomicLongArray decisionLatency = new AtomicLongArray(MAX_LATENCY_MILLIS + 1);
+
+    void recordDecision(long latencyMillis, boolean correctVerdict, boolean missedDeadline) {
+        decided.incrementAndGet();
+        if (correctVerdict) {
+            correct.incrementAndGet();
+        }
+        if (missedDeadline) {
+            missedDeadlines.incrementAndGet();
+        }
+        decisionLatency.incrementAndGet((int) Math.min(Math.max(latencyMillis, 0), MAX_LATENCY_MILLIS));
+    }
+
+    /**
+     * @return decision latency in milliseconds at the given quantile (0..1), or 0 without decisions
+     */
+    public long latencyPercentile(double quantile) {
+        return snapshot().latencyPercentile(quantile);
+    }
+
+    /**
+     * Copies all counters and the latency histogram, so a measurement window can be reported as the
+     * difference of two snapshots.
+     */
+    public Snapshot snapshot() {
+        long[] latency = new long[decisionLatency.length()];
+        for (int millis = 0; millis < latency.length; millis++) {
+            latency[millis] = decisionLatency.get(millis);
+        }
+        return new Snapshot(requests.get(), throttled.get(), injectedErrors.get(), delivered.get(),
+            redelivered.get(), decided.get(), correct.get(), unknownVerdicts.get(), missedDeadlines.get(), expired.get(),
+            latency);
+    }
+
+    public long getDecided() {
+        return decided.get();
+    }
+
+    public long getRequests() {
+        return requests.get();
+    }
+
+    /**
+     * @return share of requests answered with an injected error or a concurrency-limit rejection
+     */
+    public double errorRate() {
+        long total = requests.get();
+        return total == 0 ? 0 : (double) (throttled.get() + injectedErrors.get()) / total;
+    }
+
+    public double accuracy() {
+        long total = decided.get();
+        return total == 0 ? 0 : (double) correct.get() / total;
+    }
+
+    public record Snapshot(long requests, long throttled, long injectedErrors, long delivered, long redelivered,
+                           long decided, long correct, long unknownVerdicts, long missedDeadlines, long expired,
+                           long[] decisionLatency) {
+
+        /**
+         * @return what was counted between the earlier snapshot and this one
+         */
+        public Snapshot since(Snapshot earlier) {
+            long[] latency = new long[decisionLatency.length];
+            for (int millis = 0; millis < latency.length; millis++) {
+                latency[millis] = decisionLatency[millis] - earlier.decisionLatency[millis];
+            }
+            return new Snapshot(requests - earlier.requests, throttled - earlier.throttled,
+                injectedErrors - earlier.injectedErrors, delivered - earlier.delivered,
+                redelivered - earlier.redelivered, decided - earlier.decided, correct - earlier.correct,
+                unknownVerdicts - earlier.unknownVerdicts, missedDeadlines - earlier.missedDeadlines,
+                expired - earlier.expired, latency);
+        }
+
+        public long latencyPercentile(double quantile) {
+            long total = 0;
+            for (long count : decisionLatency) {
+                total += count;
+            }
+            if (total == 0) {
+                return 0;
+            }
+
+            long rank = (long) Math.ceil(quantile * total);
+            long seen = 0;
+            for (int millis = 0; millis < decisionLatency.length; millis++) {
+                seen += decisionLatency[millis];
+                if (seen >= rank) {
+                    return millis;
+                }
+            }
+            return MAX_LATENCY_MILLIS;
+        }
+
+        public long errors() {
+            return throttled + injectedErrors;
+        }
+
+        public double accuracy() {
+            return decided == 0 ? 0 : (double) correct / decided;
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package ee.digit25.detector.loadtest;
+
+import java.util.Random;
+
+/**
+ * Response latency model of the fake service.
+ * <p>
+ * Parsed from a short spec:
+ * <ul>
+ *     <li>{@code fixed:20} - always 20 ms</li>
+ *     <li>{@code uniform:5-50} - uniformly between 5 and 50 ms</li>
+ *     <li>{@code lognormal:20,120} - log-normal with a median of 20 ms and a p99 of 120 ms</li>
+ * </ul>
+ */
+public abstract class LatencyDistribution {
+
+    private static final double Z_99 = 2.326;
+
+    public abstract long sampleMillis(Random random);
+
+    public static LatencyDistribution parse(String spec) {
+        String[] parts = spec.split(":", 2);
+        String kind = parts[0].trim();
+        String value = parts.length > 1 ? parts[1].trim() : "0";
+
+        switch (kind) {
+            case "fixed": {
+                long millis = Long.parseLong(value);
+                return fixed(millis);
+            }
+            case "uniform": {
+                String[] bounds = value.split("-");
+                long min = Long.parseLong(bounds[0].trim());
+                long max = Long.parseLong(bounds[1].trim());
+                return new LatencyDistribution() {
+                    @Override
+                    public long sampleMillis(Random random) {
+                        return min + (long) (random.nextDouble() * (max - min));
+                    }
+                };
+            }
+            case "lognormal": {
+                String[] params = value.split(",");
+                double median = Double.parseDouble(params[0].trim());
+                double p99 = Double.parseDouble(params[1].trim());
+                double mu = Math.log(median);
+                double sigma = Math.log(p99 / median) / Z_99;
+                return new LatencyDistribution() {
+                    @Override
+                    public long sampleMillis(Random random) {
+                        return Math.round(Math.exp(mu + sigma * random.nextGaussian()));
+                    }
+                };
+            }
+            default:
+                throw new IllegalArgumentException("Unknown latency distribution: " + spec);
+        }
+    }
+
+    public static LatencyDistribution fixed(long millis) {
+        return new LatencyDistribution() {
+            @Override
+            public long sampleMillis(Random random) {
+                return millis;
+            }
+        };
+    }
+}
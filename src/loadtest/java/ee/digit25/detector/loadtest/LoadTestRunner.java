@@ -0,0 +1,102 @@
+package ee.digit25.detector.loadtest;
+
+import ee.digit25.detector.DetectorApplication;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Boots the detector against a {@link FakeDetectorService} for a fixed window and reports decided
+ * transactions per second, decision latency and the error rate.
+ * <p>
+ * Arguments starting with {@code --service.} configure the fake service (see {@link FakeServiceSettings}),
+ * {@code --window-seconds} and {@code --warmup-seconds} the measurement window. Everything else is passed to
+ * the detector unchanged, e.g. {@code --logging.level.ee.digit25.detector=WARN}.
+ * <p>
+ * {@code ./gradlew loadTest --args='--window-seconds=60 --service.latency=lognormal:20,150'}
+ */
+@Slf4j
+public class LoadTestRunner {
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        List<String> detectorArgs = new ArrayList<>();
+        for (String arg : args) {
+            if (arg.startsWith("--service.") || arg.startsWith("--window-seconds=") || arg.startsWith("--warmup-seconds=")) {
+                String[] pair = arg.substring(2).split("=", 2);
+                options.put(pair[0], pair.length > 1 ? pair[1] : "");
+            } else {
+                detectorArgs.add(arg);
+            }
+        }
+
+        long windowSeconds = Long.parseLong(options.getOrDefault("window-seconds", "180"));
+        long warmupSeconds = Long.parseLong(options.getOrDefault("warmup-seconds", "0"));
+
+        try (FakeDetectorService service = new FakeDetectorService(FakeServiceSettings.from(options)).start()) {
+            detectorArgs.add("--default-base-url=" + service.getBaseUrl());
+            detectorArgs.add("--detector.token=load-test");
+
+            long bootStarted = System.nanoTime();
+            ConfigurableApplicationContext detector = new SpringApplicationBuilder(DetectorApplication.class)
+                .run(detectorArgs.toArray(String[]::new));
+            long bootMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - bootStarted);
+
+            try {
+                TimeUnit.SECONDS.sleep(warmupSeconds);
+                FakeServiceStats.Snapshot start = service.getStats().snapshot();
+                long windowStarted = System.nanoTime();
+
+                TimeUnit.SECONDS.sleep(windowSeconds);
+
+                FakeServiceStats.Snapshot window = service.getStats().snapshot().since(start);
+                double elapsedSeconds = (System.nanoTime() - windowStarted) / 1e9;
+                report(service, window, elapsedSeconds, bootMillis);
+            } finally {
+                detector.close();
+            }
+        }
+    }
+
+    private static void report(FakeDetectorService service, FakeServiceStats.Snapshot window, double elapsedSeconds,
+                               long bootMillis) {
+        long decided = window.decided();
+        long requests = window.requests();
+
+        log.info("""
+            Load test results:
+            - Window: {} s (detector started in {} ms)
+            - Decided transactions: {} ({} per second)
+            - Decision latency p50 / p99: {} ms / {} ms
+            - Requests: {} (error rate {} %, of which throttled {})
+            - Verdict accuracy: {} %
+            - Missed deadlines: {}
+            - Unknown or duplicate verdicts: {}
+            - Redelivered transactions: {}
+            - Expired without a verdict: {}
+            - Still pending at the end: {}
+            """,
+            String.format("%.1f", elapsedSeconds),
+            bootMillis,
+            decided,
+            String.format("%.1f", decided / elapsedSeconds),
+            window.latencyPercentile(0.50),
+            window.latencyPercentile(0.99),
+            requests,
+            String.format("%.2f", requests == 0 ? 0 : window.errors() * 100.0 / requests),
+            window.throttled(),
+            String.format("%.2f", window.accuracy() * 100),
+            window.missedDeadlines(),
+            window.unknownVerdicts(),
+            window.redelivered(),
+            window.expired(),
+            service.getPendingCount()
+        );
+    }
+}
@@ -0,0 +1,134 @@
+package ee.digit25.detector.loadtest;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Measures the time from JVM start to the first acknowledged verdict of the packaged detector, started as a
+ * child JVM once plainly and once with the AOT-processed context and the CDS archive. Every start gets a fresh
+ * {@link FakeDetectorService} without added latency, so no run inherits pending transactions or warm page
+ * caches of the service from the one before, and the variant that goes first alternates between rounds.
+ * Reports the median of several runs of each.
+ * <p>
+ * Arguments: {@code <exploded boot jar> <CDS archive> [runs] [timeout seconds]}, passed by
+ * {@code ./gradlew compareStartup}.
+ */
+@Slf4j
+public class StartupComparison {
+
+    private static final Pattern FIRST_VERDICT = Pattern.compile("First verdict acknowledged (\\d+) ms after JVM start");
+    private static final String MAIN_CLASS = "ee.digit25.detector.DetectorApplication";
+
+    public static void main(String[] args) throws Exception {
+        String jar = args[0];
+        String archive = args[1];
+        int runs = args.length > 2 ? Integer.parseInt(args[2]) : 3;
+        Duration timeout = Duration.ofSeconds(args.length > 3 ? Long.parseLong(args[3]) : 120);
+        String java = ProcessHandle.current().info().command().orElse("java");
+
+        List<String> plain = List.of(java, "-cp", jar, MAIN_CLASS);
+        List<String> fast = List.of(java, "-XX:SharedArchiveFile=" + archive, "-Dspring.aot.enabled=true",
+            "-cp", jar, MAIN_CLASS);
+
+        long[] plainMillis = new long[runs];
+        long[] fastMillis = new long[runs];
+        for (int run = 0; run < runs; run++) {
+            if (run % 2 == 0) {
+                plainMillis[run] = run("plain", plain, run, timeout);
+                fastMillis[run] = run("AOT + CDS", fast, run, timeout);
+            } else {
+                fastMillis[run] = run("AOT + CDS", fast, run, timeout);
+                plainMillis[run] = run("plain", plain, run, timeout);
+            }
+        }
+
+        long plainMedian = median(plainMillis);
+        long fastMedian = median(fastMillis);
+        log.info("""
+            Startup comparison (median of {} runs, JVM start to first acknowledged verdict):
+            - Plain: {} ms
+            - AOT + CDS: {} ms ({} % less)
+            """,
+            runs, plainMedian, fastMedian,
+            String.format("%.1f", (plainMedian - fastMedian) * 100.0 / plainMedian));
+    }
+
+    private static long run(String label, List<String> command, int run, Duration timeout)
+        throws IOException, InterruptedException {
+        FakeServiceSettings settings = new FakeServiceSettings();
+        settings.latency = LatencyDistribution.fixed(0);
+
+        try (FakeDetectorService service = new FakeDetectorService(settings).start()) {
+            List<String> detector = new ArrayList<>(command);
+            detector.add("--default-base-url=" + service.getBaseUrl());
+            detector.add("--detector.token=startup-comparison");
+
+            long millis = firstVerdictMillis(detector, timeout);
+            log.info("Startup run {} ({}): first verdict after {} ms", run + 1, label, millis);
+            return millis;
+        }
+    }
+
+    private static long median(long[] millis) {
+        long[] sorted = millis.clone();
+        Arrays.sort(sorted);
+        return sorted[sorted.length / 2];
+    }
+
+    /**
+     * Reads the detector output on another thread, so a detector that hangs before its first verdict fails the
+     * run after the timeout instead of blocking on the next line forever.
+     */
+    private static long firstVerdictMillis(List<String> command, Duration timeout)
+        throws IOException, InterruptedException {
+        Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+        CompletableFuture<Long> firstVerdict = CompletableFuture.supplyAsync(() -> awaitFirstVerdict(process));
+        try {
+            return firstVerdict.get(timeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            throw new IllegalStateException("Detector made no verdict within " + timeout.toSeconds() + " s");
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof RuntimeException cause ? cause : new IllegalStateException(e.getCause());
+        } finally {
+            // Closes the output stream too, which ends the reading thread
+            process.destroy();
+            if (!process.waitFor(10, TimeUnit.SECONDS)) {
+                process.destroyForcibly();
+            }
+        }
+    }
+
+    private static long awaitFirstVerdict(Process process) {
+        try (BufferedReader output = new BufferedReader(
+            new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = output.readLine()) != null) {
+                Matcher matcher = FIRST_VERDICT.matcher(line);
+                if (matcher.find()) {
+                    return Long.parseLong(matcher.group(1));
+                }
+            }
+            throw new IllegalStateException("Detector exited with " + process.waitFor() + " before its first verdict");
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while reading the detector output", e);
+        }
+    }
+}
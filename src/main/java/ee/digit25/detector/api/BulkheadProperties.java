@@ -0,0 +1,45 @@
+package ee.digit25.detector.api;
+
+import jakarta.validation.constraints.Min;
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+import org.springframework.validation.annotation.Validated;
+
+/**
+ * Outbound call budget of this process and the share of it guaranteed to every {@link CallClass}. Permits
+ * beyond the guaranteed shares are shared by all classes. The guarantees are per process, the host-wide
+ * permits of a shared token are not split by class.
+ */
+@Getter
+@Setter
+@Component
+@Validated
+@ConfigurationProperties("detector.bulkheads")
+public class BulkheadProperties {
+
+    @Min(1)
+    private int total = 45;
+
+    @Min(0)
+    private int verdict = 10;
+
+    @Min(0)
+    private int fetch = 5;
+
+    @Min(0)
+    private int lookup = 15;
+
+    @Min(0)
+    private int background = 0;
+
+    public int minimum(CallClass callClass) {
+        return switch (callClass) {
+            case VERDICT -> verdict;
+            case FETCH -> fetch;
+            case LOOKUP -> lookup;
+            case BACKGROUND -> background;
+        };
+    }
+}
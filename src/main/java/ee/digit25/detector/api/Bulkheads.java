@@ -0,0 +1,282 @@
+package ee.digit25.detector.api;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Partitions the outbound call budget between {@link CallClass}es.
+ * <p>
+ * Every class is guaranteed its minimum share. Beyond it, a class may borrow any idle permit except those
+ * still needed for the unused minimums of higher-priority classes, so verdict posts can take idle lookup
+ * capacity but a burst of lookups can never starve verdict posts. A released permit goes to the
+ * highest-priority waiter that may take it.
+ * <p>
+ * An admitted call also takes one of the {@link RequestPermits}, which is the host-wide budget when
+ * several processes share the token. A call made while the thread already holds a permit runs under it.
+ * <p>
+ * Priorities and minimums only hold within this process: the shared permits are taken first come, first
+ * served whatever the class, so lookups of one process can hold the host-wide permits that verdict posts of
+ * another are waiting for. Keeping every process's {@code total} at or below its share of the shared permits
+ * rules that out, at the cost of not lending idle capacity between processes.
+ */
+@Slf4j
+@Component
+public class Bulkheads {
+
+    private static final CallClass[] CLASSES = CallClass.values();
+
+    private final RequestPermits requestPermits;
+    private final int total;
+    private final int[] minimum = new int[CLASSES.length];
+    private final int[] inUse = new int[CLASSES.length];
+    private final int[] waiting = new int[CLASSES.length];
+    private int totalInUse;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition[] admitted = new Condition[CLASSES.length];
+    private final ThreadLocal<CallClass> held = new ThreadLocal<>();
+
+    private final Saturation[] saturation = new Saturation[CLASSES.length];
+
+    public Bulkheads(RequestPermits requestPermits, BulkheadProperties properties) {
+        this.requestPermits = requestPermits;
+        this.total = properties.getTotal();
+
+        int reserved = 0;
+        for (CallClass callClass : CLASSES) {
+            int index = callClass.ordinal();
+            minimum[index] = properties.minimum(callClass);
+            reserved += minimum[index];
+            admitted[index] = lock.newCondition();
+            saturation[index] = new Saturation();
+        }
+        if (reserved > total) {
+            throw new IllegalArgumentException("Bulkhead minimums (" + reserved + ") exceed the total of " + total);
+        }
+    }
+
+    /**
+     * Runs the call with a permit of the class, waiting for one if needed.
+     */
+    public <T> T call(CallClass callClass, Supplier<T> call) {
+        if (held.get() != null) {
+            return call.get();
+        }
+
+        try {
+            acquire(callClass);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for a " + callClass + " permit", e);
+        }
+        return runHolding(callClass, call);
+    }
+
+    /**
+     * @return the class of the permit the current thread runs under, or null
+     */
+    public CallClass heldClass() {
+        return held.get();
+    }
+
+    public void run(CallClass callClass, Runnable call) {
+        call(callClass, () -> {
+            call.run();
+            return null;
+        });
+    }
+
+    /**
+     * Runs the call only if a permit of the class is available without waiting.
+     *
+     * @return false when the call was skipped
+     */
+    public boolean tryRun(CallClass callClass, Runnable call) {
+        if (held.get() != null) {
+            call.run();
+            return true;
+        }
+
+        if (!tryAcquire(callClass)) {
+            return false;
+        }
+        runHolding(callClass, () -> {
+            call.run();
+            return null;
+        });
+        return true;
+    }
+
+    private <T> T runHolding(CallClass callClass, Supplier<T> call) {
+        held.set(callClass);
+        try {
+            return call.get();
+        } finally {
+            held.remove();
+            release(callClass);
+        }
+    }
+
+    public void acquire(CallClass callClass) throws InterruptedException {
+        int index = callClass.ordinal();
+        lock.lock();
+        try {
+            if (!admit(index)) {
+                long start = System.nanoTime();
+                boolean granted = false;
+                waiting[index]++;
+                try {
+                    while (!admit(index)) {
+                        admitted[index].await();
+                    }
+                    granted = true;
+                } finally {
+                    waiting[index]--;
+                    saturation[index].waited(System.nanoTime() - start);
+                    if (!granted) {
+                        // Interrupted, possibly after a release signalled this waiter: pass the signal on
+                        signalNext();
+                    }
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        try {
+            requestPermits.acquire();
+        } catch (InterruptedException e) {
+            releaseLocal(index);
+            throw e;
+        }
+    }
+
+    public boolean tryAcquire(CallClass callClass) {
+        int index = callClass.ordinal();
+        lock.lock();
+        try {
+            if (!admit(index)) {
+                saturation[index].rejected.incrementAndGet();
+                return false;
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        if (!requestPermits.tryAcquire()) {
+            releaseLocal(index);
+            saturation[index].rejected.incrementAndGet();
+            return false;
+        }
+        return true;
+    }
+
+    public void release(CallClass callClass) {
+        requestPermits.release();
+        releaseLocal(callClass.ordinal());
+    }
+
+    private void releaseLocal(int index) {
+        lock.lock();
+        try {
+            inUse[index]--;
+            totalInUse--;
+            signalNext();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Wakes the highest-priority waiter that may take a permit now. Must hold the lock.
+     */
+    private void signalNext() {
+        for (int candidate = 0; candidate < CLASSES.length; candidate++) {
+            if (waiting[candidate] > 0 && canAdmit(candidate)) {
+                admitted[candidate].signal();
+                return;
+            }
+        }
+    }
+
+    /**
+     * Takes a local permit for the class if it may have one. Must hold the lock.
+     */
+    private boolean admit(int index) {
+        if (!canAdmit(index)) {
+            return false;
+        }
+
+        if (inUse[index] >= minimum[index]) {
+            saturation[index].borrowed.incrementAndGet();
+        }
+        inUse[index]++;
+        totalInUse++;
+        saturation[index].acquired(inUse[index]);
+        return true;
+    }
+
+    private boolean canAdmit(int index) {
+        if (totalInUse >= total) {
+            return false;
+        }
+        if (inUse[index] < minimum[index]) {
+            return true;
+        }
+
+        int protectedForHigher = 0;
+        for (int higher = 0; higher < index; higher++) {
+            protectedForHigher += Math.max(0, minimum[higher] - inUse[higher]);
+        }
+        return total - totalInUse - 1 >= protectedForHigher;
+    }
+
+    @Scheduled(fixedRate = 5000)
+    public void logMetrics() {
+        StringBuilder report = new StringBuilder("Bulkheads (in use / minimum, peak, borrowed, waits, avg wait, rejected):");
+        lock.lock();
+        try {
+            for (CallClass callClass : CLASSES) {
+                int index = callClass.ordinal();
+                Saturation stats = saturation[index];
+                long waits = stats.waits.getAndSet(0);
+                long waitNanos = stats.waitNanos.getAndSet(0);
+                report.append(String.format("%n- %s: %d/%d, peak %d, borrowed %d, waits %d, avg wait %d ms, rejected %d",
+                    callClass, inUse[index], minimum[index], stats.peak, stats.borrowed.getAndSet(0), waits,
+                    waits == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(waitNanos / waits), stats.rejected.getAndSet(0)));
+                stats.peak = inUse[index];
+            }
+        } finally {
+            lock.unlock();
+        }
+        log.info(report.toString());
+    }
+
+    /**
+     * Per-class saturation counters, reset on every report. {@link #peak} is guarded by the lock.
+     */
+    private static final class Saturation {
+
+        private int peak;
+        private final AtomicLong borrowed = new AtomicLong();
+        private final AtomicLong waits = new AtomicLong();
+        private final AtomicLong waitNanos = new AtomicLong();
+        private final AtomicLong rejected = new AtomicLong();
+
+        private void acquired(int inUse) {
+            peak = Math.max(peak, inUse);
+        }
+
+        private void waited(long nanos) {
+            waits.incrementAndGet();
+            waitNanos.addAndGet(nanos);
+        }
+    }
+}
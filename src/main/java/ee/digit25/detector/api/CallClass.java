@@ -0,0 +1,23 @@
+package ee.digit25.detector.api;
+
+/**
+ * Kinds of outbound calls, highest priority first.
+ */
+public enum CallClass {
+    /**
+     * Verdict posts, the calls that complete work.
+     */
+    VERDICT,
+    /**
+     * Fetches of unverified transactions.
+     */
+    FETCH,
+    /**
+     * Entity lookups a validation is waiting for.
+     */
+    LOOKUP,
+    /**
+     * Speculative lookups: prefetching and cache refreshes.
+     */
+    BACKGROUND
+}
@@ -0,0 +1,264 @@
+package ee.digit25.detector.api;
+
+import ee.bitweb.core.retrofit.RetrofitRequestExecutor;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import retrofit2.Call;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Executes single-entity lookups with an optional hedge: when the call has not returned after the p95
+ * latency observed for its endpoint, a duplicate is sent and the first successful response wins, the other
+ * call is cancelled.
+ * <p>
+ * A hedge is only sent while hedges stay within the configured share of recent requests and a permit of the
+ * caller's class, a lookup permit by default, can be taken without waiting, so hedging never queues behind or
+ * crowds out regular calls. The share is a token bucket: every request earns a fraction of a hedge, at most
+ * {@code budgetBurst} hedges are saved up. Calls run on virtual threads, the caller waits for the winner.
+ * Every call's latency is recorded, a cancelled loser's as at least the winner's, so slow calls keep counting
+ * towards the p95.
+ */
+@Slf4j
+@Component
+public class HedgedRequestExecutor {
+
+    private final Bulkheads bulkheads;
+    private final HedgingProperties properties;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final Map<String, Endpoint> endpoints = new ConcurrentHashMap<>();
+
+    public HedgedRequestExecutor(Bulkheads bulkheads, HedgingProperties properties) {
+        this.bulkheads = bulkheads;
+        this.properties = properties;
+    }
+
+    public <T> T execute(String endpointName, Call<T> call) {
+        if (!properties.isEnabled()) {
+            return RetrofitRequestExecutor.executeRaw(call);
+        }
+
+        Endpoint endpoint = endpoints.computeIfAbsent(endpointName, Endpoint::new);
+        endpoint.requests.incrementAndGet();
+        endpoint.earnBudget();
+        AtomicLong winnerNanos = new AtomicLong();
+        CompletableFuture<T> primary = start(endpoint, call, winnerNanos);
+
+        long delay = endpoint.hedgeDelayNanos();
+        if (delay < 0) {
+            return await(primary, call, null);
+        }
+
+        try {
+            return primary.get(delay, TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            // Slower than p95, hedge below
+        } catch (ExecutionException e) {
+            throw unwrap(e.getCause());
+        } catch (InterruptedException e) {
+            call.cancel();
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for " + endpointName, e);
+        }
+
+        // A hedge stays in the caller's class, so a background refresh never hedges into lookup capacity
+        CallClass hedgeClass = Objects.requireNonNullElse(bulkheads.heldClass(), CallClass.LOOKUP);
+        if (!bulkheads.tryAcquire(hedgeClass)) {
+            endpoint.hedgesDenied.incrementAndGet();
+            return await(primary, call, null);
+        }
+        if (!endpoint.takeBudget()) {
+            bulkheads.release(hedgeClass);
+            endpoint.hedgesDenied.incrementAndGet();
+            return await(primary, call, null);
+        }
+
+        Call<T> hedgeCall;
+        CompletableFuture<T> hedge;
+        try {
+            hedgeCall = call.clone();
+            hedge = start(endpoint, hedgeCall, winnerNanos);
+        } catch (RuntimeException e) {
+            // The hedge never ran, so neither its permit nor its share of the budget is spent
+            bulkheads.release(hedgeClass);
+            endpoint.refundBudget();
+            log.warn("Could not hedge {}, waiting for the primary call", endpointName, e);
+            return await(primary, call, null);
+        }
+        endpoint.hedges.incrementAndGet();
+        hedge.whenComplete((result, error) -> bulkheads.release(hedgeClass));
+        hedge.thenRun(() -> {
+            if (!primary.isDone()) {
+                endpoint.hedgeWins.incrementAndGet();
+            }
+        });
+
+        return await(firstSuccessful(primary, hedge), call, hedgeCall);
+    }
+
+    private <T> CompletableFuture<T> start(Endpoint endpoint, Call<T> call, AtomicLong winnerNanos) {
+        return CompletableFuture.supplyAsync(() -> {
+            long start = System.nanoTime();
+            boolean succeeded = false;
+            try {
+                T result = RetrofitRequestExecutor.executeRaw(call);
+                succeeded = true;
+                return result;
+            } finally {
+                // Failed and cancelled calls count too, or slow calls that lose to a hedge would pull the p95 down.
+                // A cancelled loser would have taken at least as long as the winner, its own elapsed time may be
+                // shorter when it started later.
+                long elapsed = System.nanoTime() - start;
+                if (succeeded) {
+                    winnerNanos.compareAndSet(0, elapsed);
+                } else if (call.isCanceled()) {
+                    elapsed = Math.max(elapsed, winnerNanos.get());
+                }
+                endpoint.record(elapsed);
+            }
+        }, executor);
+    }
+
+    private static <T> CompletableFuture<T> firstSuccessful(CompletableFuture<T> primary, CompletableFuture<T> hedge) {
+        CompletableFuture<T> winner = new CompletableFuture<>();
+        AtomicInteger failures = new AtomicInteger();
+        for (CompletableFuture<T> attempt : List.of(primary, hedge)) {
+            attempt.whenComplete((result, error) -> {
+                if (error == null) {
+                    winner.complete(result);
+                } else if (failures.incrementAndGet() == 2) {
+                    winner.completeExceptionally(error);
+                }
+            });
+        }
+        return winner;
+    }
+
+    private static <T> T await(CompletableFuture<T> result, Call<?> call, Call<?> hedgeCall) {
+        try {
+            return result.join();
+        } catch (CompletionException e) {
+            throw unwrap(e.getCause());
+        } finally {
+            // Cancelling a finished call is a no-op, so this only stops the loser
+            call.cancel();
+            if (hedgeCall != null) {
+                hedgeCall.cancel();
+            }
+        }
+    }
+
+    private static RuntimeException unwrap(Throwable cause) {
+        while (cause instanceof CompletionException && cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        return cause instanceof RuntimeException runtime ? runtime : new IllegalStateException(cause);
+    }
+
+    @Scheduled(fixedRate = 10000)
+    public void logMetrics() {
+        if (!properties.isEnabled()) return;
+
+        for (Endpoint endpoint : endpoints.values()) {
+            log.info("Hedging {}: p95 {} ms, {} requests, {} hedged, {} won by the hedge, {} denied by budget or permits",
+                endpoint.name, TimeUnit.NANOSECONDS.toMillis(Math.max(0, endpoint.p95Nanos)),
+                endpoint.requests.get(), endpoint.hedges.get(), endpoint.hedgeWins.get(), endpoint.hedgesDenied.get());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Latencies of one endpoint in a ring buffer; the p95 is recomputed every {@link #RECOMPUTE_EVERY} samples.
+     */
+    private final class Endpoint {
+
+        private static final int RECOMPUTE_EVERY = 64;
+
+        private final String name;
+        private final AtomicLongArray latencies = new AtomicLongArray(properties.getWindow());
+        private final AtomicLong samples = new AtomicLong();
+        private volatile long p95Nanos = -1;
+
+        private final AtomicLong requests = new AtomicLong();
+        private final AtomicLong hedges = new AtomicLong();
+        private final AtomicLong hedgeWins = new AtomicLong();
+        private final AtomicLong hedgesDenied = new AtomicLong();
+
+        // Hedge budget in thousandths of a hedge
+        private final AtomicLong budget = new AtomicLong();
+        private final long earnedPerRequest = Math.round(properties.getBudgetPercent() * 10);
+        private final long maxBudget = properties.getBudgetBurst() * 1000L;
+
+        private Endpoint(String name) {
+            this.name = name;
+        }
+
+        private void record(long nanos) {
+            long sample = samples.getAndIncrement();
+            latencies.set((int) (sample % latencies.length()), nanos);
+            if (sample + 1 >= properties.getMinSamples() && (sample + 1) % RECOMPUTE_EVERY == 0) {
+                recomputeP95(Math.min(sample + 1, latencies.length()));
+            }
+        }
+
+        private void recomputeP95(long filled) {
+            long[] sorted = new long[(int) filled];
+            for (int i = 0; i < sorted.length; i++) {
+                sorted[i] = latencies.get(i);
+            }
+            Arrays.sort(sorted);
+            p95Nanos = sorted[(int) Math.min(sorted.length - 1, Math.ceil(sorted.length * 0.95) - 1)];
+        }
+
+        /**
+         * @return how long to wait before hedging, or -1 while there are too few samples
+         */
+        private long hedgeDelayNanos() {
+            long p95 = p95Nanos;
+            return p95 < 0 ? -1 : Math.max(p95, properties.getMinDelay().toNanos());
+        }
+
+        private void earnBudget() {
+            budget.accumulateAndGet(earnedPerRequest, (current, earned) -> Math.min(maxBudget, current + earned));
+        }
+
+        /**
+         * Takes one hedge from the budget, atomically so concurrent callers cannot overdraw it.
+         */
+        private boolean takeBudget() {
+            long current;
+            do {
+                current = budget.get();
+                if (current < 1000) return false;
+            } while (!budget.compareAndSet(current, current - 1000));
+            return true;
+        }
+
+        /**
+         * Gives back a hedge taken with {@link #takeBudget()} that was never sent.
+         */
+        private void refundBudget() {
+            budget.accumulateAndGet(1000, (current, refund) -> Math.min(maxBudget, current + refund));
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package ee.digit25.detector.api;
+
+import jakarta.validation.constraints.DecimalMax;
+import jakarta.validation.constraints.DecimalMin;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotNull;
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+import org.springframework.validation.annotation.Validated;
+
+import java.time.Duration;
+
+@Getter
+@Setter
+@Component
+@Validated
+@ConfigurationProperties("detector.hedging")
+public class HedgingProperties {
+
+    private boolean enabled = false;
+
+    /**
+     * Most hedged requests allowed, as a percentage of all single-entity requests.
+     */
+    @DecimalMin("0.0")
+    @DecimalMax("100.0")
+    private double budgetPercent = 5;
+
+    /**
+     * Most hedges an endpoint may send back to back; unused budget beyond this is not saved up.
+     */
+    @Min(1)
+    private int budgetBurst = 10;
+
+    /**
+     * Latency samples kept per endpoint for the p95 estimate.
+     */
+    @Min(64)
+    private int window = 1024;
+
+    /**
+     * Samples an endpoint needs before its requests are hedged.
+     */
+    @Min(1)
+    private int minSamples = 100;
+
+    /**
+     * Lower bound of the hedge delay, so that a very fast endpoint is not hedged on scheduling noise.
+     */
+    @NotNull
+    private Duration minDelay = Duration.ofMillis(5);
+}
@@ -0,0 +1,30 @@
+package ee.digit25.detector.api;
+
+import java.util.concurrent.Semaphore;
+
+/**
+ * Call budget of a single detector process.
+ */
+public class LocalRequestPermits implements RequestPermits {
+
+    private final Semaphore semaphore;
+
+    public LocalRequestPermits(int permits) {
+        this.semaphore = new Semaphore(permits);
+    }
+
+    @Override
+    public void acquire() throws InterruptedException {
+        semaphore.acquire();
+    }
+
+    @Override
+    public boolean tryAcquire() {
+        return semaphore.tryAcquire();
+    }
+
+    @Override
+    public void release() {
+        semaphore.release();
+    }
+}
@@ -0,0 +1,14 @@
+package ee.digit25.detector.api;
+
+/**
+ * Budget of concurrent outbound calls that {@link Bulkheads} draws from. Permits are taken and returned one
+ * at a time.
+ */
+public interface RequestPermits {
+
+    void acquire() throws InterruptedException;
+
+    boolean tryAcquire();
+
+    void release();
+}
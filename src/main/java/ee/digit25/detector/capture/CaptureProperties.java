@@ -0,0 +1,44 @@
+package ee.digit25.detector.capture;
+
+import jakarta.validation.constraints.DecimalMin;
+import jakarta.validation.constraints.NotNull;
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+import org.springframework.validation.annotation.Validated;
+
+import java.nio.file.Path;
+
+@Getter
+@Setter
+@Component
+@Validated
+@ConfigurationProperties("detector.capture")
+public class CaptureProperties {
+
+    public enum Mode {
+        OFF,
+        /**
+         * Records fetched transactions and entity responses to {@link #file}.
+         */
+        RECORD,
+        /**
+         * Serves transactions and entities from {@link #file} instead of the service; verdicts are not posted.
+         */
+        REPLAY
+    }
+
+    @NotNull
+    private Mode mode = Mode.OFF;
+
+    @NotNull
+    private Path file = Path.of("traffic.capture.gz");
+
+    /**
+     * Replay speed relative to the recording: 1 replays at the recorded pace, 10 ten times faster. 0 ignores
+     * the recorded timing and hands out the next recorded batch whenever the released ones are used up.
+     */
+    @DecimalMin("0.0")
+    private double speed = 1.0;
+}
@@ -0,0 +1,60 @@
+package ee.digit25.detector.capture;
+
+import ee.digit25.detector.domain.account.external.api.Account;
+import ee.digit25.detector.domain.device.external.api.Device;
+import ee.digit25.detector.domain.person.external.api.Person;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
+
+/**
+ * Entity types that are captured, with their record tag and binary form.
+ */
+public final class EntityKind<T> {
+
+    public static final EntityKind<Person> PERSON = new EntityKind<>(TrafficCodec.PERSON, "person",
+        Person::getPersonCode, TrafficCodec::writePerson, TrafficCodec::readPerson, TrafficCodec::copy);
+    public static final EntityKind<Account> ACCOUNT = new EntityKind<>(TrafficCodec.ACCOUNT, "account",
+        Account::getNumber, TrafficCodec::writeAccount, TrafficCodec::readAccount, TrafficCodec::copy);
+    public static final EntityKind<Device> DEVICE = new EntityKind<>(TrafficCodec.DEVICE, "device",
+        Device::getMac, TrafficCodec::writeDevice, TrafficCodec::readDevice, TrafficCodec::copy);
+
+    @FunctionalInterface
+    interface Writer<T> {
+        void write(DataOutput out, T entity) throws IOException;
+    }
+
+    @FunctionalInterface
+    interface Reader<T> {
+        T read(DataInput in) throws IOException;
+    }
+
+    final byte tag;
+    final String name;
+    final Function<T, String> keyOf;
+    final Writer<T> writer;
+    final Reader<T> reader;
+    final UnaryOperator<T> copy;
+
+    private EntityKind(byte tag, String name, Function<T, String> keyOf, Writer<T> writer, Reader<T> reader,
+                       UnaryOperator<T> copy) {
+        this.tag = tag;
+        this.name = name;
+        this.keyOf = keyOf;
+        this.writer = writer;
+        this.reader = reader;
+        this.copy = copy;
+    }
+
+    static EntityKind<?> of(byte tag) {
+        return switch (tag) {
+            case TrafficCodec.PERSON -> PERSON;
+            case TrafficCodec.ACCOUNT -> ACCOUNT;
+            case TrafficCodec.DEVICE -> DEVICE;
+            default -> throw new IllegalArgumentException("Unknown entity record " + tag);
+        };
+    }
+}
@@ -0,0 +1,15 @@
+package ee.digit25.detector.capture;
+
+import java.util.function.Supplier;
+
+/**
+ * A response together with how long the call took, so the capture can record the latency a replay reproduces.
+ */
+public record TimedResponse<T>(T body, long latencyNanos) {
+
+    public static <T> TimedResponse<T> measure(Supplier<T> call) {
+        long start = System.nanoTime();
+        T body = call.get();
+        return new TimedResponse<>(body, System.nanoTime() - start);
+    }
+}
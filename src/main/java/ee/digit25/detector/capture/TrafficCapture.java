@@ -0,0 +1,191 @@
+package ee.digit25.detector.capture;
+
+import ee.digit25.detector.domain.transaction.external.api.Transaction;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Records the fetched transaction batches, the entity responses and the acknowledged verdict posts, with their
+ * timing and response latency, so a session can be replayed offline by {@link TrafficReplay}. Only active when {@code detector.capture.mode=RECORD}.
+ * <p>
+ * Transactions are recorded as fetched, before deduplication, so a replay exercises the same filtering.
+ * Write errors stop the capture but never the detector.
+ */
+@Slf4j
+@Component
+public class TrafficCapture {
+
+    private final CaptureProperties properties;
+    private final long startNanos = System.nanoTime();
+
+    private DataOutputStream out;
+    private long transactions;
+    private long entities;
+    private long verdicts;
+
+    public TrafficCapture(CaptureProperties properties) {
+        this.properties = properties;
+        if (properties.getMode() != CaptureProperties.Mode.RECORD) {
+            return;
+        }
+
+        try {
+            this.out = new DataOutputStream(new GZIPOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(properties.getFile())), 64 * 1024, true));
+            out.writeInt(TrafficCodec.MAGIC);
+            out.writeInt(TrafficCodec.VERSION);
+            out.writeLong(System.currentTimeMillis());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not open capture file " + properties.getFile(), e);
+        }
+        log.info("Recording traffic to {}", properties.getFile());
+    }
+
+    public boolean isActive() {
+        return out != null;
+    }
+
+    public void recordTransactions(List<Transaction> batch, long latencyNanos) {
+        if (!isActive() || batch == null || batch.isEmpty()) return;
+
+        synchronized (this) {
+            if (!isActive()) return;
+            try {
+                writeHeader(TrafficCodec.TRANSACTIONS, latencyNanos);
+                out.writeInt(batch.size());
+                for (Transaction transaction : batch) {
+                    TrafficCodec.writeTransaction(out, transaction);
+                }
+                transactions += batch.size();
+            } catch (IOException e) {
+                abort(e);
+            }
+        }
+    }
+
+    /**
+     * Records the response to a single lookup, including a missing entity.
+     */
+    public <T> void recordEntity(EntityKind<T> kind, String key, T entity, long latencyNanos) {
+        if (!isActive() || key == null) return;
+
+        synchronized (this) {
+            if (!isActive()) return;
+            try {
+                write(kind, key, entity, latencyNanos);
+            } catch (IOException e) {
+                abort(e);
+            }
+        }
+    }
+
+    /**
+     * Records the entities returned by a bulk lookup, each with the latency of the whole response; keys missing
+     * from the response are not recorded.
+     */
+    public <T> void recordEntities(EntityKind<T> kind, List<T> response, long latencyNanos) {
+        if (!isActive() || response == null || response.isEmpty()) return;
+
+        synchronized (this) {
+            if (!isActive()) return;
+            try {
+                for (T entity : response) {
+                    write(kind, kind.keyOf.apply(entity), entity, latencyNanos);
+                }
+            } catch (IOException e) {
+                abort(e);
+            }
+        }
+    }
+
+    /**
+     * Records an acknowledged verdict post with the latency of the attempt that succeeded.
+     */
+    public void recordVerdict(List<Transaction> transactions, long latencyNanos) {
+        if (!isActive() || transactions.isEmpty()) return;
+
+        synchronized (this) {
+            if (!isActive()) return;
+            try {
+                writeHeader(TrafficCodec.VERDICT, latencyNanos);
+                out.writeInt(transactions.size());
+                for (Transaction transaction : transactions) {
+                    TrafficCodec.writeString(out, transaction.getId());
+                }
+                verdicts++;
+            } catch (IOException e) {
+                abort(e);
+            }
+        }
+    }
+
+    private <T> void write(EntityKind<T> kind, String key, T entity, long latencyNanos) throws IOException {
+        writeHeader(kind.tag, latencyNanos);
+        out.writeUTF(key);
+        out.writeBoolean(entity != null);
+        if (entity != null) {
+            kind.writer.write(out, entity);
+        }
+        entities++;
+    }
+
+    private void writeHeader(byte tag, long latencyNanos) throws IOException {
+        out.writeByte(tag);
+        out.writeLong(System.nanoTime() - startNanos);
+        out.writeLong(latencyNanos);
+    }
+
+    private void abort(IOException e) {
+        log.error("Traffic capture to {} failed, recording stopped: {}", properties.getFile(), e.getMessage());
+        try {
+            out.close();
+        } catch (IOException ignored) {
+            // Already failing
+        }
+        out = null;
+    }
+
+    /**
+     * Flushes the compressed stream, so a killed process leaves a readable capture up to the last flush.
+     */
+    @Scheduled(fixedRate = 5000)
+    public void flush() {
+        if (!isActive()) return;
+
+        synchronized (this) {
+            if (!isActive()) return;
+            try {
+                out.flush();
+            } catch (IOException e) {
+                abort(e);
+                return;
+            }
+            log.info("Traffic capture: {} transactions, {} entity responses, {} verdict posts recorded",
+                transactions, entities, verdicts);
+        }
+    }
+
+    @PreDestroy
+    public synchronized void close() {
+        if (!isActive()) return;
+
+        try {
+            out.close();
+            log.info("Traffic capture closed: {} transactions, {} entity responses, {} verdict posts in {}",
+                transactions, entities, verdicts, properties.getFile());
+        } catch (IOException e) {
+            log.error("Could not close capture file {}: {}", properties.getFile(), e.getMessage());
+        }
+        out = null;
+    }
+}
@@ -0,0 +1,142 @@
+package ee.digit25.detector.capture;
+
+import ee.digit25.detector.domain.account.external.api.Account;
+import ee.digit25.detector.domain.device.external.api.Device;
+import ee.digit25.detector.domain.person.external.api.Person;
+import ee.digit25.detector.domain.transaction.external.api.Transaction;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Binary form of a traffic capture, written through a GZIP stream:
+ * <pre>
+ * header : magic (int), version (int), capture start in epoch millis (long)
+ * record : tag (byte), nanos since capture start (long), response latency in nanos (long), payload
+ *   TRANSACTIONS : count (int), count x transaction
+ *   PERSON, ACCOUNT, DEVICE : key (string), present (boolean), entity if present
+ *   VERDICT : count (int), count x transaction id (string)
+ * </pre>
+ * Nullable strings and booleans carry a presence marker, amounts are written as decimal strings and
+ * timestamps as ISO local date-times. Version 2 added the response latency, which replay reproduces, version 3
+ * the acknowledged verdict posts.
+ */
+final class TrafficCodec {
+
+    static final int MAGIC = 0x44324354; // "D2CT"
+    static final int VERSION = 3;
+
+    static final byte TRANSACTIONS = 1;
+    static final byte PERSON = 2;
+    static final byte ACCOUNT = 3;
+    static final byte DEVICE = 4;
+    static final byte VERDICT = 5;
+
+    private TrafficCodec() {
+    }
+
+    static void writeTransaction(DataOutput out, Transaction transaction) throws IOException {
+        writeString(out, transaction.getId());
+        writeString(out, transaction.getAmount() == null ? null : transaction.getAmount().toPlainString());
+        writeString(out, transaction.getSender());
+        writeString(out, transaction.getRecipient());
+        writeString(out, transaction.getSenderAccount());
+        writeString(out, transaction.getRecipientAccount());
+        writeString(out, transaction.getDeviceMac());
+        writeString(out, transaction.getTimestamp() == null ? null : transaction.getTimestamp().toString());
+        writeString(out, transaction.getDeadline() == null ? null : transaction.getDeadline().toString());
+    }
+
+    static Transaction readTransaction(DataInput in) throws IOException {
+        String id = readString(in);
+        String amount = readString(in);
+        return new Transaction(id, amount == null ? null : new BigDecimal(amount),
+            readString(in), readString(in), readString(in), readString(in), readString(in),
+            readDateTime(in), readDateTime(in));
+    }
+
+    static void writePerson(DataOutput out, Person person) throws IOException {
+        writeString(out, person.getFirstName());
+        writeString(out, person.getLastName());
+        writeString(out, person.getPersonCode());
+        writeBoolean(out, person.getWarrantIssued());
+        writeBoolean(out, person.getHasContract());
+        writeBoolean(out, person.getBlacklisted());
+    }
+
+    static Person readPerson(DataInput in) throws IOException {
+        return new Person(readString(in), readString(in), readString(in),
+            readBoolean(in), readBoolean(in), readBoolean(in));
+    }
+
+    static void writeAccount(DataOutput out, Account account) throws IOException {
+        writeString(out, account.getNumber());
+        writeString(out, account.getOwner());
+        writeBoolean(out, account.getClosed());
+        writeString(out, account.getBalance() == null ? null : account.getBalance().toPlainString());
+    }
+
+    static Account readAccount(DataInput in) throws IOException {
+        String number = readString(in);
+        String owner = readString(in);
+        Boolean closed = readBoolean(in);
+        String balance = readString(in);
+        return new Account(number, owner, closed, balance == null ? null : new BigDecimal(balance));
+    }
+
+    static void writeDevice(DataOutput out, Device device) throws IOException {
+        writeString(out, device.getMac());
+        writeBoolean(out, device.getIsBlacklisted());
+    }
+
+    static Device readDevice(DataInput in) throws IOException {
+        Device device = new Device();
+        device.setMac(readString(in));
+        device.setIsBlacklisted(readBoolean(in));
+        return device;
+    }
+
+    static Person copy(Person person) {
+        return new Person(person.getFirstName(), person.getLastName(), person.getPersonCode(),
+            person.getWarrantIssued(), person.getHasContract(), person.getBlacklisted());
+    }
+
+    static Account copy(Account account) {
+        return new Account(account.getNumber(), account.getOwner(), account.getClosed(), account.getBalance());
+    }
+
+    static Device copy(Device device) {
+        Device copy = new Device();
+        copy.setMac(device.getMac());
+        copy.setIsBlacklisted(device.getIsBlacklisted());
+        return copy;
+    }
+
+    static void writeString(DataOutput out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    static String readString(DataInput in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    private static void writeBoolean(DataOutput out, Boolean value) throws IOException {
+        out.writeByte(value == null ? -1 : value ? 1 : 0);
+    }
+
+    private static Boolean readBoolean(DataInput in) throws IOException {
+        byte value = in.readByte();
+        return value < 0 ? null : value == 1;
+    }
+
+    private static LocalDateTime readDateTime(DataInput in) throws IOException {
+        String value = readString(in);
+        return value == null ? null : LocalDateTime.parse(value);
+    }
+}
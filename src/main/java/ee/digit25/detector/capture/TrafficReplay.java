@@ -0,0 +1,423 @@
+package ee.digit25.detector.capture;
+
+import ee.digit25.detector.domain.transaction.external.api.Transaction;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.WeakHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Serves a capture written by {@link TrafficCapture} in place of the external service, so performance changes
+ * can be compared on identical traffic without a token. Only active when {@code detector.capture.mode=REPLAY}.
+ * <ul>
+ *     <li>Transaction batches are released at their recorded offset, scaled by {@code detector.capture.speed}.
+ *     Their timestamps and deadlines are shifted by the same amount, so deadlines stay as tight as they were.</li>
+ *     <li>An entity lookup is tied to the batch of a transaction that references the key: the oldest admitted
+ *     and undecided one, or else the last decided one. It returns the last version recorded before the batch
+ *     after that one, so the detector sees the entity state it saw while recording, however many batches are
+ *     released at once. Keys no admitted transaction references fall back to their first version.</li>
+ *     <li>Every response arrives after its recorded latency, a verdict post after that of the post which
+ *     decided its transactions. Callers wait for it holding their bulkhead permit, so caching, batching and
+ *     bulkhead changes show up in a replay as they would live.</li>
+ * </ul>
+ * The replay clock starts with the first fetch, so startup time does not eat into the recorded pacing.
+ */
+@Slf4j
+@Component
+public class TrafficReplay {
+
+    private final CaptureProperties properties;
+
+    private final List<Batch> batches = new ArrayList<>();
+    private final Map<EntityKind<?>, Map<String, List<Version>>> versions = new HashMap<>();
+    private final Map<String, Long> verdictLatencies = new HashMap<>();
+    private long verdictPosts;
+    private long verdictLatencyTotalNanos;
+    private long captureStartMillis;
+
+    private final Deque<Transaction> released = new ArrayDeque<>();
+    private int nextBatch;
+    private long replayStartNanos;
+    private long releasedCount;
+    private long fetchLatencyNanos;
+    private volatile boolean finished;
+
+    // Entity visibility, guarded by visibilityLock. A transaction's bound is the sequence of the batch after its
+    // own, its lookups see versions recorded before it. Transactions are compared by identity and forgotten with
+    // them.
+    private final Object visibilityLock = new Object();
+    private final Map<Transaction, Long> boundOf = new WeakHashMap<>();
+    private final Map<String, TreeMap<Long, Integer>> undecidedBounds = new HashMap<>();
+    private final Map<String, Long> decidedBounds = new HashMap<>();
+
+    private final AtomicLong served = new AtomicLong();
+    private final AtomicLong entityLookups = new AtomicLong();
+    private final AtomicLong entityMisses = new AtomicLong();
+    private final AtomicLong decided = new AtomicLong();
+
+    public TrafficReplay(CaptureProperties properties) {
+        this.properties = properties;
+        if (properties.getMode() != CaptureProperties.Mode.REPLAY) {
+            return;
+        }
+
+        try {
+            load();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read capture file " + properties.getFile(), e);
+        }
+        log.info("Replaying {} transactions in {} batches from {} at speed {}",
+            batches.stream().mapToInt(batch -> batch.transactions().size()).sum(), batches.size(),
+            properties.getFile(), properties.getSpeed());
+    }
+
+    public boolean isActive() {
+        return properties.getMode() == CaptureProperties.Mode.REPLAY;
+    }
+
+    private void load() throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+            new GZIPInputStream(Files.newInputStream(properties.getFile()), 64 * 1024)))) {
+            if (in.readInt() != TrafficCodec.MAGIC || in.readInt() != TrafficCodec.VERSION) {
+                throw new IllegalStateException(properties.getFile() + " is not a supported traffic capture");
+            }
+            captureStartMillis = in.readLong();
+
+            for (long sequence = 0; ; sequence++) {
+                byte tag;
+                try {
+                    tag = in.readByte();
+                } catch (EOFException e) {
+                    return;
+                }
+
+                try {
+                    long offsetNanos = in.readLong();
+                    long latencyNanos = in.readLong();
+                    if (tag == TrafficCodec.TRANSACTIONS) {
+                        int count = in.readInt();
+                        List<Transaction> transactions = new ArrayList<>(count);
+                        for (int i = 0; i < count; i++) {
+                            transactions.add(TrafficCodec.readTransaction(in));
+                        }
+                        batches.add(new Batch(sequence, offsetNanos, latencyNanos, transactions));
+                    } else if (tag == TrafficCodec.VERDICT) {
+                        int count = in.readInt();
+                        for (int i = 0; i < count; i++) {
+                            verdictLatencies.put(TrafficCodec.readString(in), latencyNanos);
+                        }
+                        verdictPosts++;
+                        verdictLatencyTotalNanos += latencyNanos;
+                    } else {
+                        EntityKind<?> kind = EntityKind.of(tag);
+                        String key = in.readUTF();
+                        Object entity = in.readBoolean() ? kind.reader.read(in) : null;
+                        versions.computeIfAbsent(kind, ignored -> new HashMap<>())
+                            .computeIfAbsent(key, ignored -> new ArrayList<>(1))
+                            .add(new Version(sequence, latencyNanos, entity));
+                    }
+                } catch (EOFException e) {
+                    // The recording process was killed mid-record, everything before it is usable
+                    log.warn("Capture {} ends with a truncated record, ignoring it", properties.getFile());
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Answers after the recorded latency of the newest released batch.
+     *
+     * @return up to {@code amount} transactions of the batches that are due, empty when none are due yet
+     */
+    public List<Transaction> nextTransactions(int amount) {
+        List<Transaction> transactions;
+        long latencyNanos;
+        synchronized (this) {
+            transactions = poll(amount);
+            latencyNanos = fetchLatencyNanos;
+        }
+        respondAfter(latencyNanos);
+        return transactions;
+    }
+
+    private List<Transaction> poll(int amount) {
+        long now = System.nanoTime();
+        if (replayStartNanos == 0) {
+            replayStartNanos = now;
+        }
+
+        if (properties.getSpeed() <= 0) {
+            if (released.isEmpty() && nextBatch < batches.size()) {
+                release(batches.get(nextBatch++));
+            }
+        } else {
+            double replayedNanos = (now - replayStartNanos) * properties.getSpeed();
+            while (nextBatch < batches.size() && batches.get(nextBatch).offsetNanos() <= replayedNanos) {
+                release(batches.get(nextBatch++));
+            }
+        }
+
+        List<Transaction> transactions = new ArrayList<>(Math.min(amount, released.size()));
+        while (transactions.size() < amount && !released.isEmpty()) {
+            transactions.add(released.poll());
+        }
+        served.addAndGet(transactions.size());
+
+        if (!finished && nextBatch == batches.size() && released.isEmpty()) {
+            finished = true;
+            log.info("Replay finished: {} transactions served in {} ms",
+                served.get(), TimeUnit.NANOSECONDS.toMillis(now - replayStartNanos));
+        }
+        return transactions;
+    }
+
+    /**
+     * Must be called with {@link #nextBatch} already pointing past the batch.
+     */
+    private void release(Batch batch) {
+        // Move the recorded times to where the batch is released, the same batch always gets the same ids
+        long recordedAtMillis = captureStartMillis + TimeUnit.NANOSECONDS.toMillis(batch.offsetNanos());
+        long releasedAtMillis = System.currentTimeMillis();
+        Duration shift = Duration.ofMillis(releasedAtMillis - recordedAtMillis);
+        long bound = nextBatch < batches.size() ? batches.get(nextBatch).sequence() : Long.MAX_VALUE;
+
+        synchronized (visibilityLock) {
+            for (Transaction recorded : batch.transactions()) {
+                Transaction transaction = new Transaction(recorded.getId(), recorded.getAmount(),
+                    recorded.getSender(), recorded.getRecipient(), recorded.getSenderAccount(),
+                    recorded.getRecipientAccount(), recorded.getDeviceMac(),
+                    recorded.getTimestamp() == null ? null : recorded.getTimestamp().plus(shift),
+                    recorded.getDeadline() == null ? null : recorded.getDeadline().plus(shift));
+                boundOf.put(transaction, bound);
+                released.add(transaction);
+            }
+        }
+        releasedCount += batch.transactions().size();
+        fetchLatencyNanos = batch.latencyNanos();
+    }
+
+    /**
+     * Ties lookups of the transactions' entities to their batches until they are decided. Transactions dropped
+     * before admission, such as redeliveries, are left out so they never hold back what a lookup sees.
+     */
+    public void onAdmitted(List<Transaction> transactions) {
+        synchronized (visibilityLock) {
+            for (Transaction transaction : transactions) {
+                Long bound = boundOf.get(transaction);
+                if (bound == null) continue;
+                for (String key : entityKeys(transaction)) {
+                    undecidedBounds.computeIfAbsent(key, ignored -> new TreeMap<>()).merge(bound, 1, Integer::sum);
+                }
+            }
+        }
+    }
+
+    /**
+     * Stands in for posting the verdicts, answering after the longest recorded latency of the posts that decided
+     * the transactions. Transactions without a recorded post, because it failed or came after the recording
+     * stopped, take the mean latency of all recorded posts.
+     */
+    public void postVerdict(List<Transaction> transactions) {
+        long latencyNanos = -1;
+        for (Transaction transaction : transactions) {
+            Long recorded = verdictLatencies.get(transaction.getId());
+            if (recorded != null) {
+                latencyNanos = Math.max(latencyNanos, recorded);
+            }
+        }
+        if (latencyNanos < 0 && verdictPosts > 0) {
+            latencyNanos = verdictLatencyTotalNanos / verdictPosts;
+        }
+        respondAfter(latencyNanos);
+    }
+
+    /**
+     * Counts verdicts that would have been posted and moves lookups of their entities on to later batches.
+     */
+    public void onDecided(List<Transaction> transactions) {
+        decided.addAndGet(transactions.size());
+        synchronized (visibilityLock) {
+            for (Transaction transaction : transactions) {
+                Long bound = boundOf.remove(transaction);
+                if (bound == null) continue;
+                for (String key : entityKeys(transaction)) {
+                    // Also drops older batches' transactions that were lost instead of decided
+                    TreeMap<Long, Integer> undecided = undecidedBounds.get(key);
+                    if (undecided != null) {
+                        undecided.headMap(bound, true).clear();
+                        if (undecided.isEmpty()) {
+                            undecidedBounds.remove(key);
+                        }
+                    }
+                    decidedBounds.merge(key, bound, Math::max);
+                }
+            }
+        }
+    }
+
+    /**
+     * Releases the batch ties of transactions whose verdict could not be posted. They are not delivered again
+     * during a replay, so they would otherwise hold lookups of their entities back for good.
+     */
+    public void onAbandoned(List<Transaction> transactions) {
+        synchronized (visibilityLock) {
+            for (Transaction transaction : transactions) {
+                Long bound = boundOf.remove(transaction);
+                if (bound == null) continue;
+                for (String key : entityKeys(transaction)) {
+                    TreeMap<Long, Integer> undecided = undecidedBounds.get(key);
+                    if (undecided == null) continue;
+                    undecided.computeIfPresent(bound, (ignored, count) -> count == 1 ? null : count - 1);
+                    if (undecided.isEmpty()) {
+                        undecidedBounds.remove(key);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Answers after the recorded latency of the version it returns.
+     *
+     * @return a copy of the recorded entity, or null when it was recorded as missing or never recorded
+     */
+    public <T> T entity(EntityKind<T> kind, String key) {
+        Version version = resolve(kind, key);
+        if (version == null) {
+            return null;
+        }
+        respondAfter(version.latencyNanos());
+        return copy(kind, version);
+    }
+
+    /**
+     * Answers after the longest recorded latency of the versions it returns, like one bulk response.
+     *
+     * @return the recorded entities for the keys, skipping keys without an entity
+     */
+    public <T> List<T> entities(EntityKind<T> kind, List<String> keys) {
+        List<T> found = new ArrayList<>(keys.size());
+        long latencyNanos = 0;
+        for (String key : keys) {
+            Version version = resolve(kind, key);
+            if (version == null) continue;
+            latencyNanos = Math.max(latencyNanos, version.latencyNanos());
+            T entity = copy(kind, version);
+            if (entity != null) {
+                found.add(entity);
+            }
+        }
+        respondAfter(latencyNanos);
+        return found;
+    }
+
+    private Version resolve(EntityKind<?> kind, String key) {
+        entityLookups.incrementAndGet();
+        List<Version> recorded = versions.getOrDefault(kind, Map.of()).get(key);
+        if (recorded == null) {
+            entityMisses.incrementAndGet();
+            return null;
+        }
+
+        long bound = bound(kind, key);
+        Version version = recorded.get(0);
+        for (Version candidate : recorded) {
+            if (candidate.sequence() >= bound) break;
+            version = candidate;
+        }
+        return version;
+    }
+
+    private long bound(EntityKind<?> kind, String key) {
+        String scopedKey = scopedKey(kind, key);
+        synchronized (visibilityLock) {
+            TreeMap<Long, Integer> undecided = undecidedBounds.get(scopedKey);
+            if (undecided != null) {
+                return undecided.firstKey();
+            }
+            return decidedBounds.getOrDefault(scopedKey, Long.MIN_VALUE);
+        }
+    }
+
+    private static <T> T copy(EntityKind<T> kind, Version version) {
+        @SuppressWarnings("unchecked")
+        T entity = (T) version.entity();
+        // Copies, like fresh API responses, so identity-based change detection behaves as it does live
+        return entity == null ? null : kind.copy.apply(entity);
+    }
+
+    private static List<String> entityKeys(Transaction transaction) {
+        List<String> keys = new ArrayList<>(5);
+        addKey(keys, EntityKind.PERSON, transaction.getSender());
+        addKey(keys, EntityKind.PERSON, transaction.getRecipient());
+        addKey(keys, EntityKind.ACCOUNT, transaction.getSenderAccount());
+        addKey(keys, EntityKind.ACCOUNT, transaction.getRecipientAccount());
+        addKey(keys, EntityKind.DEVICE, transaction.getDeviceMac());
+        return keys;
+    }
+
+    private static void addKey(List<String> keys, EntityKind<?> kind, String key) {
+        if (key != null) {
+            keys.add(scopedKey(kind, key));
+        }
+    }
+
+    private static String scopedKey(EntityKind<?> kind, String key) {
+        return kind.name + '/' + key;
+    }
+
+    private static void respondAfter(long latencyNanos) {
+        if (latencyNanos <= 0) return;
+
+        try {
+            TimeUnit.NANOSECONDS.sleep(latencyNanos);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while replaying a response", e);
+        }
+    }
+
+    @Scheduled(fixedRate = 5000)
+    public void logMetrics() {
+        if (!isActive() || replayStartNanos == 0) return;
+
+        long elapsedMillis = Math.max(1, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - replayStartNanos));
+        synchronized (this) {
+            log.info("""
+                Replay metrics:
+                Batches released: {}/{}
+                Transactions released/served/decided: {}/{}/{}
+                Decided per second: {}
+                Entity lookups: {} ({} not recorded)""",
+                nextBatch, batches.size(),
+                releasedCount, served.get(), decided.get(),
+                String.format("%.1f", decided.get() * 1000.0 / elapsedMillis),
+                entityLookups.get(), entityMisses.get());
+        }
+    }
+
+    private record Batch(long sequence, long offsetNanos, long latencyNanos, List<Transaction> transactions) {
+    }
+
+    private record Version(long sequence, long latencyNanos, Object entity) {
+    }
+}
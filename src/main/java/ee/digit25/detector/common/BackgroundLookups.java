@@ -0,0 +1,43 @@
+package ee.digit25.detector.common;
+
+import ee.digit25.detector.api.Bulkheads;
+import ee.digit25.detector.api.CallClass;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Runs speculative entity lookups (prefetching, cache refreshes) behind foreground work: on the low-priority
+ * {@code backgroundLookupExecutor}, and only with a {@link CallClass#BACKGROUND} permit that is free without
+ * waiting.
+ */
+@Component
+@RequiredArgsConstructor
+public class BackgroundLookups {
+
+    private final Bulkheads bulkheads;
+    private final Executor backgroundLookupExecutor;
+
+    /**
+     * @return false when the background queue is full and the task was dropped
+     */
+    public boolean execute(Runnable task) {
+        try {
+            backgroundLookupExecutor.execute(task);
+            return true;
+        } catch (RejectedExecutionException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Runs the call on the current thread if a background permit is available, without waiting for one.
+     *
+     * @return false when the call was skipped
+     */
+    public boolean runWithSparePermit(Runnable call) {
+        return bulkheads.tryRun(CallClass.BACKGROUND, call);
+    }
+}
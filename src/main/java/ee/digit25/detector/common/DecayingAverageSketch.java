@@ -0,0 +1,92 @@
+package ee.digit25.detector.common;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Fixed-size estimate of the average value per key for an unbounded key space.
+ * <p>
+ * Laid out like {@link DecayingCountMinSketch}, but each cell holds a (sum, count) pair that is only updated
+ * as a whole, so an average never divides a sum and a count that saw different collisions. The estimate is
+ * the average of the key's cell with the smallest count, the one shared with the fewest other keys. After
+ * every {@code decayPeriod} additions every cell's count is halved and its sum scaled along, which keeps the
+ * averages and lets old observations fade out.
+ */
+public class DecayingAverageSketch {
+
+    private static final int DEPTH = DecayingCountMinSketch.DEPTH;
+    private static final int LOCK_STRIPES = 64;
+
+    private final long[] sums;
+    private final long[] counts;
+    private final Object[] locks = new Object[LOCK_STRIPES];
+    private final int widthMask;
+    private final long decayPeriod;
+    private final AtomicLong additions = new AtomicLong();
+
+    /**
+     * @param width cells per row, rounded up to a power of two
+     */
+    public DecayingAverageSketch(int width, long decayPeriod) {
+        int rowWidth = DecayingCountMinSketch.rowWidth(width);
+        this.sums = new long[DEPTH * rowWidth];
+        this.counts = new long[DEPTH * rowWidth];
+        this.widthMask = rowWidth - 1;
+        this.decayPeriod = decayPeriod;
+        for (int i = 0; i < locks.length; i++) {
+            locks[i] = new Object();
+        }
+    }
+
+    public void add(String key, long value) {
+        long hash = IdHash.of(key);
+        for (int row = 0; row < DEPTH; row++) {
+            int cell = DecayingCountMinSketch.index(hash, row, widthMask);
+            synchronized (lock(cell)) {
+                sums[cell] += value;
+                counts[cell]++;
+            }
+        }
+
+        if (additions.incrementAndGet() % decayPeriod == 0) {
+            decay();
+        }
+    }
+
+    /**
+     * @return the estimated average of the key's values, {@link Double#NaN} if none were added recently
+     */
+    public double average(String key) {
+        long hash = IdHash.of(key);
+        long sum = 0;
+        long count = Long.MAX_VALUE;
+        for (int row = 0; row < DEPTH; row++) {
+            int cell = DecayingCountMinSketch.index(hash, row, widthMask);
+            synchronized (lock(cell)) {
+                if (counts[cell] < count) {
+                    count = counts[cell];
+                    sum = sums[cell];
+                }
+            }
+        }
+        return count == 0 ? Double.NaN : (double) sum / count;
+    }
+
+    /**
+     * Halves every cell's count and scales its sum by the same factor.
+     */
+    public void decay() {
+        for (int cell = 0; cell < counts.length; cell++) {
+            synchronized (lock(cell)) {
+                long count = counts[cell];
+                if (count == 0) continue;
+                long halved = count >> 1;
+                sums[cell] = halved == 0 ? 0 : Math.round((double) sums[cell] * halved / count);
+                counts[cell] = halved;
+            }
+        }
+    }
+
+    private Object lock(int cell) {
+        return locks[cell & (LOCK_STRIPES - 1)];
+    }
+}
@@ -0,0 +1,79 @@
+package ee.digit25.detector.common;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Fixed-size frequency estimate for an unbounded key space.
+ * <p>
+ * Each key adds to one counter per row; the estimate is the smallest of them, so it never underestimates and
+ * only overestimates through collisions. After every {@code decayPeriod} additions all counters are halved,
+ * so old observations fade out instead of accumulating forever.
+ */
+public class DecayingCountMinSketch {
+
+    static final int DEPTH = 4;
+
+    private final AtomicLongArray counters;
+    private final int widthMask;
+    private final long decayPeriod;
+    private final AtomicLong additions = new AtomicLong();
+
+    /**
+     * @param width counters per row, rounded up to a power of two
+     */
+    public DecayingCountMinSketch(int width, long decayPeriod) {
+        int rowWidth = rowWidth(width);
+        this.counters = new AtomicLongArray(DEPTH * rowWidth);
+        this.widthMask = rowWidth - 1;
+        this.decayPeriod = decayPeriod;
+    }
+
+    public void add(String key, long amount) {
+        long hash = IdHash.of(key);
+        for (int row = 0; row < DEPTH; row++) {
+            counters.addAndGet(index(hash, row), amount);
+        }
+
+        if (additions.incrementAndGet() % decayPeriod == 0) {
+            decay();
+        }
+    }
+
+    public void increment(String key) {
+        add(key, 1);
+    }
+
+    public long estimate(String key) {
+        long hash = IdHash.of(key);
+        long estimate = Long.MAX_VALUE;
+        for (int row = 0; row < DEPTH; row++) {
+            estimate = Math.min(estimate, counters.get(index(hash, row)));
+        }
+        return estimate;
+    }
+
+    /**
+     * Halves every counter. Concurrent additions may be halved or not, which is within the sketch's error.
+     */
+    public void decay() {
+        for (int i = 0; i < counters.length(); i++) {
+            counters.updateAndGet(i, value -> value >> 1);
+        }
+    }
+
+    private int index(long hash, int row) {
+        return index(hash, row, widthMask);
+    }
+
+    static int rowWidth(int width) {
+        return Integer.highestOneBit(Math.max(2, width - 1)) << 1;
+    }
+
+    static int index(long hash, int row, int widthMask) {
+        // Double hashing: the two halves of the 64-bit hash give independent row positions
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32) | 1;
+        return row * (widthMask + 1) + ((h1 + row * h2) & widthMask);
+    }
+}
@@ -0,0 +1,231 @@
+package ee.digit25.detector.common;
+
+import ee.digit25.detector.config.CacheProperties;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+
+/**
+ * Cache of external entities with refresh-ahead and stale-while-revalidate.
+ * <ul>
+ *     <li>Every entry gets a jittered TTL, so entries loaded in one burst expire spread out.</li>
+ *     <li>Reading an entry in the last part of its life schedules a background bulk reload, so entries that
+ *     are still in use are replaced before they expire.</li>
+ *     <li>Readers that accept stale data get an expired value for a grace period while it is reloaded in the
+ *     background; other readers load it synchronously.</li>
+ * </ul>
+ * Background reloads go through {@link BackgroundLookups}, so they only use spare permits.
+ */
+@Slf4j
+public class EntityCache<V> {
+
+    /**
+     * Notified after an entry was (re)loaded from the API.
+     */
+    @FunctionalInterface
+    public interface RefreshListener {
+
+        void onRefresh(String key);
+    }
+
+    private final String name;
+    private final Function<String, V> loader;
+    private final Function<List<String>, List<V>> bulkLoader;
+    private final Function<V, String> keyOf;
+    private final CacheProperties properties;
+    private final BackgroundLookups backgroundLookups;
+    private final LongSupplier clock;
+
+    private final Map<String, Entry<V>> entries = new ConcurrentHashMap<>();
+    private final Set<String> refreshQueue = ConcurrentHashMap.newKeySet();
+    private final AtomicBoolean refreshScheduled = new AtomicBoolean();
+    private final List<RefreshListener> listeners = new CopyOnWriteArrayList<>();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong staleHits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong refreshed = new AtomicLong();
+
+    public EntityCache(String name, Function<String, V> loader, Function<List<String>, List<V>> bulkLoader,
+                       Function<V, String> keyOf, CacheProperties properties, BackgroundLookups backgroundLookups) {
+        this(name, loader, bulkLoader, keyOf, properties, backgroundLookups, System::currentTimeMillis);
+    }
+
+    EntityCache(String name, Function<String, V> loader, Function<List<String>, List<V>> bulkLoader,
+                Function<V, String> keyOf, CacheProperties properties, BackgroundLookups backgroundLookups,
+                LongSupplier clock) {
+        this.name = name;
+        this.loader = loader;
+        this.bulkLoader = bulkLoader;
+        this.keyOf = keyOf;
+        this.properties = properties;
+        this.backgroundLookups = backgroundLookups;
+        this.clock = clock;
+    }
+
+    public void addRefreshListener(RefreshListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * @param allowStale whether an expired value may be returned while it is reloaded in the background
+     * @return the cached or freshly loaded value, or null when it cannot be loaded
+     */
+    public V get(String key, boolean allowStale) {
+        long now = clock.getAsLong();
+        Entry<V> entry = entries.get(key);
+
+        if (entry != null) {
+            if (now < entry.expiresAt) {
+                hits.incrementAndGet();
+                if (now >= entry.refreshAt) {
+                    requestRefresh(key);
+                }
+                return entry.value;
+            }
+
+            if (allowStale && now < entry.expiresAt + properties.getStaleGrace().toMillis()) {
+                staleHits.incrementAndGet();
+                requestRefresh(key);
+                return entry.value;
+            }
+        }
+
+        misses.incrementAndGet();
+        try {
+            V value = loader.apply(key);
+            if (value != null) {
+                store(key, value, clock.getAsLong());
+            }
+            return value;
+        } catch (Exception e) {
+            log.error("Error fetching {} {}: {}", name, key, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * @return whether a value is cached that has not expired yet
+     */
+    public boolean isFresh(String key) {
+        Entry<V> entry = entries.get(key);
+        return entry != null && clock.getAsLong() < entry.expiresAt;
+    }
+
+    /**
+     * Notes a read that was answered from data derived from the entry, scheduling its refresh-ahead like
+     * {@link #get} would.
+     *
+     * @return whether a value is cached that has not expired yet
+     */
+    public boolean touch(String key) {
+        Entry<V> entry = entries.get(key);
+        long now = clock.getAsLong();
+        if (entry == null || now >= entry.expiresAt) {
+            return false;
+        }
+
+        if (now >= entry.refreshAt) {
+            requestRefresh(key);
+        }
+        return true;
+    }
+
+    /**
+     * @return when a read of the cached value starts scheduling its refresh, which is never after it expires,
+     * or 0 when nothing is cached
+     */
+    public long refreshAt(String key) {
+        Entry<V> entry = entries.get(key);
+        return entry == null ? 0 : entry.refreshAt;
+    }
+
+    /**
+     * Loads the keys that are not fresh with bulk requests on the calling thread.
+     */
+    public void loadMissing(Collection<String> keys) {
+        List<String> missing = keys.stream()
+            .filter(key -> !isFresh(key))
+            .distinct()
+            .toList();
+
+        for (int from = 0; from < missing.size(); from += properties.getBulkSize()) {
+            load(missing.subList(from, Math.min(missing.size(), from + properties.getBulkSize())));
+        }
+    }
+
+    private void requestRefresh(String key) {
+        refreshQueue.add(key);
+        if (refreshScheduled.compareAndSet(false, true) && !backgroundLookups.execute(this::refreshQueued)) {
+            refreshScheduled.set(false);
+        }
+    }
+
+    private void refreshQueued() {
+        refreshScheduled.set(false);
+
+        List<String> keys = new ArrayList<>(Math.min(refreshQueue.size(), properties.getBulkSize()));
+        Iterator<String> queued = refreshQueue.iterator();
+        while (queued.hasNext()) {
+            keys.add(queued.next());
+            queued.remove();
+
+            if (keys.size() == properties.getBulkSize() || !queued.hasNext()) {
+                List<String> chunk = List.copyOf(keys);
+                keys.clear();
+                if (!backgroundLookups.runWithSparePermit(() -> load(chunk))) {
+                    // No spare capacity, keep the keys for the next read that asks for a refresh
+                    refreshQueue.addAll(chunk);
+                    return;
+                }
+            }
+        }
+    }
+
+    private void load(List<String> keys) {
+        try {
+            List<V> values = bulkLoader.apply(keys);
+            long now = clock.getAsLong();
+            for (V value : values) {
+                store(keyOf.apply(value), value, now);
+                refreshed.incrementAndGet();
+            }
+        } catch (Exception e) {
+            log.warn("Error loading {} {}s: {}", keys.size(), name, e.getMessage());
+        }
+    }
+
+    private void store(String key, V value, long now) {
+        entries.put(key, newEntry(value, now));
+        for (RefreshListener listener : listeners) {
+            listener.onRefresh(key);
+        }
+    }
+
+    private Entry<V> newEntry(V value, long now) {
+        long ttl = properties.getTtl().toMillis();
+        double jitter = properties.getJitter();
+        long jitteredTtl = (long) (ttl * (1 + jitter * (2 * ThreadLocalRandom.current().nextDouble() - 1)));
+        return new Entry<>(value, now + (long) (jitteredTtl * properties.getRefreshAhead()), now + jitteredTtl);
+    }
+
+    public String stats() {
+        return String.format("%s: %d entries, %d hits, %d stale hits, %d misses, %d refreshed, %d queued",
+            name, entries.size(), hits.get(), staleHits.get(), misses.get(), refreshed.get(), refreshQueue.size());
+    }
+
+    private record Entry<V>(V value, long refreshAt, long expiresAt) {
+    }
+}
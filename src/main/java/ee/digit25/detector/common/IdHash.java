@@ -0,0 +1,27 @@
+package ee.digit25.detector.common;
+
+/**
+ * 64-bit hash of transaction ids for compact id registries. Never returns 0, which marks an empty slot.
+ */
+public final class IdHash {
+
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private IdHash() {
+    }
+
+    public static long of(String id) {
+        long hash = FNV_OFFSET;
+        for (int i = 0; i < id.length(); i++) {
+            hash ^= id.charAt(i);
+            hash *= FNV_PRIME;
+        }
+
+        // Final avalanche so that both halves are usable as independent indexes
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        return hash == 0 ? 1 : hash;
+    }
+}
@@ -0,0 +1,53 @@
+package ee.digit25.detector.config;
+
+import jakarta.validation.constraints.DecimalMax;
+import jakarta.validation.constraints.DecimalMin;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotNull;
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+import org.springframework.validation.annotation.Validated;
+
+import java.time.Duration;
+
+/**
+ * Entity cache tuning shared by the person, account and device caches.
+ */
+@Getter
+@Setter
+@Component
+@Validated
+@ConfigurationProperties("detector.cache")
+public class CacheProperties {
+
+    @NotNull
+    private Duration ttl = Duration.ofMinutes(5);
+
+    /**
+     * Every entry lives {@code ttl * (1 +- jitter)} so that entries loaded together do not expire together.
+     */
+    @DecimalMin("0.0")
+    @DecimalMax("0.5")
+    private double jitter = 0.1;
+
+    /**
+     * Share of the TTL after which a read schedules a background reload of the entry.
+     */
+    @DecimalMin("0.1")
+    @DecimalMax("1.0")
+    private double refreshAhead = 0.8;
+
+    /**
+     * How long past expiry a value may still be served to readers that accept stale data while it is reloaded.
+     */
+    @NotNull
+    private Duration staleGrace = Duration.ofMinutes(1);
+
+    /**
+     * Keys per bulk reload request.
+     */
+    @Min(1)
+    private int bulkSize = 100;
+}
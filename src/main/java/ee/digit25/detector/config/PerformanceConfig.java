@@ -1,12 +1,14 @@
 package ee.digit25.detector.config;
 
+import ee.digit25.detector.api.LocalRequestPermits;
+import ee.digit25.detector.api.RequestPermits;
+import ee.digit25.detector.coordination.ProcessCoordinator;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.scheduling.annotation.EnableScheduling;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 
 import java.util.concurrent.Executor;
-import java.util.concurrent.Semaphore;
 
 @Configuration
 @EnableScheduling
@@ -14,11 +16,14 @@ public class PerformanceConfig {
     
     private static final int MAX_CONCURRENT_REQUESTS = 45; // Leave some headroom from the 50 limit
     private static final int MAX_PENDING_TRANSACTIONS = 9000; // Leave headroom from 10000 limit
-    private static final int OPTIMAL_BATCH_SIZE = 100; // Optimal batch size for our resources
     
     @Bean
-    public Semaphore apiRequestSemaphore() {
-        return new Semaphore(MAX_CONCURRENT_REQUESTS);
+    public RequestPermits apiRequestPermits(ProcessCoordinator coordinator) {
+        // Several processes sharing the token draw from one host-wide budget
+        if (coordinator.isEnabled()) {
+            return coordinator.permits();
+        }
+        return new LocalRequestPermits(MAX_CONCURRENT_REQUESTS);
     }
     
     @Bean
@@ -32,8 +37,19 @@ public class PerformanceConfig {
         return executor;
     }
     
+    /**
+     * Speculative entity lookups that must never delay validation: few low-priority threads and a bounded
+     * queue that rejects work instead of piling it up.
+     */
     @Bean
-    public int optimalBatchSize() {
-        return OPTIMAL_BATCH_SIZE;
+    public Executor backgroundLookupExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(2);
+        executor.setMaxPoolSize(2);
+        executor.setQueueCapacity(100);
+        executor.setThreadPriority(Thread.MIN_PRIORITY);
+        executor.setThreadNamePrefix("BackgroundLookup-");
+        executor.initialize();
+        return executor;
     }
 } 
\ No newline at end of file
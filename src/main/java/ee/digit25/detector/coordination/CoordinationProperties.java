@@ -0,0 +1,65 @@
+package ee.digit25.detector.coordination;
+
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotNull;
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+import org.springframework.validation.annotation.Validated;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+/**
+ * Settings for running several detector processes on one host under a single token. All processes must use
+ * the same file and the same sizes.
+ */
+@Getter
+@Setter
+@Component
+@Validated
+@ConfigurationProperties("detector.coordination")
+public class CoordinationProperties {
+
+    private boolean enabled = false;
+
+    @NotNull
+    private Path file = Path.of(System.getProperty("java.io.tmpdir"), "detector-coordination.mmap");
+
+    /**
+     * Concurrent outbound calls shared by all processes.
+     */
+    @Min(1)
+    @Max(50)
+    private int permits = 45;
+
+    @Min(2)
+    @Max(255)
+    private int maxProcesses = 16;
+
+    /**
+     * A process that has not renewed its lease for this long is considered dead and its permits are reclaimed.
+     */
+    @NotNull
+    private Duration leaseTimeout = Duration.ofSeconds(10);
+
+    /**
+     * How long a fetched transaction stays claimed by the process that fetched it.
+     */
+    @NotNull
+    private Duration claimTtl = Duration.ofMinutes(2);
+
+    /**
+     * Registry partitions, a power of two. An id is only ever probed for within its own partition.
+     */
+    @Min(1)
+    private int registryPartitions = 16;
+
+    /**
+     * Entries per registry partition, a power of two.
+     */
+    @Min(64)
+    private int registryPartitionCapacity = 4096;
+}
@@ -0,0 +1,411 @@
+package ee.digit25.detector.coordination;
+
+import ee.digit25.detector.api.RequestPermits;
+import ee.digit25.detector.common.IdHash;
+import ee.digit25.detector.domain.transaction.external.api.Transaction;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.LongPredicate;
+
+/**
+ * Lets several detector processes on one host share a token through {@link SharedCoordinationFile}.
+ * <p>
+ * Each process leases a slot in the file and renews it every second from its own heartbeat thread, so slow
+ * scheduled work can never let the lease lapse. Outbound call permits are counted per slot
+ * ({@link SharedPermits}) and fetched transactions are claimed in a partitioned id registry, so two
+ * processes never decide the same transaction. When a process stops renewing its lease, or its pid is gone,
+ * the survivors reclaim its slot, its permits and its claims. A process that finds its lease lost registers
+ * again and carries the permits it still holds over to the new slot.
+ * <p>
+ * A registry entry is claimed in three steps: its stamp is taken with a writer marker, the key is written,
+ * and the chain is checked for a competing claim of the same id before the final stamp is published.
+ * Readers wait while an entry is being written, and of two competing writers the one further along the
+ * chain backs off, so an id is never claimed by two live processes.
+ */
+@Slf4j
+@Component
+public class ProcessCoordinator {
+
+    private static final int MAX_PROBES = 32;
+    private static final int MAX_ATTEMPTS = 8;
+    private static final long WRITE_TIMEOUT_MILLIS = 1000;
+    private static final long HEARTBEAT_MILLIS = 1000;
+
+    private enum Resolution { WIN, LOSE, RETRY }
+
+    private final CoordinationProperties properties;
+    private final long pid;
+    private final LongPredicate processAlive;
+    private final AtomicLong duplicatesDropped = new AtomicLong();
+    private final AtomicLong permitsReclaimed = new AtomicLong();
+    private final AtomicLong leasesLost = new AtomicLong();
+
+    private final ReentrantReadWriteLock leaseLock = new ReentrantReadWriteLock();
+    private final AtomicInteger heldPermits = new AtomicInteger();
+
+    private SharedCoordinationFile file;
+    private volatile int slot = -1;
+    private volatile long generation;
+    private SharedPermits permits;
+    private ScheduledExecutorService heartbeat;
+
+    @Autowired
+    public ProcessCoordinator(CoordinationProperties properties) {
+        this(properties, ProcessHandle.current().pid(),
+            candidate -> ProcessHandle.of(candidate).map(ProcessHandle::isAlive).orElse(false), true);
+    }
+
+    ProcessCoordinator(CoordinationProperties properties, long pid, LongPredicate processAlive,
+                       boolean startHeartbeat) {
+        this.properties = properties;
+        this.pid = pid;
+        this.processAlive = processAlive;
+        if (!properties.isEnabled()) {
+            return;
+        }
+
+        try {
+            this.file = new SharedCoordinationFile(properties);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not open coordination file " + properties.getFile(), e);
+        }
+        this.permits = new SharedPermits(this);
+        register();
+        log.info("Coordinating through {} as process slot {} (pid {})", properties.getFile(), slot, pid);
+
+        if (startHeartbeat) {
+            this.heartbeat = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "coordination-heartbeat");
+                thread.setDaemon(true);
+                thread.setPriority(Thread.MAX_PRIORITY);
+                return thread;
+            });
+            heartbeat.scheduleWithFixedDelay(this::renewLease, HEARTBEAT_MILLIS, HEARTBEAT_MILLIS,
+                TimeUnit.MILLISECONDS);
+        }
+    }
+
+    public boolean isEnabled() {
+        return file != null;
+    }
+
+    /**
+     * @return the host-wide permit counter, only when coordination is enabled
+     */
+    public RequestPermits permits() {
+        if (!isEnabled()) {
+            throw new IllegalStateException("Process coordination is disabled");
+        }
+        return permits;
+    }
+
+    /**
+     * Removes the transactions another live process has already claimed and claims the rest for this process.
+     */
+    public void retainClaimed(List<Transaction> transactions) {
+        if (!isEnabled()) return;
+
+        int before = transactions.size();
+        transactions.removeIf(transaction -> !claim(transaction.getId()));
+        int dropped = before - transactions.size();
+        if (dropped > 0) {
+            duplicatesDropped.addAndGet(dropped);
+            log.info("Dropped {} transactions claimed by other detector processes", dropped);
+        }
+    }
+
+    /**
+     * Gives up this process's claims of transactions it could not decide, so another process can take them over
+     * when the service delivers them again instead of waiting for the claims to expire.
+     */
+    public void release(List<Transaction> transactions) {
+        if (!isEnabled()) return;
+
+        for (Transaction transaction : transactions) {
+            release(transaction.getId());
+        }
+    }
+
+    void release(String transactionId) {
+        long key = IdHash.of(transactionId);
+        long index = file.firstEntry(key);
+        for (int probe = 0; probe < MAX_PROBES; probe++, index = file.nextEntry(index)) {
+            long stamp = awaitWritten(index);
+            long entryKey = file.entryKey(index);
+            if (entryKey == key && isMine(stamp)) {
+                // The key stays, so a later claim of the id reuses this entry; losing the CAS means it was taken over
+                file.casEntryStamp(index, stamp, 0);
+                return;
+            }
+            if (entryKey == 0 && stamp == 0) {
+                return;
+            }
+        }
+    }
+
+    boolean claim(String transactionId) {
+        long key = IdHash.of(transactionId);
+        long first = file.firstEntry(key);
+
+        for (int attempt = 0; attempt < MAX_ATTEMPTS; attempt++) {
+            long now = System.currentTimeMillis();
+
+            // Look at the whole chain first, a live claim of this id may sit behind a reusable entry
+            long target = -1;
+            long targetStamp = 0;
+            int targetProbe = -1;
+            boolean sameKey = false;
+            long index = first;
+            for (int probe = 0; probe < MAX_PROBES; probe++, index = file.nextEntry(index)) {
+                long stamp = awaitWritten(index);
+                long entryKey = file.entryKey(index);
+
+                if (entryKey == key) {
+                    if (isMine(stamp)) {
+                        return true;
+                    }
+                    if (isLive(stamp, now)) {
+                        return false;
+                    }
+                    if (!sameKey) {
+                        // Reusing the expired entry of the same id keeps every claimant on one entry
+                        target = index;
+                        targetStamp = stamp;
+                        targetProbe = probe;
+                        sameKey = true;
+                    }
+                } else if (target < 0 && !isLive(stamp, now)) {
+                    target = index;
+                    targetStamp = stamp;
+                    targetProbe = probe;
+                }
+
+                if (entryKey == 0 && stamp == 0) {
+                    break; // Entries are never emptied again, so the chain ends here
+                }
+            }
+
+            if (target < 0) {
+                // Partition is saturated around this id; processing twice is cheaper than not processing at all
+                return true;
+            }
+
+            if (!file.casEntryStamp(target, targetStamp, writerStamp(now))) {
+                continue;
+            }
+            if (!sameKey) {
+                file.setEntryKey(target, key);
+            }
+
+            switch (resolve(key, first, target, targetProbe)) {
+                case WIN -> {
+                    file.setEntryStamp(target, SharedCoordinationFile.stamp(slot, generation, now));
+                    return true;
+                }
+                case LOSE -> {
+                    file.setEntryStamp(target, 0);
+                    return false;
+                }
+                case RETRY -> file.setEntryStamp(target, 0);
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Checks the chain for a competing claim of the same id while our entry carries the writer marker. A writer
+     * further along the chain is waited for, one earlier in the chain wins, so exactly one claimant proceeds.
+     */
+    private Resolution resolve(long key, long first, long target, int targetProbe) {
+        long index = first;
+        for (int probe = 0; probe < MAX_PROBES; probe++, index = file.nextEntry(index)) {
+            if (index == target) continue;
+
+            long stamp = file.entryStamp(index);
+            long entryKey = file.entryKey(index);
+            if (entryKey == 0 && stamp == 0) {
+                return Resolution.WIN;
+            }
+            if (entryKey != key) continue;
+
+            long now = System.currentTimeMillis();
+            if (isBeingWritten(stamp, now)) {
+                if (probe < targetProbe) {
+                    return Resolution.RETRY;
+                }
+                stamp = awaitWritten(index);
+                if (file.entryKey(index) != key) continue;
+            }
+            if (isLive(stamp, System.currentTimeMillis())) {
+                return Resolution.LOSE;
+            }
+        }
+        return Resolution.WIN;
+    }
+
+    /**
+     * @return the stamp of the entry once no writer is working on it, or the stale marker of a writer that died
+     */
+    private long awaitWritten(long index) {
+        long backoff = TimeUnit.MICROSECONDS.toNanos(10);
+        long stamp = file.entryStamp(index);
+        while (isBeingWritten(stamp, System.currentTimeMillis())) {
+            LockSupport.parkNanos(backoff);
+            backoff = Math.min(backoff * 2, TimeUnit.MILLISECONDS.toNanos(1));
+            stamp = file.entryStamp(index);
+        }
+        return stamp;
+    }
+
+    private long writerStamp(long now) {
+        return SharedCoordinationFile.stamp(SharedCoordinationFile.WRITER_SLOT, 0, now);
+    }
+
+    private static boolean isWriter(long stamp) {
+        return stamp != 0 && SharedCoordinationFile.stampSlot(stamp) == SharedCoordinationFile.WRITER_SLOT;
+    }
+
+    private static boolean isBeingWritten(long stamp, long now) {
+        return isWriter(stamp) && now - SharedCoordinationFile.stampMillis(stamp) < WRITE_TIMEOUT_MILLIS;
+    }
+
+    boolean tryAcquirePermit() {
+        leaseLock.readLock().lock();
+        try {
+            if (!file.tryAcquirePermit(slot, generation)) {
+                return false;
+            }
+            heldPermits.incrementAndGet();
+            return true;
+        } finally {
+            leaseLock.readLock().unlock();
+        }
+    }
+
+    void releasePermit() {
+        leaseLock.readLock().lock();
+        try {
+            heldPermits.decrementAndGet();
+            // Not counted any more when the lease was lost and not registered again yet
+            file.releasePermit(slot, generation);
+        } finally {
+            leaseLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return permits in use by all processes together
+     */
+    long sharedPermitsInUse() {
+        return file.heldPermits();
+    }
+
+    void renewLease() {
+        if (!isEnabled()) return;
+
+        try {
+            long now = System.currentTimeMillis();
+            if (file.pid(slot) != pid || file.generation(slot) != generation) {
+                leasesLost.incrementAndGet();
+                log.warn("Lease of process slot {} was lost, registering again with {} permits in use",
+                    slot, heldPermits.get());
+                register();
+            } else {
+                file.heartbeat(slot, now);
+            }
+
+            for (int other = 0; other < file.getMaxProcesses(); other++) {
+                long otherPid = file.pid(other);
+                if (other != slot && otherPid != 0 && isDead(other, otherPid, now) && file.reclaim(other, otherPid)) {
+                    permitsReclaimed.incrementAndGet();
+                    log.warn("Reclaimed process slot {} of dead detector process {}", other, otherPid);
+                }
+            }
+        } catch (RuntimeException e) {
+            // Keep the heartbeat running, an exception would cancel the periodic task
+            log.error("Could not renew coordination lease: {}", e.getMessage(), e);
+        }
+    }
+
+    @Scheduled(fixedRate = 5000)
+    public void logMetrics() {
+        if (!isEnabled()) return;
+
+        log.info("Process coordination: slot {}, shared permits in use {}/{}, duplicates dropped {}, slots reclaimed {}, leases lost {}",
+            slot, file.heldPermits(), file.getPermits(), duplicatesDropped.get(), permitsReclaimed.get(),
+            leasesLost.get());
+    }
+
+    @PreDestroy
+    public void shutdown() throws IOException {
+        if (!isEnabled()) return;
+
+        if (heartbeat != null) {
+            heartbeat.shutdownNow();
+        }
+        file.reclaim(slot, pid);
+        file.close();
+    }
+
+    private void register() {
+        leaseLock.writeLock().lock();
+        try {
+            long now = System.currentTimeMillis();
+            for (int attempt = 0; attempt < 2; attempt++) {
+                for (int candidate = 0; candidate < file.getMaxProcesses(); candidate++) {
+                    long owner = file.pid(candidate);
+                    // A slot still carrying our own pid belongs to an earlier incarnation or a lost lease of ours
+                    if (owner != 0 && (owner == pid || isDead(candidate, owner, now))) {
+                        file.reclaim(candidate, owner);
+                    }
+                    long registered = file.register(candidate, pid, now, heldPermits.get());
+                    if (registered > 0) {
+                        slot = candidate;
+                        generation = registered;
+                        return;
+                    }
+                }
+            }
+            throw new IllegalStateException("All " + file.getMaxProcesses() + " coordination slots are taken");
+        } finally {
+            leaseLock.writeLock().unlock();
+        }
+    }
+
+    private boolean isDead(int candidate, long candidatePid, long now) {
+        return now - file.heartbeat(candidate) > properties.getLeaseTimeout().toMillis()
+            || !processAlive.test(candidatePid);
+    }
+
+    private boolean isMine(long stamp) {
+        return !isWriter(stamp)
+            && SharedCoordinationFile.stampSlot(stamp) == slot
+            && SharedCoordinationFile.stampGeneration(stamp) == SharedCoordinationFile.stampedGeneration(generation);
+    }
+
+    private boolean isLive(long stamp, long now) {
+        if (stamp == 0 || isWriter(stamp)
+            || now - SharedCoordinationFile.stampMillis(stamp) > properties.getClaimTtl().toMillis()) {
+            return false;
+        }
+
+        int owner = SharedCoordinationFile.stampSlot(stamp);
+        return file.pid(owner) != 0
+            && SharedCoordinationFile.stampedGeneration(file.generation(owner)) == SharedCoordinationFile.stampGeneration(stamp);
+    }
+}
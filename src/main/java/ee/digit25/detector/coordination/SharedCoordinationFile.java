@@ -0,0 +1,305 @@
+package ee.digit25.detector.coordination;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Memory-mapped state shared by the detector processes of one host.
+ * <p>
+ * Layout, all values 8-byte aligned longs updated with volatile and CAS access through a {@link VarHandle}:
+ * <pre>
+ * header   : magic, version, permits, maxProcesses, partitions, partitionCapacity, (padding)
+ * process  : maxProcesses x [pid, heartbeatMillis, heldPermits, generation]
+ * registry : partitions x partitionCapacity x [idHash, stamp]
+ * </pre>
+ * A registry stamp packs the claiming process slot generation (14 bits), its slot (8 bits) and the claim time
+ * in epoch milliseconds (42 bits, enough until 2109). A stale claim is only mistaken for a live one if its
+ * slot was registered again a multiple of 16384 times within one claim TTL. A process registers at most once
+ * per heartbeat, so with the default two minute TTL that takes over a hundred processes losing their lease
+ * every second. Slot {@link #WRITER_SLOT}, which no process can hold, marks an entry whose
+ * key is being written. The held permits of a process are packed with the low 32 bits of its slot generation,
+ * so a release made under a lost lease can never decrement the count of the slot's next owner.
+ */
+class SharedCoordinationFile implements AutoCloseable {
+
+    private static final VarHandle LONGS = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+
+    private static final long MAGIC = 0x4449474954323543L; // "DIGIT25C"
+    private static final long VERSION = 2;
+    private static final int HEADER_BYTES = 64;
+    private static final int PROCESS_BYTES = 32;
+    private static final int ENTRY_BYTES = 16;
+
+    private static final int PID = 0;
+    private static final int HEARTBEAT = 8;
+    private static final int HELD = 16;
+    private static final int GENERATION = 24;
+
+    private static final int TIME_BITS = 42;
+    private static final int SLOT_BITS = 8;
+    private static final long TIME_MASK = (1L << TIME_BITS) - 1;
+    private static final long GENERATION_MASK = (1L << (64 - TIME_BITS - SLOT_BITS)) - 1;
+    private static final long COUNT_MASK = 0xFFFFFFFFL;
+
+    static final int WRITER_SLOT = 0xFF;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final int permits;
+    private final int maxProcesses;
+    private final int partitions;
+    private final int partitionCapacity;
+    private final long registryOffset;
+
+    SharedCoordinationFile(CoordinationProperties properties) throws IOException {
+        this.permits = properties.getPermits();
+        this.maxProcesses = properties.getMaxProcesses();
+        this.partitions = requirePowerOfTwo(properties.getRegistryPartitions(), "registry-partitions");
+        this.partitionCapacity = requirePowerOfTwo(properties.getRegistryPartitionCapacity(), "registry-partition-capacity");
+        this.registryOffset = HEADER_BYTES + (long) maxProcesses * PROCESS_BYTES;
+        long size = registryOffset + (long) partitions * partitionCapacity * ENTRY_BYTES;
+
+        this.channel = FileChannel.open(properties.getFile(),
+            StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try (FileLock ignored = channel.lock()) {
+            this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            initialize();
+        }
+    }
+
+    private void initialize() {
+        long magic = get(0);
+        if (magic == 0) {
+            set(8, VERSION);
+            set(16, permits);
+            set(24, maxProcesses);
+            set(32, partitions);
+            set(40, partitionCapacity);
+            set(0, MAGIC);
+            return;
+        }
+
+        if (magic != MAGIC || get(8) != VERSION || get(16) != permits || get(24) != maxProcesses
+            || get(32) != partitions || get(40) != partitionCapacity) {
+            throw new IllegalStateException("Coordination file was created by an incompatible detector configuration");
+        }
+    }
+
+    int getMaxProcesses() {
+        return maxProcesses;
+    }
+
+    int getPermits() {
+        return permits;
+    }
+
+    // Process table
+
+    long pid(int slot) {
+        return get(processOffset(slot) + PID);
+    }
+
+    long heartbeat(int slot) {
+        return get(processOffset(slot) + HEARTBEAT);
+    }
+
+    long generation(int slot) {
+        return get(processOffset(slot) + GENERATION);
+    }
+
+    void heartbeat(int slot, long millis) {
+        set(processOffset(slot) + HEARTBEAT, millis);
+    }
+
+    /**
+     * Takes over a free slot. Only one process can win the CAS on the pid.
+     *
+     * @param carriedPermits permits the process still holds from a lease it lost, counted against the new slot
+     * @return the generation of the new lease, or -1 when the slot is taken
+     */
+    long register(int slot, long pid, long now, int carriedPermits) {
+        long offset = processOffset(slot);
+        if (!cas(offset + PID, 0, pid)) {
+            return -1;
+        }
+        long generation = add(offset + GENERATION, 1) + 1;
+        set(offset + HEARTBEAT, now);
+        set(offset + HELD, held(generation, carriedPermits));
+        return generation;
+    }
+
+    /**
+     * Frees the slot of a dead process and drops the permits it held. The CAS on the pid makes sure only one
+     * survivor reclaims it.
+     */
+    boolean reclaim(int slot, long expectedPid) {
+        long offset = processOffset(slot);
+        if (!cas(offset + PID, expectedPid, 0)) {
+            return false;
+        }
+        set(offset + HELD, 0);
+        return true;
+    }
+
+    // Permits
+
+    /**
+     * Optimistically counts the permit against the slot, then backs off if all slots together exceed the
+     * limit. Because both steps are sequentially consistent, concurrent acquirers can never all pass.
+     *
+     * @return false when the limit is reached or the lease of the given generation is gone
+     */
+    boolean tryAcquirePermit(int slot, long generation) {
+        long heldOffset = processOffset(slot) + HELD;
+        long held;
+        do {
+            held = get(heldOffset);
+            if (!isGeneration(held, generation)) {
+                return false;
+            }
+        } while (!cas(heldOffset, held, held + 1));
+
+        if (heldPermits() <= permits) {
+            return true;
+        }
+        releasePermit(slot, generation);
+        return false;
+    }
+
+    /**
+     * @return false when the permit was not counted any more, because the lease of the generation is gone
+     */
+    boolean releasePermit(int slot, long generation) {
+        long heldOffset = processOffset(slot) + HELD;
+        long held;
+        do {
+            held = get(heldOffset);
+            if (!isGeneration(held, generation) || (held & COUNT_MASK) == 0) {
+                return false;
+            }
+        } while (!cas(heldOffset, held, held - 1));
+        return true;
+    }
+
+    long heldPermits() {
+        long total = 0;
+        for (int slot = 0; slot < maxProcesses; slot++) {
+            total += get(processOffset(slot) + HELD) & COUNT_MASK;
+        }
+        return total;
+    }
+
+    private static long held(long generation, int count) {
+        return (generation & COUNT_MASK) << 32 | count;
+    }
+
+    private static boolean isGeneration(long held, long generation) {
+        return held >>> 32 == (generation & COUNT_MASK);
+    }
+
+    // Registry
+
+    long entryKey(long index) {
+        return get(entryOffset(index));
+    }
+
+    long entryStamp(long index) {
+        return get(entryOffset(index) + 8);
+    }
+
+    void setEntryStamp(long index, long stamp) {
+        set(entryOffset(index) + 8, stamp);
+    }
+
+    boolean casEntryStamp(long index, long expected, long stamp) {
+        return cas(entryOffset(index) + 8, expected, stamp);
+    }
+
+    void setEntryKey(long index, long key) {
+        set(entryOffset(index), key);
+    }
+
+    /**
+     * @return index of the first entry to probe for the hash, within the partition picked by its high bits
+     */
+    long firstEntry(long hash) {
+        long partition = (hash >>> 40) & (partitions - 1);
+        return partition * partitionCapacity + (hash & (partitionCapacity - 1));
+    }
+
+    /**
+     * @return index of the next probe, wrapping within the same partition
+     */
+    long nextEntry(long index) {
+        long partitionStart = index - (index & (partitionCapacity - 1));
+        return partitionStart + ((index + 1) & (partitionCapacity - 1));
+    }
+
+    static long stamp(int slot, long generation, long millis) {
+        return (stampedGeneration(generation) << (TIME_BITS + SLOT_BITS))
+            | ((long) (slot & 0xFF) << TIME_BITS)
+            | (millis & TIME_MASK);
+    }
+
+    static int stampSlot(long stamp) {
+        return (int) (stamp >>> TIME_BITS) & 0xFF;
+    }
+
+    static long stampGeneration(long stamp) {
+        return stamp >>> (TIME_BITS + SLOT_BITS);
+    }
+
+    /**
+     * @return the part of a slot generation a stamp carries, to compare with {@link #stampGeneration}
+     */
+    static long stampedGeneration(long generation) {
+        return generation & GENERATION_MASK;
+    }
+
+    static long stampMillis(long stamp) {
+        return stamp & TIME_MASK;
+    }
+
+    @Override
+    public void close() throws IOException {
+        buffer.force();
+        channel.close();
+    }
+
+    private long processOffset(int slot) {
+        return HEADER_BYTES + (long) slot * PROCESS_BYTES;
+    }
+
+    private long entryOffset(long index) {
+        return registryOffset + index * ENTRY_BYTES;
+    }
+
+    private long get(long offset) {
+        return (long) LONGS.getVolatile(buffer, (int) offset);
+    }
+
+    private void set(long offset, long value) {
+        LONGS.setVolatile(buffer, (int) offset, value);
+    }
+
+    private boolean cas(long offset, long expected, long value) {
+        return LONGS.compareAndSet(buffer, (int) offset, expected, value);
+    }
+
+    private long add(long offset, long delta) {
+        return (long) LONGS.getAndAdd(buffer, (int) offset, delta);
+    }
+
+    private static int requirePowerOfTwo(int value, String name) {
+        if (Integer.bitCount(value) != 1) {
+            throw new IllegalArgumentException("detector.coordination." + name + " must be a power of two");
+        }
+        return value;
+    }
+}
@@ -0,0 +1,45 @@
+package ee.digit25.detector.coordination;
+
+import ee.digit25.detector.api.RequestPermits;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * {@link RequestPermits} counted in the shared coordination file, so that all detector processes of the host
+ * together stay within one token's concurrent request limit. Permits are held on behalf of the process lease
+ * and are reclaimed if the process dies.
+ */
+public class SharedPermits implements RequestPermits {
+
+    private static final long MIN_BACKOFF_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+    private static final long MAX_BACKOFF_NANOS = TimeUnit.MILLISECONDS.toNanos(2);
+
+    private final ProcessCoordinator coordinator;
+
+    SharedPermits(ProcessCoordinator coordinator) {
+        this.coordinator = coordinator;
+    }
+
+    @Override
+    public boolean tryAcquire() {
+        return coordinator.tryAcquirePermit();
+    }
+
+    @Override
+    public void acquire() throws InterruptedException {
+        long backoff = MIN_BACKOFF_NANOS;
+        while (!tryAcquire()) {
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+            LockSupport.parkNanos(this, backoff);
+            backoff = Math.min(backoff * 2, MAX_BACKOFF_NANOS);
+        }
+    }
+
+    @Override
+    public void release() {
+        coordinator.releasePermit();
+    }
+}
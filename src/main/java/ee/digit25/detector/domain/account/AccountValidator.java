@@ -1,35 +1,44 @@
 package ee.digit25.detector.domain.account;
 
+import ee.digit25.detector.common.BackgroundLookups;
+import ee.digit25.detector.common.EntityCache;
+import ee.digit25.detector.config.CacheProperties;
 import ee.digit25.detector.domain.account.external.AccountRequester;
 import ee.digit25.detector.domain.account.external.api.Account;
-import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 
 import java.math.BigDecimal;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.Collection;
 
 @Slf4j
 @Service
-@RequiredArgsConstructor
-public class AccountValidator {
+public class AccountValidator implements BalanceCheck {
 
-    private final AccountRequester requester;
-    // Cache account information for 5 minutes
-    private final Map<String, Account> accountCache = new ConcurrentHashMap<>();
-    private final Map<String, Long> cacheTimestamps = new ConcurrentHashMap<>();
-    private static final long CACHE_DURATION = 5 * 60 * 1000; // 5 minutes in milliseconds
+    private final EntityCache<Account> cache;
+
+    public AccountValidator(AccountRequester requester, CacheProperties cacheProperties, BackgroundLookups backgroundLookups) {
+        this.cache = new EntityCache<Account>("account", requester::get, requester::get, Account::getNumber,
+            cacheProperties, backgroundLookups);
+    }
 
     public boolean isValidSenderAccount(String accountNumber, BigDecimal amount, String senderPersonCode) {
         log.info("Checking if account {} is valid sender account", accountNumber);
-        
-        Account account = getAccount(accountNumber);
+
+        // Quick checks first, most expensive check last
+        return isUsableSenderAccount(accountNumber, senderPersonCode) && hasSufficientBalance(accountNumber, amount);
+    }
+
+    /**
+     * Sender account checks that do not depend on the amount: the account exists, is open and is owned by
+     * the sender. Ownership and closure change rarely, so a stale account is accepted while it is reloaded.
+     */
+    public boolean isUsableSenderAccount(String accountNumber, String senderPersonCode) {
+        Account account = cache.get(accountNumber, true);
         if (account == null) {
             return false;
         }
 
-        // Quick checks first
         if (account.getClosed()) {
             log.info("Account {} is closed", accountNumber);
             return false;
@@ -40,7 +49,19 @@ public class AccountValidator {
             return false;
         }
 
-        // Most expensive check last
+        return true;
+    }
+
+    /**
+     * Balances move with every transaction, so this check never uses a stale account.
+     */
+    @Override
+    public boolean hasSufficientBalance(String accountNumber, BigDecimal amount) {
+        Account account = cache.get(accountNumber, false);
+        if (account == null) {
+            return false;
+        }
+
         if (account.getBalance().compareTo(amount) < 0) {
             log.info("Account {} has insufficient balance", accountNumber);
             return false;
@@ -52,7 +73,7 @@ public class AccountValidator {
     public boolean isValidRecipientAccount(String accountNumber, String recipientPersonCode) {
         log.info("Checking if account {} is valid recipient account", accountNumber);
         
-        Account account = getAccount(accountNumber);
+        Account account = cache.get(accountNumber, true);
         if (account == null) {
             return false;
         }
@@ -70,24 +91,53 @@ public class AccountValidator {
         return true;
     }
 
-    private Account getAccount(String accountNumber) {
-        long currentTime = System.currentTimeMillis();
-        Long timestamp = cacheTimestamps.get(accountNumber);
-        
-        // Check if we have a valid cached account
-        if (timestamp != null && (currentTime - timestamp) < CACHE_DURATION) {
-            return accountCache.get(accountNumber);
-        }
+    /**
+     * @return the fresh account, fetching it when missing or expired, or null when it cannot be fetched
+     */
+    public Account findAccount(String accountNumber) {
+        return cache.get(accountNumber, false);
+    }
 
-        // If not in cache or expired, fetch from API
-        try {
-            Account account = requester.get(accountNumber);
-            accountCache.put(accountNumber, account);
-            cacheTimestamps.put(accountNumber, currentTime);
-            return account;
-        } catch (Exception e) {
-            log.error("Error fetching account {}: {}", accountNumber, e.getMessage());
-            return null;
-        }
+    /**
+     * @return whether a fresh account is cached, i.e. validating it will not call the API
+     */
+    public boolean isCached(String accountNumber) {
+        return cache.isFresh(accountNumber);
+    }
+
+    /**
+     * Counts a validation answered from memoised results as a read of the account, so it is refreshed ahead of
+     * expiry like any other account in use.
+     *
+     * @return whether the account is still cached and fresh
+     */
+    public boolean touch(String accountNumber) {
+        return cache.touch(accountNumber);
+    }
+
+    /**
+     * @return until when results derived from the cached account can be used without touching it, or 0 when it is
+     * not cached
+     */
+    public long refreshAt(String accountNumber) {
+        return cache.refreshAt(accountNumber);
+    }
+
+    /**
+     * Loads the given accounts that are not cached yet with bulk requests.
+     */
+    public void prefetch(Collection<String> accountNumbers) {
+        cache.loadMissing(accountNumbers);
+    }
+
+    /**
+     * Registers a listener that is told whenever an account is reloaded into the cache.
+     */
+    public void addRefreshListener(EntityCache.RefreshListener listener) {
+        cache.addRefreshListener(listener);
+    }
+
+    public String cacheStats() {
+        return cache.stats();
     }
 }
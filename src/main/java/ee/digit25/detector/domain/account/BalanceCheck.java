@@ -0,0 +1,13 @@
+package ee.digit25.detector.domain.account;
+
+import java.math.BigDecimal;
+
+/**
+ * Decides whether an account can cover a debit. Lets callers that track their own view of balances plug it
+ * into transaction validation.
+ */
+@FunctionalInterface
+public interface BalanceCheck {
+
+    boolean hasSufficientBalance(String accountNumber, BigDecimal amount);
+}
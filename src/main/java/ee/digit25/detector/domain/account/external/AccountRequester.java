@@ -1,6 +1,13 @@
 package ee.digit25.detector.domain.account.external;
 
 import ee.bitweb.core.retrofit.RetrofitRequestExecutor;
+import ee.digit25.detector.api.Bulkheads;
+import ee.digit25.detector.api.CallClass;
+import ee.digit25.detector.api.HedgedRequestExecutor;
+import ee.digit25.detector.capture.EntityKind;
+import ee.digit25.detector.capture.TimedResponse;
+import ee.digit25.detector.capture.TrafficCapture;
+import ee.digit25.detector.capture.TrafficReplay;
 import ee.digit25.detector.domain.account.external.api.Account;
 import ee.digit25.detector.domain.account.external.api.AccountApi;
 import ee.digit25.detector.domain.account.external.api.AccountApiProperties;
@@ -17,22 +24,41 @@ public class AccountRequester {
 
     private final AccountApi api;
     private final AccountApiProperties properties;
+    private final HedgedRequestExecutor hedgedRequestExecutor;
+    private final Bulkheads bulkheads;
+    private final TrafficCapture trafficCapture;
+    private final TrafficReplay trafficReplay;
 
     public Account get(String accountNumber) {
         log.info("Requesting account {}", accountNumber);
 
-        return RetrofitRequestExecutor.executeRaw(api.get(properties.getToken(), accountNumber));
+        if (trafficReplay.isActive()) {
+            return bulkheads.call(CallClass.LOOKUP, () -> trafficReplay.entity(EntityKind.ACCOUNT, accountNumber));
+        }
+
+        TimedResponse<Account> response = bulkheads.call(CallClass.LOOKUP, () -> TimedResponse.measure(() ->
+            hedgedRequestExecutor.execute("accounts", api.get(properties.getToken(), accountNumber))));
+        trafficCapture.recordEntity(EntityKind.ACCOUNT, accountNumber, response.body(), response.latencyNanos());
+        return response.body();
     }
 
     public List<Account> get(List<String> numbers) {
         log.info("Requesting accounts with numbers {}", numbers);
 
-        return RetrofitRequestExecutor.executeRaw(api.get(properties.getToken(), numbers));
+        if (trafficReplay.isActive()) {
+            return bulkheads.call(CallClass.LOOKUP, () -> trafficReplay.entities(EntityKind.ACCOUNT, numbers));
+        }
+
+        TimedResponse<List<Account>> response = bulkheads.call(CallClass.LOOKUP, () -> TimedResponse.measure(() ->
+            RetrofitRequestExecutor.executeRaw(api.get(properties.getToken(), numbers))));
+        trafficCapture.recordEntities(EntityKind.ACCOUNT, response.body(), response.latencyNanos());
+        return response.body();
     }
 
     public List<Account> get(int pageNumber, int pageSize) {
         log.info("Requesting accounts page {} of size {}", pageNumber, pageSize);
 
-        return RetrofitRequestExecutor.executeRaw(api.get(properties.getToken(), pageNumber, pageSize));
+        return bulkheads.call(CallClass.LOOKUP, () ->
+            RetrofitRequestExecutor.executeRaw(api.get(properties.getToken(), pageNumber, pageSize)));
     }
 }
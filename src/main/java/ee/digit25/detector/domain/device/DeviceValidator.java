@@ -1,24 +1,25 @@
 package ee.digit25.detector.domain.device;
 
+import ee.digit25.detector.common.BackgroundLookups;
+import ee.digit25.detector.common.EntityCache;
+import ee.digit25.detector.config.CacheProperties;
 import ee.digit25.detector.domain.device.external.DeviceRequester;
 import ee.digit25.detector.domain.device.external.api.Device;
-import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.Collection;
 
 @Slf4j
 @Service
-@RequiredArgsConstructor
 public class DeviceValidator {
 
-    private final DeviceRequester requester;
-    // Cache device information for 5 minutes
-    private final Map<String, Device> deviceCache = new ConcurrentHashMap<>();
-    private final Map<String, Long> cacheTimestamps = new ConcurrentHashMap<>();
-    private static final long CACHE_DURATION = 5 * 60 * 1000; // 5 minutes in milliseconds
+    private final EntityCache<Device> cache;
+
+    public DeviceValidator(DeviceRequester requester, CacheProperties cacheProperties, BackgroundLookups backgroundLookups) {
+        this.cache = new EntityCache<Device>("device", requester::get, requester::get, Device::getMac,
+            cacheProperties, backgroundLookups);
+    }
 
     public boolean isValid(String mac) {
         log.info("Validating device {}", mac);
@@ -26,7 +27,7 @@ public class DeviceValidator {
     }
 
     public boolean isBlacklisted(String mac) {
-        Device device = getDevice(mac);
+        Device device = cache.get(mac, true);
         if (device == null) {
             log.warn("Could not fetch device data for {}", mac);
             return true; // Assume blacklisted if we can't verify
@@ -34,24 +35,46 @@ public class DeviceValidator {
         return device.getIsBlacklisted();
     }
 
-    private Device getDevice(String mac) {
-        long currentTime = System.currentTimeMillis();
-        Long timestamp = cacheTimestamps.get(mac);
-        
-        // Check if we have a valid cached device
-        if (timestamp != null && (currentTime - timestamp) < CACHE_DURATION) {
-            return deviceCache.get(mac);
-        }
+    /**
+     * @return whether a fresh device is cached, i.e. validating it will not call the API
+     */
+    public boolean isCached(String mac) {
+        return cache.isFresh(mac);
+    }
 
-        // If not in cache or expired, fetch from API
-        try {
-            Device device = requester.get(mac);
-            deviceCache.put(mac, device);
-            cacheTimestamps.put(mac, currentTime);
-            return device;
-        } catch (Exception e) {
-            log.error("Error fetching device {}: {}", mac, e.getMessage());
-            return null;
-        }
+    /**
+     * Counts a validation answered from memoised results as a read of the device, so it is refreshed ahead of
+     * expiry like any other device in use.
+     *
+     * @return whether the device is still cached and fresh
+     */
+    public boolean touch(String mac) {
+        return cache.touch(mac);
+    }
+
+    /**
+     * @return until when results derived from the cached device can be used without touching it, or 0 when it is
+     * not cached
+     */
+    public long refreshAt(String mac) {
+        return cache.refreshAt(mac);
+    }
+
+    /**
+     * Loads the given devices that are not cached yet with bulk requests.
+     */
+    public void prefetch(Collection<String> macs) {
+        cache.loadMissing(macs);
+    }
+
+    /**
+     * Registers a listener that is told whenever a device is reloaded into the cache.
+     */
+    public void addRefreshListener(EntityCache.RefreshListener listener) {
+        cache.addRefreshListener(listener);
+    }
+
+    public String cacheStats() {
+        return cache.stats();
     }
 }
@@ -1,6 +1,13 @@
 package ee.digit25.detector.domain.device.external;
 
 import ee.bitweb.core.retrofit.RetrofitRequestExecutor;
+import ee.digit25.detector.api.Bulkheads;
+import ee.digit25.detector.api.CallClass;
+import ee.digit25.detector.api.HedgedRequestExecutor;
+import ee.digit25.detector.capture.EntityKind;
+import ee.digit25.detector.capture.TimedResponse;
+import ee.digit25.detector.capture.TrafficCapture;
+import ee.digit25.detector.capture.TrafficReplay;
 import ee.digit25.detector.domain.device.external.api.Device;
 import ee.digit25.detector.domain.device.external.api.DeviceApi;
 import ee.digit25.detector.domain.device.external.api.DeviceApiProperties;
@@ -17,22 +24,41 @@ public class DeviceRequester {
 
     private final DeviceApi api;
     private final DeviceApiProperties properties;
+    private final HedgedRequestExecutor hedgedRequestExecutor;
+    private final Bulkheads bulkheads;
+    private final TrafficCapture trafficCapture;
+    private final TrafficReplay trafficReplay;
 
     public Device get(String mac) {
         log.info("Requesting device with mac({})", mac);
 
-        return RetrofitRequestExecutor.executeRaw(api.get(properties.getToken(), mac));
+        if (trafficReplay.isActive()) {
+            return bulkheads.call(CallClass.LOOKUP, () -> trafficReplay.entity(EntityKind.DEVICE, mac));
+        }
+
+        TimedResponse<Device> response = bulkheads.call(CallClass.LOOKUP, () -> TimedResponse.measure(() ->
+            hedgedRequestExecutor.execute("devices", api.get(properties.getToken(), mac))));
+        trafficCapture.recordEntity(EntityKind.DEVICE, mac, response.body(), response.latencyNanos());
+        return response.body();
     }
 
     public List<Device> get(List<String> macs) {
         log.info("Requesting devices with macs {}", macs);
 
-        return RetrofitRequestExecutor.executeRaw(api.get(properties.getToken(), macs));
+        if (trafficReplay.isActive()) {
+            return bulkheads.call(CallClass.LOOKUP, () -> trafficReplay.entities(EntityKind.DEVICE, macs));
+        }
+
+        TimedResponse<List<Device>> response = bulkheads.call(CallClass.LOOKUP, () -> TimedResponse.measure(() ->
+            RetrofitRequestExecutor.executeRaw(api.get(properties.getToken(), macs))));
+        trafficCapture.recordEntities(EntityKind.DEVICE, response.body(), response.latencyNanos());
+        return response.body();
     }
 
     public List<Device> get(int pageNumber, int pageSize) {
         log.info("Requesting persons page {} of size {}", pageNumber, pageSize);
 
-        return RetrofitRequestExecutor.executeRaw(api.get(properties.getToken(), pageNumber, pageSize));
+        return bulkheads.call(CallClass.LOOKUP, () ->
+            RetrofitRequestExecutor.executeRaw(api.get(properties.getToken(), pageNumber, pageSize)));
     }
 }
@@ -1,29 +1,30 @@
 package ee.digit25.detector.domain.person;
 
+import ee.digit25.detector.common.BackgroundLookups;
+import ee.digit25.detector.common.EntityCache;
+import ee.digit25.detector.config.CacheProperties;
 import ee.digit25.detector.domain.person.external.PersonRequester;
 import ee.digit25.detector.domain.person.external.api.Person;
-import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.Collection;
 
 @Slf4j
 @Service
-@RequiredArgsConstructor
 public class PersonValidator {
 
-    private final PersonRequester requester;
-    // Cache person information for 5 minutes
-    private final Map<String, Person> personCache = new ConcurrentHashMap<>();
-    private final Map<String, Long> cacheTimestamps = new ConcurrentHashMap<>();
-    private static final long CACHE_DURATION = 5 * 60 * 1000; // 5 minutes in milliseconds
+    private final EntityCache<Person> cache;
+
+    public PersonValidator(PersonRequester requester, CacheProperties cacheProperties, BackgroundLookups backgroundLookups) {
+        this.cache = new EntityCache<Person>("person", requester::get, requester::get, Person::getPersonCode,
+            cacheProperties, backgroundLookups);
+    }
 
     public boolean isValid(String personCode) {
         log.info("Validating person {}", personCode);
         
-        Person person = getPerson(personCode);
+        Person person = cache.get(personCode, true);
         if (person == null) {
             log.warn("Could not fetch person data for {}", personCode);
             return false;
@@ -48,24 +49,46 @@ public class PersonValidator {
         return true;
     }
 
-    private Person getPerson(String personCode) {
-        long currentTime = System.currentTimeMillis();
-        Long timestamp = cacheTimestamps.get(personCode);
-        
-        // Check if we have a valid cached person
-        if (timestamp != null && (currentTime - timestamp) < CACHE_DURATION) {
-            return personCache.get(personCode);
-        }
+    /**
+     * @return whether a fresh person is cached, i.e. validating it will not call the API
+     */
+    public boolean isCached(String personCode) {
+        return cache.isFresh(personCode);
+    }
 
-        // If not in cache or expired, fetch from API
-        try {
-            Person person = requester.get(personCode);
-            personCache.put(personCode, person);
-            cacheTimestamps.put(personCode, currentTime);
-            return person;
-        } catch (Exception e) {
-            log.error("Error fetching person {}: {}", personCode, e.getMessage());
-            return null;
-        }
+    /**
+     * Counts a validation answered from memoised results as a read of the person, so it is refreshed ahead of
+     * expiry like any other person in use.
+     *
+     * @return whether the person is still cached and fresh
+     */
+    public boolean touch(String personCode) {
+        return cache.touch(personCode);
+    }
+
+    /**
+     * @return until when results derived from the cached person can be used without touching it, or 0 when it is
+     * not cached
+     */
+    public long refreshAt(String personCode) {
+        return cache.refreshAt(personCode);
+    }
+
+    /**
+     * Loads the given persons that are not cached yet with bulk requests.
+     */
+    public void prefetch(Collection<String> personCodes) {
+        cache.loadMissing(personCodes);
+    }
+
+    /**
+     * Registers a listener that is told whenever a person is reloaded into the cache.
+     */
+    public void addRefreshListener(EntityCache.RefreshListener listener) {
+        cache.addRefreshListener(listener);
+    }
+
+    public String cacheStats() {
+        return cache.stats();
     }
 }
@@ -1,6 +1,13 @@
 package ee.digit25.detector.domain.person.external;
 
 import ee.bitweb.core.retrofit.RetrofitRequestExecutor;
+import ee.digit25.detector.api.Bulkheads;
+import ee.digit25.detector.api.CallClass;
+import ee.digit25.detector.api.HedgedRequestExecutor;
+import ee.digit25.detector.capture.EntityKind;
+import ee.digit25.detector.capture.TimedResponse;
+import ee.digit25.detector.capture.TrafficCapture;
+import ee.digit25.detector.capture.TrafficReplay;
 import ee.digit25.detector.domain.person.external.api.Person;
 import ee.digit25.detector.domain.person.external.api.PersonApi;
 import ee.digit25.detector.domain.person.external.api.PersonApiProperties;
@@ -17,22 +24,41 @@ public class PersonRequester {
 
     private final PersonApi api;
     private final PersonApiProperties properties;
+    private final HedgedRequestExecutor hedgedRequestExecutor;
+    private final Bulkheads bulkheads;
+    private final TrafficCapture trafficCapture;
+    private final TrafficReplay trafficReplay;
 
     public Person get(String personCode) {
         log.info("Requesting person with personCode {}", personCode);
 
-        return RetrofitRequestExecutor.executeRaw(api.get(properties.getToken(), personCode));
+        if (trafficReplay.isActive()) {
+            return bulkheads.call(CallClass.LOOKUP, () -> trafficReplay.entity(EntityKind.PERSON, personCode));
+        }
+
+        TimedResponse<Person> response = bulkheads.call(CallClass.LOOKUP, () -> TimedResponse.measure(() ->
+            hedgedRequestExecutor.execute("persons", api.get(properties.getToken(), personCode))));
+        trafficCapture.recordEntity(EntityKind.PERSON, personCode, response.body(), response.latencyNanos());
+        return response.body();
     }
 
     public List<Person> get(List<String> personCodes) {
         log.info("Requesting persons with personCodes {}", personCodes);
 
-        return RetrofitRequestExecutor.executeRaw(api.get(properties.getToken(), personCodes));
+        if (trafficReplay.isActive()) {
+            return bulkheads.call(CallClass.LOOKUP, () -> trafficReplay.entities(EntityKind.PERSON, personCodes));
+        }
+
+        TimedResponse<List<Person>> response = bulkheads.call(CallClass.LOOKUP, () -> TimedResponse.measure(() ->
+            RetrofitRequestExecutor.executeRaw(api.get(properties.getToken(), personCodes))));
+        trafficCapture.recordEntities(EntityKind.PERSON, response.body(), response.latencyNanos());
+        return response.body();
     }
 
     public List<Person> get(int pageNumber, int pageSize) {
         log.info("Requesting persons page {} of size {}", pageNumber, pageSize);
 
-        return RetrofitRequestExecutor.executeRaw(api.get(properties.getToken(), pageNumber, pageSize));
+        return bulkheads.call(CallClass.LOOKUP, () ->
+            RetrofitRequestExecutor.executeRaw(api.get(properties.getToken(), pageNumber, pageSize)));
     }
 }
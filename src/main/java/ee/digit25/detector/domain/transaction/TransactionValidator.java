@@ -1,9 +1,12 @@
 package ee.digit25.detector.domain.transaction;
 
 import ee.digit25.detector.domain.account.AccountValidator;
+import ee.digit25.detector.domain.account.BalanceCheck;
 import ee.digit25.detector.domain.device.DeviceValidator;
 import ee.digit25.detector.domain.person.PersonValidator;
 import ee.digit25.detector.domain.transaction.external.api.Transaction;
+import ee.digit25.detector.monitoring.TransactionTracer;
+import ee.digit25.detector.monitoring.TransactionTracer.Stage;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
@@ -16,33 +19,76 @@ public class TransactionValidator {
     private final PersonValidator personValidator;
     private final DeviceValidator deviceValidator;
     private final AccountValidator accountValidator;
+    private final TransactionTracer tracer;
+    private final VerdictMemo verdictMemo;
 
     public boolean isLegitimate(Transaction transaction) {
+        return isLegitimate(transaction, accountValidator);
+    }
+
+    /**
+     * Validates the transaction, asking the given balance check whether the sender account covers the amount.
+     * Checks that do not depend on the amount are answered from the {@link VerdictMemo} when its tuple was
+     * seen recently.
+     */
+    public boolean isLegitimate(Transaction transaction, BalanceCheck balanceCheck) {
+        tracer.mark(transaction, Stage.VALIDATION_STARTED);
+        VerdictMemo.Checks checks = verdictMemo.begin(transaction);
+        try {
+            return runChecks(transaction, balanceCheck, checks);
+        } finally {
+            checks.save();
+        }
+    }
+
+    private boolean runChecks(Transaction transaction, BalanceCheck balanceCheck, VerdictMemo.Checks checks) {
+        String mac = transaction.getDeviceMac();
+        String sender = transaction.getSender();
+        String recipient = transaction.getRecipient();
+        String senderAccount = transaction.getSenderAccount();
+        String recipientAccount = transaction.getRecipientAccount();
+
         // Quick checks first
-        if (!deviceValidator.isValid(transaction.getDeviceMac())) {
+        boolean validDevice = checks.check(VerdictMemo.DEVICE,
+            () -> deviceValidator.isValid(mac), () -> deviceValidator.isCached(mac));
+        tracer.mark(transaction, Stage.DEVICE_CHECKED);
+        if (!validDevice) {
             log.info("Invalid device for transaction {}", transaction.getId());
             return false;
         }
 
-        if (!personValidator.isValid(transaction.getSender())) {
+        boolean validSender = checks.check(VerdictMemo.SENDER,
+            () -> personValidator.isValid(sender), () -> personValidator.isCached(sender));
+        tracer.mark(transaction, Stage.SENDER_CHECKED);
+        if (!validSender) {
             log.info("Invalid sender for transaction {}", transaction.getId());
             return false;
         }
 
-        if (!personValidator.isValid(transaction.getRecipient())) {
+        boolean validRecipient = checks.check(VerdictMemo.RECIPIENT,
+            () -> personValidator.isValid(recipient), () -> personValidator.isCached(recipient));
+        tracer.mark(transaction, Stage.RECIPIENT_CHECKED);
+        if (!validRecipient) {
             log.info("Invalid recipient for transaction {}", transaction.getId());
             return false;
         }
 
-        // More expensive checks last
-        if (!accountValidator.isValidSenderAccount(transaction.getSenderAccount(), 
-                transaction.getAmount(), transaction.getSender())) {
+        // More expensive checks last, the balance is never memoised
+        boolean validSenderAccount = checks.check(VerdictMemo.SENDER_ACCOUNT,
+                () -> accountValidator.isUsableSenderAccount(senderAccount, sender),
+                () -> accountValidator.isCached(senderAccount))
+            && balanceCheck.hasSufficientBalance(senderAccount, transaction.getAmount());
+        tracer.mark(transaction, Stage.SENDER_ACCOUNT_CHECKED);
+        if (!validSenderAccount) {
             log.info("Invalid sender account for transaction {}", transaction.getId());
             return false;
         }
 
-        if (!accountValidator.isValidRecipientAccount(transaction.getRecipientAccount(), 
-                transaction.getRecipient())) {
+        boolean validRecipientAccount = checks.check(VerdictMemo.RECIPIENT_ACCOUNT,
+            () -> accountValidator.isValidRecipientAccount(recipientAccount, recipient),
+            () -> accountValidator.isCached(recipientAccount));
+        tracer.mark(transaction, Stage.RECIPIENT_ACCOUNT_CHECKED);
+        if (!validRecipientAccount) {
             log.info("Invalid recipient account for transaction {}", transaction.getId());
             return false;
         }
@@ -0,0 +1,337 @@
+package ee.digit25.detector.domain.transaction;
+
+import ee.digit25.detector.common.IdHash;
+import ee.digit25.detector.domain.account.AccountValidator;
+import ee.digit25.detector.domain.device.DeviceValidator;
+import ee.digit25.detector.domain.person.PersonValidator;
+import ee.digit25.detector.domain.transaction.external.api.Transaction;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.BooleanSupplier;
+import java.util.function.Predicate;
+import java.util.function.ToLongFunction;
+
+/**
+ * Remembers the amount-independent checks of a (device, sender, recipient, sender account, recipient account)
+ * tuple, so that a repeated tuple costs one lookup plus the balance check.
+ * <p>
+ * A result is packed into an int: bit {@code check} says the check is known, bit {@code check + 8} that it
+ * passed. Entries are dropped when any of their entities is reloaded into its cache (through a reverse index
+ * from entity key to tuples) and when they are older than the TTL. When the memo outgrows its bound, a small
+ * batch of tuples is evicted at a time.
+ * <p>
+ * A memoised check is only answered while its entity is still fresh in the entity cache, and answering it
+ * counts as a read of that entity, so entities that are only ever seen through the memo are still refreshed
+ * ahead of expiry and a result never outlives the cache entry it was computed from. Both only matter once an
+ * entity has reached its refresh time, so every entry carries the earliest refresh time of its entities (and
+ * its TTL): until then a hit costs one map lookup and one comparison, and only after it is every entity
+ * touched.
+ */
+@Slf4j
+@Component
+public class VerdictMemo {
+
+    public static final int DEVICE = 0;
+    public static final int SENDER = 1;
+    public static final int RECIPIENT = 2;
+    public static final int SENDER_ACCOUNT = 3;
+    public static final int RECIPIENT_ACCOUNT = 4;
+
+    private static final int OK_SHIFT = 8;
+    private static final int STRIPES = 4096;
+    private static final int CHECKS = 5;
+
+    private final VerdictMemoProperties properties;
+
+    private final Map<Key, Entry> memo = new ConcurrentHashMap<>();
+    private final Map<String, Set<Key>> tuplesByEntity = new ConcurrentHashMap<>();
+
+    // Sequence of the latest invalidation per entity key stripe, so that a result computed from an entity
+    // that was reloaded meanwhile is never stored
+    private final AtomicLong invalidationSequence = new AtomicLong();
+    private final AtomicLongArray invalidatedAt = new AtomicLongArray(STRIPES);
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong invalidations = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicBoolean evicting = new AtomicBoolean();
+
+    // Per check: marks the entity behind it as read and tells whether it is still fresh in its cache
+    private final Predicate<String>[] touch;
+    // Per check: until when the entity behind it needs no touch
+    private final ToLongFunction<String>[] refreshAt;
+
+    @SuppressWarnings("unchecked")
+    public VerdictMemo(VerdictMemoProperties properties, PersonValidator personValidator,
+                       AccountValidator accountValidator, DeviceValidator deviceValidator) {
+        this.properties = properties;
+        this.touch = new Predicate[CHECKS];
+        touch[DEVICE] = deviceValidator::touch;
+        touch[SENDER] = personValidator::touch;
+        touch[RECIPIENT] = personValidator::touch;
+        touch[SENDER_ACCOUNT] = accountValidator::touch;
+        touch[RECIPIENT_ACCOUNT] = accountValidator::touch;
+        this.refreshAt = new ToLongFunction[CHECKS];
+        refreshAt[DEVICE] = deviceValidator::refreshAt;
+        refreshAt[SENDER] = personValidator::refreshAt;
+        refreshAt[RECIPIENT] = personValidator::refreshAt;
+        refreshAt[SENDER_ACCOUNT] = accountValidator::refreshAt;
+        refreshAt[RECIPIENT_ACCOUNT] = accountValidator::refreshAt;
+        personValidator.addRefreshListener(this::invalidate);
+        accountValidator.addRefreshListener(this::invalidate);
+        deviceValidator.addRefreshListener(this::invalidate);
+    }
+
+    /**
+     * Starts validating a transaction with whatever is memoised for its tuple.
+     */
+    public Checks begin(Transaction transaction) {
+        Key key = properties.isEnabled() ? Key.of(transaction) : null;
+        if (key == null) {
+            return new Checks(null, 0, 0, 0);
+        }
+
+        long sequence = invalidationSequence.get();
+        long now = System.currentTimeMillis();
+        Entry entry = memo.get(key);
+        int packed = 0;
+        if (entry != null && now < entry.touchFreeUntil) {
+            packed = entry.packed;
+        } else if (entry != null && now - entry.storedAt >= properties.getTtl().toMillis()) {
+            remove(key, entry);
+        } else if (entry != null) {
+            packed = usable(key, entry.packed);
+        }
+
+        if (packed == 0) {
+            misses.incrementAndGet();
+            return new Checks(key, 0, now, sequence);
+        }
+
+        hits.incrementAndGet();
+        return new Checks(key, packed, entry.storedAt, sequence);
+    }
+
+    /**
+     * @return the memoised results whose entities are still fresh in their caches
+     */
+    private int usable(Key key, int packed) {
+        for (int check = 0; check < CHECKS; check++) {
+            if (isKnown(packed, check) && !touch[check].test(key.entityKey(check))) {
+                packed = without(packed, check);
+            }
+        }
+        return packed;
+    }
+
+    private void store(Key key, int packed, long storedAt, long sequence) {
+        if (memo.size() >= properties.getMaxEntries()) {
+            evict();
+        }
+
+        long touchFreeUntil = storedAt + properties.getTtl().toMillis();
+        for (int check = 0; check < CHECKS; check++) {
+            if (isKnown(packed, check)) {
+                touchFreeUntil = Math.min(touchFreeUntil, refreshAt[check].applyAsLong(key.entityKey(check)));
+            }
+        }
+
+        Entry entry = new Entry(packed, storedAt, touchFreeUntil);
+        memo.put(key, entry);
+        for (int check = 0; check < CHECKS; check++) {
+            tuplesByEntity.computeIfAbsent(key.entityKey(check), ignored -> ConcurrentHashMap.newKeySet()).add(key);
+        }
+
+        // Either the invalidation saw the index entry above, or this check sees the invalidation
+        for (int check = 0; check < CHECKS; check++) {
+            if (invalidatedAt.get(stripe(key.entityKey(check))) > sequence) {
+                remove(key, entry);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Drops a small batch of tuples, in the map's hash order, which is as good as random.
+     */
+    private void evict() {
+        if (!evicting.compareAndSet(false, true)) return;
+
+        try {
+            int excess = memo.size() - properties.getMaxEntries() + Math.max(1, properties.getMaxEntries() / 64);
+            Iterator<Map.Entry<Key, Entry>> iterator = memo.entrySet().iterator();
+            while (excess-- > 0 && iterator.hasNext()) {
+                Map.Entry<Key, Entry> evicted = iterator.next();
+                if (remove(evicted.getKey(), evicted.getValue())) {
+                    evictions.incrementAndGet();
+                }
+            }
+        } finally {
+            evicting.set(false);
+        }
+    }
+
+    /**
+     * Drops expired tuples, so that tuples that are never seen again do not stay in the reverse index.
+     */
+    @Scheduled(fixedRate = 10000)
+    public void purgeExpired() {
+        if (!properties.isEnabled()) return;
+
+        long expiredBefore = System.currentTimeMillis() - properties.getTtl().toMillis();
+        for (Map.Entry<Key, Entry> entry : memo.entrySet()) {
+            if (entry.getValue().storedAt <= expiredBefore) {
+                remove(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
+    private boolean remove(Key key, Entry entry) {
+        if (!memo.remove(key, entry)) {
+            return false;
+        }
+
+        for (int check = 0; check < CHECKS; check++) {
+            tuplesByEntity.computeIfPresent(key.entityKey(check), (ignored, tuples) -> {
+                tuples.remove(key);
+                return tuples.isEmpty() ? null : tuples;
+            });
+        }
+        return true;
+    }
+
+    int size() {
+        return memo.size();
+    }
+
+    void invalidate(String entityKey) {
+        long sequence = invalidationSequence.incrementAndGet();
+        invalidatedAt.accumulateAndGet(stripe(entityKey), sequence, Math::max);
+
+        Set<Key> tuples = tuplesByEntity.remove(entityKey);
+        if (tuples != null) {
+            for (Key tuple : tuples) {
+                Entry entry = memo.get(tuple);
+                if (entry != null && remove(tuple, entry)) {
+                    invalidations.incrementAndGet();
+                }
+            }
+        }
+    }
+
+    @Scheduled(fixedRate = 5000)
+    public void logMetrics() {
+        if (!properties.isEnabled()) return;
+
+        long hitCount = hits.get();
+        long total = hitCount + misses.get();
+        log.info("Verdict memo: {} tuples, hit rate {}%, {} invalidated by entity reloads, {} evicted",
+            memo.size(), total == 0 ? 0 : hitCount * 100 / total, invalidations.get(), evictions.get());
+    }
+
+    private static int stripe(String entityKey) {
+        return (int) (IdHash.of(entityKey) & (STRIPES - 1));
+    }
+
+    static boolean isKnown(int packed, int check) {
+        return (packed & (1 << check)) != 0;
+    }
+
+    static boolean isOk(int packed, int check) {
+        return (packed & (1 << (check + OK_SHIFT))) != 0;
+    }
+
+    static int with(int packed, int check, boolean ok) {
+        return packed | (1 << check) | (ok ? 1 << (check + OK_SHIFT) : 0);
+    }
+
+    static int without(int packed, int check) {
+        return packed & ~(1 << check) & ~(1 << (check + OK_SHIFT));
+    }
+
+    /**
+     * Checks of one transaction: memoised results are answered from the memo, the others are run and their
+     * results collected for {@link #save()}.
+     */
+    public final class Checks {
+
+        private final Key key;
+        private final int memoized;
+        // Extending a memoised result keeps its original age, so the TTL counts from the oldest check
+        private final long storedAt;
+        private final long sequence;
+        private int packed;
+
+        private Checks(Key key, int memoized, long storedAt, long sequence) {
+            this.key = key;
+            this.memoized = memoized;
+            this.storedAt = storedAt;
+            this.sequence = sequence;
+            this.packed = memoized;
+        }
+
+        /**
+         * @param cached whether the entity behind the check is cached; a failed check is only remembered when
+         *               it was decided on entity data rather than on a failed lookup
+         */
+        public boolean check(int check, BooleanSupplier validation, BooleanSupplier cached) {
+            if (isKnown(packed, check)) {
+                return isOk(packed, check);
+            }
+
+            boolean ok = validation.getAsBoolean();
+            if (key != null && (ok || cached.getAsBoolean())) {
+                packed = with(packed, check, ok);
+            }
+            return ok;
+        }
+
+        public void save() {
+            if (key != null && packed != memoized) {
+                store(key, packed, storedAt, sequence);
+            }
+        }
+    }
+
+    private record Key(String deviceMac, String sender, String recipient, String senderAccount,
+                       String recipientAccount) {
+
+        static Key of(Transaction transaction) {
+            if (transaction.getDeviceMac() == null || transaction.getSender() == null
+                || transaction.getRecipient() == null || transaction.getSenderAccount() == null
+                || transaction.getRecipientAccount() == null) {
+                return null;
+            }
+            return new Key(transaction.getDeviceMac(), transaction.getSender(), transaction.getRecipient(),
+                transaction.getSenderAccount(), transaction.getRecipientAccount());
+        }
+
+        String entityKey(int check) {
+            return switch (check) {
+                case DEVICE -> deviceMac;
+                case SENDER -> sender;
+                case RECIPIENT -> recipient;
+                case SENDER_ACCOUNT -> senderAccount;
+                case RECIPIENT_ACCOUNT -> recipientAccount;
+                default -> throw new IllegalArgumentException("Unknown check " + check);
+            };
+        }
+    }
+
+    /**
+     * @param touchFreeUntil before this time the entry is within its TTL and none of the entities behind its
+     *                       known checks is due for a refresh, so it is answered as is
+     */
+    private record Entry(int packed, long storedAt, long touchFreeUntil) {
+    }
+}
@@ -0,0 +1,33 @@
+package ee.digit25.detector.domain.transaction;
+
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotNull;
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+import org.springframework.validation.annotation.Validated;
+
+import java.time.Duration;
+
+@Getter
+@Setter
+@Component
+@Validated
+@ConfigurationProperties("detector.verdict-memo")
+public class VerdictMemoProperties {
+
+    private boolean enabled = true;
+
+    /**
+     * Upper bound on how long a memoised result is trusted when none of its entities is reloaded meanwhile.
+     */
+    @NotNull
+    private Duration ttl = Duration.ofMinutes(1);
+
+    /**
+     * Beyond this many tuples, a small batch is evicted whenever a tuple is stored.
+     */
+    @Min(1000)
+    private int maxEntries = 100_000;
+}
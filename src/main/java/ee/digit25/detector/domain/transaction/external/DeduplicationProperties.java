@@ -0,0 +1,40 @@
+package ee.digit25.detector.domain.transaction.external;
+
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotNull;
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+import org.springframework.validation.annotation.Validated;
+
+import java.time.Duration;
+
+@Getter
+@Setter
+@Component
+@Validated
+@ConfigurationProperties("detector.deduplication")
+public class DeduplicationProperties {
+
+    private boolean enabled = true;
+
+    /**
+     * Registry slots, rounded up to a power of two. Should comfortably exceed the ids seen within the decided TTL.
+     */
+    @Min(1024)
+    private int capacity = 65_536;
+
+    /**
+     * How long a fetched but undecided id blocks redeliveries. Should be shorter than the transaction deadline,
+     * so a transaction lost locally is fetched again in time.
+     */
+    @NotNull
+    private Duration inFlightTtl = Duration.ofSeconds(20);
+
+    /**
+     * How long a decided id blocks redeliveries.
+     */
+    @NotNull
+    private Duration decidedTtl = Duration.ofMinutes(2);
+}
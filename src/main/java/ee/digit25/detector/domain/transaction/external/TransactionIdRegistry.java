@@ -0,0 +1,148 @@
+package ee.digit25.detector.domain.transaction.external;
+
+import ee.digit25.detector.common.IdHash;
+import ee.digit25.detector.domain.transaction.external.api.Transaction;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Ids of transactions that were fetched and are in flight or were decided recently, so that a transaction the
+ * service hands out again is not validated and posted twice.
+ * <p>
+ * An open-addressing table of 64-bit id hashes with one stamp per slot: the expiry time in epoch milliseconds,
+ * with the top bit set once the verdict was acknowledged. Expired slots are reused, so memory stays at 16
+ * bytes per slot. A verdict post that failed releases its ids, so the redelivery is processed again.
+ */
+@Slf4j
+@Component
+public class TransactionIdRegistry {
+
+    private static final int MAX_PROBES = 16;
+    private static final long DECIDED = 1L << 63;
+
+    private final DeduplicationProperties properties;
+    private final long[] keys;
+    private final long[] stamps;
+    private final int mask;
+
+    private final AtomicLong fetched = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong tableFull = new AtomicLong();
+
+    public TransactionIdRegistry(DeduplicationProperties properties) {
+        this.properties = properties;
+        int capacity = Integer.highestOneBit(properties.getCapacity() - 1) << 1;
+        this.keys = new long[capacity];
+        this.stamps = new long[capacity];
+        this.mask = capacity - 1;
+    }
+
+    /**
+     * Removes the transactions that are in flight or were decided recently, and registers the rest as in flight.
+     */
+    public void retainNew(List<Transaction> transactions) {
+        if (!properties.isEnabled()) return;
+
+        int before = transactions.size();
+        long now = System.currentTimeMillis();
+        long inFlightUntil = now + properties.getInFlightTtl().toMillis();
+        synchronized (this) {
+            transactions.removeIf(transaction -> !register(IdHash.of(transaction.getId()), now, inFlightUntil));
+        }
+
+        int duplicates = before - transactions.size();
+        fetched.addAndGet(before);
+        if (duplicates > 0) {
+            dropped.addAndGet(duplicates);
+            log.info("Dropped {} transactions that are already in flight or decided", duplicates);
+        }
+    }
+
+    public void markDecided(List<Transaction> transactions) {
+        if (!properties.isEnabled()) return;
+
+        long decidedUntil = System.currentTimeMillis() + properties.getDecidedTtl().toMillis();
+        update(transactions, DECIDED | decidedUntil);
+    }
+
+    /**
+     * Forgets the transactions, so they are processed again when the service hands them out again.
+     */
+    public void release(List<Transaction> transactions) {
+        if (!properties.isEnabled()) return;
+
+        update(transactions, 0);
+    }
+
+    private synchronized void update(List<Transaction> transactions, long stamp) {
+        for (Transaction transaction : transactions) {
+            int slot = find(IdHash.of(transaction.getId()));
+            if (slot >= 0) {
+                stamps[slot] = stamp;
+            }
+        }
+    }
+
+    /**
+     * @return false when the id is already registered and has not expired
+     */
+    private boolean register(long key, long now, long inFlightUntil) {
+        int reusable = -1;
+        int slot = (int) key & mask;
+        for (int probe = 0; probe < MAX_PROBES; probe++, slot = (slot + 1) & mask) {
+            if (keys[slot] == key) {
+                if (!isExpired(stamps[slot], now)) {
+                    return false;
+                }
+                stamps[slot] = inFlightUntil;
+                return true;
+            }
+            if (reusable < 0 && isExpired(stamps[slot], now)) {
+                reusable = slot;
+            }
+            if (keys[slot] == 0) {
+                break;
+            }
+        }
+
+        if (reusable < 0) {
+            // Neighbourhood full of live ids; processing a duplicate is cheaper than losing a transaction
+            tableFull.incrementAndGet();
+            return true;
+        }
+        keys[reusable] = key;
+        stamps[reusable] = inFlightUntil;
+        return true;
+    }
+
+    private int find(long key) {
+        int slot = (int) key & mask;
+        for (int probe = 0; probe < MAX_PROBES; probe++, slot = (slot + 1) & mask) {
+            if (keys[slot] == key) {
+                return slot;
+            }
+            if (keys[slot] == 0) {
+                return -1;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean isExpired(long stamp, long now) {
+        return (stamp & ~DECIDED) <= now;
+    }
+
+    @Scheduled(fixedRate = 5000)
+    public void logMetrics() {
+        if (!properties.isEnabled()) return;
+
+        long fetchedCount = fetched.get();
+        long droppedCount = dropped.get();
+        log.info("Transaction de-duplication: {} of {} fetched transactions dropped ({}%), {} registered without a free slot",
+            droppedCount, fetchedCount, fetchedCount == 0 ? 0 : droppedCount * 100 / fetchedCount, tableFull.get());
+    }
+}
@@ -1,9 +1,16 @@
 package ee.digit25.detector.domain.transaction.external;
 
 import ee.bitweb.core.retrofit.RetrofitRequestExecutor;
+import ee.digit25.detector.api.Bulkheads;
+import ee.digit25.detector.api.CallClass;
+import ee.digit25.detector.capture.TimedResponse;
+import ee.digit25.detector.capture.TrafficCapture;
+import ee.digit25.detector.capture.TrafficReplay;
+import ee.digit25.detector.coordination.ProcessCoordinator;
 import ee.digit25.detector.domain.transaction.external.api.Transaction;
 import ee.digit25.detector.domain.transaction.external.api.TransactionApiProperties;
 import ee.digit25.detector.domain.transaction.external.api.TransactionsApi;
+import ee.digit25.detector.monitoring.TransactionTracer;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
@@ -19,20 +26,37 @@ public class TransactionRequester {
 
     private final TransactionsApi api;
     private final TransactionApiProperties properties;
+    private final TransactionTracer tracer;
+    private final ProcessCoordinator coordinator;
+    private final TransactionIdRegistry idRegistry;
+    private final Bulkheads bulkheads;
+    private final TrafficCapture trafficCapture;
+    private final TrafficReplay trafficReplay;
     private static final int MAX_RETRIES = 3;
     private static final long RETRY_DELAY_MS = 1000;
 
     public List<Transaction> getUnverified(int amount) {
         log.info("Requesting a batch of unverified transactions of size {}", amount);
+
+        if (trafficReplay.isActive()) {
+            // Nothing due yet is a normal answer during replay, not a reason to back off
+            List<Transaction> transactions = admit(
+                bulkheads.call(CallClass.FETCH, () -> trafficReplay.nextTransactions(amount)));
+            trafficReplay.onAdmitted(transactions);
+            return transactions;
+        }
         
         for (int attempt = 1; attempt <= MAX_RETRIES; attempt++) {
             try {
-                List<Transaction> transactions = RetrofitRequestExecutor.executeRaw(
-                    api.getUnverified(properties.getToken(), amount)
+                TimedResponse<List<Transaction>> response = bulkheads.call(CallClass.FETCH, () ->
+                    TimedResponse.measure(() ->
+                        RetrofitRequestExecutor.executeRaw(api.getUnverified(properties.getToken(), amount)))
                 );
+                List<Transaction> transactions = response.body();
                 
                 if (transactions != null && !transactions.isEmpty()) {
-                    return transactions;
+                    trafficCapture.recordTransactions(transactions, response.latencyNanos());
+                    return admit(transactions);
                 }
                 
                 log.warn("Received empty transaction list, attempt {}/{}", attempt, MAX_RETRIES);
@@ -55,4 +79,14 @@ public class TransactionRequester {
         return new ArrayList<>();
     }
 
+    /**
+     * Claims first: ids taken by another process are dropped before {@link TransactionIdRegistry#retainNew}
+     * marks the rest in flight here, so nothing is left in flight that this process will never decide.
+     */
+    private List<Transaction> admit(List<Transaction> transactions) {
+        coordinator.retainClaimed(transactions);
+        idRegistry.retainNew(transactions);
+        tracer.begin(transactions);
+        return transactions;
+    }
 }
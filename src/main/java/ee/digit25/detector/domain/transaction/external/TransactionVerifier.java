@@ -1,15 +1,25 @@
 package ee.digit25.detector.domain.transaction.external;
 
 import ee.bitweb.core.retrofit.RetrofitRequestExecutor;
+import ee.digit25.detector.api.Bulkheads;
+import ee.digit25.detector.api.CallClass;
+import ee.digit25.detector.capture.TimedResponse;
+import ee.digit25.detector.capture.TrafficCapture;
+import ee.digit25.detector.capture.TrafficReplay;
+import ee.digit25.detector.coordination.ProcessCoordinator;
 import ee.digit25.detector.domain.transaction.external.api.Transaction;
 import ee.digit25.detector.domain.transaction.external.api.TransactionApiProperties;
 import ee.digit25.detector.domain.transaction.external.api.TransactionsApi;
+import ee.digit25.detector.monitoring.TransactionTracer;
+import ee.digit25.detector.monitoring.TransactionTracer.Stage;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 
+import java.lang.management.ManagementFactory;
 import java.util.List;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 @Slf4j
 @Service
@@ -18,54 +28,99 @@ public class TransactionVerifier {
 
     private final TransactionsApi api;
     private final TransactionApiProperties properties;
+    private final TransactionTracer tracer;
+    private final TransactionIdRegistry idRegistry;
+    private final ProcessCoordinator coordinator;
+    private final Bulkheads bulkheads;
+    private final TrafficCapture trafficCapture;
+    private final TrafficReplay trafficReplay;
     private static final int MAX_RETRIES = 3;
     private static final long RETRY_DELAY_MS = 1000;
+    private final AtomicBoolean firstVerdictLogged = new AtomicBoolean();
 
     public void verify(Transaction transaction) {
-        verifyWithRetry(() -> {
+        List<Transaction> traced = List.of(transaction);
+        tracer.mark(traced, Stage.VERDICT_ENQUEUED);
+
+        complete(traced, verifyWithRetry(traced, () -> {
             log.info("Verifying transaction {}", transaction.getId());
             RetrofitRequestExecutor.executeRaw(api.verify(properties.getToken(), transaction.getId()));
-        });
+        }));
     }
 
     public void reject(Transaction transaction) {
-        verifyWithRetry(() -> {
+        List<Transaction> traced = List.of(transaction);
+        tracer.mark(traced, Stage.VERDICT_ENQUEUED);
+
+        complete(traced, verifyWithRetry(traced, () -> {
             log.info("Rejecting transaction {}", transaction.getId());
             RetrofitRequestExecutor.executeRaw(api.reject(properties.getToken(), transaction.getId()));
-        });
+        }));
     }
 
     public void verify(List<Transaction> transactions) {
         if (transactions.isEmpty()) return;
-        
+        tracer.mark(transactions, Stage.VERDICT_ENQUEUED);
+
         List<String> ids = transactions.stream()
             .map(Transaction::getId)
             .toList();
             
-        verifyWithRetry(() -> {
+        complete(transactions, verifyWithRetry(transactions, () -> {
             log.info("Bulk verifying transactions {}", ids);
             RetrofitRequestExecutor.executeRaw(api.verify(properties.getToken(), ids));
-        });
+        }));
     }
 
     public void reject(List<Transaction> transactions) {
         if (transactions.isEmpty()) return;
-        
+        tracer.mark(transactions, Stage.VERDICT_ENQUEUED);
+
         List<String> ids = transactions.stream()
             .map(Transaction::getId)
             .toList();
             
-        verifyWithRetry(() -> {
+        complete(transactions, verifyWithRetry(transactions, () -> {
             log.info("Bulk rejecting transactions {}", ids);
             RetrofitRequestExecutor.executeRaw(api.reject(properties.getToken(), ids));
-        });
+        }));
     }
 
-    private void verifyWithRetry(Runnable operation) {
+    private void complete(List<Transaction> transactions, boolean acknowledged) {
+        if (acknowledged) {
+            if (firstVerdictLogged.compareAndSet(false, true)) {
+                // Time to first useful work, the figure AOT and CDS startup improvements are measured by
+                log.info("First verdict acknowledged {} ms after JVM start",
+                    ManagementFactory.getRuntimeMXBean().getUptime());
+            }
+            idRegistry.markDecided(transactions);
+            tracer.complete(transactions);
+            if (trafficReplay.isActive()) {
+                trafficReplay.onDecided(transactions);
+            }
+        } else {
+            // Undecided transactions are delivered again, let whichever process gets them next decide them
+            idRegistry.release(transactions);
+            coordinator.release(transactions);
+            tracer.abandon(transactions);
+            if (trafficReplay.isActive()) {
+                trafficReplay.onAbandoned(transactions);
+            }
+        }
+    }
+
+    private boolean verifyWithRetry(List<Transaction> transactions, Runnable operation) {
+        // Replayed transactions are not pending at the service, the post is stood in for with its recorded latency
+        Runnable post = trafficReplay.isActive() ? () -> trafficReplay.postVerdict(transactions) : operation;
+
         for (int attempt = 1; attempt <= MAX_RETRIES; attempt++) {
             try {
-                operation.run();
-                return;
+                TimedResponse<Void> response = bulkheads.call(CallClass.VERDICT, () -> TimedResponse.measure(() -> {
+                    post.run();
+                    return null;
+                }));
+                trafficCapture.recordVerdict(transactions, response.latencyNanos());
+                return true;
             } catch (Exception e) {
                 log.error("Error in verification (attempt {}/{}): {}", 
                     attempt, MAX_RETRIES, e.getMessage());
@@ -80,5 +135,6 @@ public class TransactionVerifier {
                 }
             }
         }
+        return false;
     }
 }
@@ -1,5 +1,9 @@
 package ee.digit25.detector.monitoring;
 
+import ee.digit25.detector.domain.account.AccountValidator;
+import ee.digit25.detector.domain.device.DeviceValidator;
+import ee.digit25.detector.domain.person.PersonValidator;
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
@@ -11,7 +15,12 @@ import java.util.concurrent.atomic.AtomicLong;
 
 @Slf4j
 @Service
+@RequiredArgsConstructor
 public class PerformanceMonitor {
+
+    private final PersonValidator personValidator;
+    private final AccountValidator accountValidator;
+    private final DeviceValidator deviceValidator;
     
     private final MemoryMXBean memoryBean = ManagementFactory.getMemoryMXBean();
     private final ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
@@ -55,4 +64,18 @@ public class PerformanceMonitor {
             threadBean.getThreadCount()
         );
     }
-} 
\ No newline at end of file
+
+    @Scheduled(fixedRate = 10000)
+    public void logCacheMetrics() {
+        log.info("""
+            Entity Cache Metrics:
+            - {}
+            - {}
+            - {}
+            """,
+            personValidator.cacheStats(),
+            accountValidator.cacheStats(),
+            deviceValidator.cacheStats()
+        );
+    }
+}
@@ -0,0 +1,31 @@
+package ee.digit25.detector.monitoring;
+
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotBlank;
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+import org.springframework.validation.annotation.Validated;
+
+@Getter
+@Setter
+@Component
+@Validated
+@ConfigurationProperties("detector.tracing")
+public class TracingProperties {
+
+    private boolean enabled = true;
+
+    /**
+     * Number of preallocated trace slots, rounded up to a power of two. Should exceed the pending limit.
+     */
+    @Min(1024)
+    private int slots = 16384;
+
+    /**
+     * Offset the service uses for transaction timestamps and deadlines.
+     */
+    @NotBlank
+    private String zoneOffset = "Z";
+}
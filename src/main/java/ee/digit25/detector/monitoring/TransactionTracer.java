@@ -0,0 +1,292 @@
+package ee.digit25.detector.monitoring;
+
+import ee.digit25.detector.domain.transaction.external.api.Transaction;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Per-transaction latency tracing from fetch to verdict acknowledgement.
+ * <p>
+ * Each traced transaction owns a preallocated slot, found by open addressing on its id, in which the
+ * {@link System#nanoTime()} of every {@link Stage} is stored. When the verdict is acknowledged the slot is
+ * folded into per-stage {@link LatencyHistogram}s and a deadline slack distribution and then released, so
+ * tracing does not allocate per transaction.
+ * <p>
+ * A slot is first taken with a reservation marker, reset, and only then published under the transaction id,
+ * so a concurrent {@link #mark} can never see the stage times of the previous owner.
+ */
+@Slf4j
+@Component
+public class TransactionTracer {
+
+    private static final int MAX_PROBES = 8;
+    private static final long ABANDON_AFTER_NANOS = TimeUnit.MINUTES.toNanos(5);
+    private static final String RESERVED = new String("reserved"); // Compared by identity, never equals an id
+
+    public enum Stage {
+        FETCHED("fetch"),
+        VALIDATION_STARTED("queue wait"),
+        DEVICE_CHECKED("device lookup"),
+        SENDER_CHECKED("sender lookup"),
+        RECIPIENT_CHECKED("recipient lookup"),
+        SENDER_ACCOUNT_CHECKED("sender account lookup"),
+        RECIPIENT_ACCOUNT_CHECKED("recipient account lookup"),
+        VERDICT_ENQUEUED("rules and verdict enqueue"),
+        VERDICT_ACKNOWLEDGED("verdict post");
+
+        private final String label;
+
+        Stage(String label) {
+            this.label = label;
+        }
+    }
+
+    private static final Stage[] STAGES = Stage.values();
+    private static final int STAGE_COUNT = STAGES.length;
+
+    private final boolean enabled;
+    private final ZoneOffset zoneOffset;
+    private final int mask;
+    private final AtomicReferenceArray<String> owners;
+    private final AtomicLongArray marks;
+    private final AtomicLongArray deadlines;
+
+    private final LatencyHistogram[] stageLatency = new LatencyHistogram[STAGE_COUNT];
+    private final LatencyHistogram sourceAge = new LatencyHistogram();
+    private final LatencyHistogram endToEnd = new LatencyHistogram();
+    private final LatencyHistogram deadlineSlack = new LatencyHistogram();
+    private final LatencyHistogram deadlineOverrun = new LatencyHistogram();
+    private final AtomicLong missedDeadlines = new AtomicLong();
+    private final AtomicLong untraced = new AtomicLong();
+    private final AtomicLong abandoned = new AtomicLong();
+
+    public TransactionTracer(TracingProperties properties) {
+        this.enabled = properties.isEnabled();
+        this.zoneOffset = ZoneOffset.of(properties.getZoneOffset());
+
+        int slots = Integer.highestOneBit(Math.max(1, properties.getSlots() - 1)) << 1;
+        this.mask = slots - 1;
+        this.owners = new AtomicReferenceArray<>(slots);
+        this.marks = new AtomicLongArray(slots * STAGE_COUNT);
+        this.deadlines = new AtomicLongArray(slots);
+
+        for (int i = 0; i < STAGE_COUNT; i++) {
+            stageLatency[i] = new LatencyHistogram();
+        }
+    }
+
+    public void begin(List<Transaction> transactions) {
+        if (!enabled) return;
+
+        long now = System.nanoTime();
+        long wallClock = System.currentTimeMillis();
+        for (int i = 0; i < transactions.size(); i++) {
+            begin(transactions.get(i), now, wallClock);
+        }
+    }
+
+    public void mark(Transaction transaction, Stage stage) {
+        if (!enabled) return;
+
+        int slot = find(transaction.getId());
+        if (slot >= 0) {
+            marks.set(slot * STAGE_COUNT + stage.ordinal(), System.nanoTime());
+        }
+    }
+
+    public void mark(List<Transaction> transactions, Stage stage) {
+        if (!enabled) return;
+
+        long now = System.nanoTime();
+        for (int i = 0; i < transactions.size(); i++) {
+            int slot = find(transactions.get(i).getId());
+            if (slot >= 0) {
+                marks.set(slot * STAGE_COUNT + stage.ordinal(), now);
+            }
+        }
+    }
+
+    /**
+     * Records the verdict acknowledgement and folds the trace into the aggregates.
+     */
+    public void complete(List<Transaction> transactions) {
+        if (!enabled) return;
+
+        long now = System.nanoTime();
+        long wallClock = System.currentTimeMillis();
+        for (int i = 0; i < transactions.size(); i++) {
+            int slot = find(transactions.get(i).getId());
+            if (slot >= 0) {
+                marks.set(slot * STAGE_COUNT + Stage.VERDICT_ACKNOWLEDGED.ordinal(), now);
+                aggregate(slot, wallClock);
+                owners.set(slot, null);
+            }
+        }
+    }
+
+    /**
+     * Releases the slots of transactions whose verdict could not be delivered.
+     */
+    public void abandon(List<Transaction> transactions) {
+        if (!enabled) return;
+
+        for (int i = 0; i < transactions.size(); i++) {
+            int slot = find(transactions.get(i).getId());
+            if (slot >= 0) {
+                owners.set(slot, null);
+                abandoned.incrementAndGet();
+            }
+        }
+    }
+
+    private void begin(Transaction transaction, long now, long wallClock) {
+        String id = transaction.getId();
+        int start = spread(id.hashCode());
+
+        for (int probe = 0; probe < MAX_PROBES; probe++) {
+            int slot = (start + probe) & mask;
+            String owner = owners.get(slot);
+
+            if (owner != null && owner != RESERVED && owner.equals(id)) {
+                return; // Fetched again before we decided it, keep the original fetch time
+            }
+
+            boolean reusable = owner == null || owner != RESERVED
+                && now - marks.get(slot * STAGE_COUNT + Stage.FETCHED.ordinal()) > ABANDON_AFTER_NANOS;
+            if (reusable && owners.compareAndSet(slot, owner, RESERVED)) {
+                int base = slot * STAGE_COUNT;
+                for (int stage = 0; stage < STAGE_COUNT; stage++) {
+                    marks.set(base + stage, 0);
+                }
+                marks.set(base + Stage.FETCHED.ordinal(), now);
+                deadlines.set(slot, toEpochMillis(transaction.getDeadline()));
+                owners.set(slot, id);
+
+                long created = toEpochMillis(transaction.getTimestamp());
+                if (created > 0) {
+                    sourceAge.record(TimeUnit.MILLISECONDS.toMicros(wallClock - created));
+                }
+                return;
+            }
+        }
+
+        untraced.incrementAndGet();
+    }
+
+    private int find(String id) {
+        int start = spread(id.hashCode());
+
+        for (int probe = 0; probe < MAX_PROBES; probe++) {
+            int slot = (start + probe) & mask;
+            String owner = owners.get(slot);
+            if (owner != null && owner != RESERVED && (owner == id || owner.equals(id))) {
+                return slot;
+            }
+        }
+        return -1;
+    }
+
+    private void aggregate(int slot, long wallClock) {
+        int base = slot * STAGE_COUNT;
+        long fetched = marks.get(base);
+        long previous = fetched;
+
+        for (int stage = 1; stage < STAGE_COUNT; stage++) {
+            long mark = marks.get(base + stage);
+            if (mark != 0) {
+                stageLatency[stage].record(TimeUnit.NANOSECONDS.toMicros(mark - previous));
+                previous = mark;
+            }
+        }
+        endToEnd.record(TimeUnit.NANOSECONDS.toMicros(previous - fetched));
+
+        long deadline = deadlines.get(slot);
+        if (deadline > 0) {
+            long slackMillis = deadline - wallClock;
+            if (slackMillis < 0) {
+                missedDeadlines.incrementAndGet();
+                deadlineOverrun.record(TimeUnit.MILLISECONDS.toMicros(-slackMillis));
+            } else {
+                deadlineSlack.record(TimeUnit.MILLISECONDS.toMicros(slackMillis));
+            }
+        }
+    }
+
+    private long toEpochMillis(LocalDateTime time) {
+        if (time == null) {
+            return 0;
+        }
+        return time.toEpochSecond(zoneOffset) * 1000 + time.getNano() / 1_000_000;
+    }
+
+    LatencyHistogram stageLatency(Stage stage) {
+        return stageLatency[stage.ordinal()];
+    }
+
+    LatencyHistogram endToEnd() {
+        return endToEnd;
+    }
+
+    long untraced() {
+        return untraced.get();
+    }
+
+    private static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+    @Scheduled(fixedRate = 10000)
+    public void logTrace() {
+        long completed = endToEnd.getCount();
+        if (!enabled || completed == 0) return;
+
+        StringBuilder stages = new StringBuilder();
+        Stage slowest = null;
+        for (int i = 1; i < STAGE_COUNT; i++) {
+            LatencyHistogram histogram = stageLatency[i];
+            if (histogram.getCount() == 0) continue;
+
+            stages.append(String.format("%n  - %-26s n=%-8d p50=%8.2f ms  p99=%8.2f ms  total=%10.1f s",
+                STAGES[i].label, histogram.getCount(), histogram.percentile(0.50) / 1000.0,
+                histogram.percentile(0.99) / 1000.0, histogram.getSum() / 1e6));
+            if (slowest == null || histogram.getSum() > stageLatency[slowest.ordinal()].getSum()) {
+                slowest = STAGES[i];
+            }
+        }
+
+        log.info("""
+            Transaction trace:
+            - Completed: {} (untraced: {}, abandoned: {})
+            - Age at fetch p50 / p99: {} ms / {} ms
+            - Fetch to verdict p50 / p99: {} ms / {} ms
+            - Stages:{}
+            - Most time spent in: {}
+            - Deadline slack p1 / p50: {} ms / {} ms
+            - Missed deadlines: {} ({} %), overrun p50: {} ms
+            """,
+            completed,
+            untraced.get(),
+            abandoned.get(),
+            sourceAge.percentile(0.50) / 1000,
+            sourceAge.percentile(0.99) / 1000,
+            endToEnd.percentile(0.50) / 1000,
+            endToEnd.percentile(0.99) / 1000,
+            stages,
+            slowest == null ? "-" : slowest.label,
+            deadlineSlack.percentile(0.01) / 1000,
+            deadlineSlack.percentile(0.50) / 1000,
+            missedDeadlines.get(),
+            String.format("%.2f", missedDeadlines.get() * 100.0 / completed),
+            deadlineOverrun.percentile(0.50) / 1000
+        );
+    }
+}
@@ -0,0 +1,194 @@
+package ee.digit25.detector.process;
+
+import ee.digit25.detector.domain.transaction.external.api.Transaction;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Sizes transaction fetches and verdict posts from measured load instead of constants.
+ * <p>
+ * Each processor has its own controller (see {@link BatchSizeControllers}), so processors running on different
+ * cycles never mix their samples. About every second the controller folds the window's measurements into
+ * moving averages: arrival rate (fetched transactions per second), completion rate (decided transactions per
+ * second), busy throughput (decided transactions per second of batch residence), batch residence time (fetch
+ * to verdicts posted) and verdict post latency. By Little's law the work in flight is rate times residence
+ * time, so:
+ * <ul>
+ *     <li>While fetches come back full, i.e. a backlog is waiting: fetch size = busy throughput x target
+ *     latency, and at least the current size plus the probe while batches finish within the target latency.
+ *     The busy throughput leaves out the pauses of the processor's fixed-delay loop between batches, which
+ *     would otherwise make every batch look slower than it is and shrink the fetch size under load.</li>
+ *     <li>Otherwise: fetch size = arrival rate x min(residence time, target latency).</li>
+ *     <li>flush size = completion rate x post latency, the verdicts that pile up while one post is in flight.</li>
+ * </ul>
+ * Sizes are clamped to configured bounds, move at most by a factor of two per second, and only change when
+ * the new value differs by more than the hysteresis. The window is measured rather than assumed, and both the
+ * weight of a sample and the step bound scale with it, so an adjustment that runs late does not overreact.
+ */
+@Slf4j
+public class BatchSizeController {
+
+    private final String name;
+    private final BatchingProperties properties;
+
+    private volatile int fetchSize;
+    private volatile int flushSize;
+
+    // Window counters, reset on every adjustment
+    private final AtomicLong fetched = new AtomicLong();
+    private final AtomicLong fullFetches = new AtomicLong();
+    private final AtomicLong decided = new AtomicLong();
+    private final AtomicLong residenceNanos = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong postNanos = new AtomicLong();
+    private final AtomicLong posts = new AtomicLong();
+
+    // Moving averages, only written by the adjusting thread
+    private volatile double arrivalRate = Double.NaN;
+    private volatile double completionRate = Double.NaN;
+    private volatile double busyRate = Double.NaN;
+    private volatile double residenceSeconds = Double.NaN;
+    private volatile double postSeconds = Double.NaN;
+    private volatile boolean backlogged;
+    private long lastAdjustment;
+
+    private final AtomicLong adjustments = new AtomicLong();
+
+    public BatchSizeController(String name, BatchingProperties properties) {
+        this(name, properties, System.nanoTime());
+    }
+
+    BatchSizeController(String name, BatchingProperties properties, long startNanos) {
+        this.name = name;
+        this.properties = properties;
+        this.lastAdjustment = startNanos;
+        this.fetchSize = clamp(properties.getInitialFetchSize(), properties.getMinFetchSize(), properties.getMaxFetchSize());
+        this.flushSize = properties.getMaxFlushSize();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int fetchSize() {
+        return fetchSize;
+    }
+
+    public int flushSize() {
+        return flushSize;
+    }
+
+    public void onFetched(int requested, int received) {
+        fetched.addAndGet(received);
+        if (received >= requested) {
+            fullFetches.incrementAndGet();
+        }
+    }
+
+    /**
+     * @param startNanos {@link System#nanoTime()} taken before the batch was fetched
+     */
+    public void onBatchCompleted(int size, long startNanos) {
+        decided.addAndGet(size);
+        residenceNanos.addAndGet(System.nanoTime() - startNanos);
+        batches.incrementAndGet();
+    }
+
+    /**
+     * Posts the verdicts in chunks of {@link #flushSize()}, measuring each post.
+     */
+    public void flush(List<Transaction> transactions, Consumer<List<Transaction>> post) {
+        int chunk = flushSize;
+        for (int from = 0; from < transactions.size(); from += chunk) {
+            long start = System.nanoTime();
+            post.accept(transactions.subList(from, Math.min(transactions.size(), from + chunk)));
+            postNanos.addAndGet(System.nanoTime() - start);
+            posts.incrementAndGet();
+        }
+    }
+
+    public void adjust() {
+        adjust(System.nanoTime());
+    }
+
+    void adjust(long now) {
+        double window = (now - lastAdjustment) / 1e9;
+        if (window <= 0) return;
+        lastAdjustment = now;
+
+        // A sample weighs as much as the time it covers, one second counting with the configured smoothing
+        double weight = 1 - Math.pow(1 - properties.getSmoothing(), window);
+        double maxStep = Math.pow(2, window);
+
+        long windowBatches = batches.getAndSet(0);
+        long windowPosts = posts.getAndSet(0);
+        long windowDecided = decided.getAndSet(0);
+        double windowResidence = residenceNanos.getAndSet(0) / 1e9;
+        arrivalRate = smooth(arrivalRate, fetched.getAndSet(0) / window, weight);
+        completionRate = smooth(completionRate, windowDecided / window, weight);
+        backlogged = fullFetches.getAndSet(0) > 0;
+        if (windowBatches > 0 && windowResidence > 0) {
+            residenceSeconds = smooth(residenceSeconds, windowResidence / windowBatches, weight);
+            busyRate = smooth(busyRate, windowDecided / windowResidence, weight);
+        }
+        if (windowPosts > 0) {
+            postSeconds = smooth(postSeconds, postNanos.getAndSet(0) / 1e9 / windowPosts, weight);
+        }
+
+        // Idle service or no completed batch yet: nothing to size from
+        if (Double.isNaN(residenceSeconds) || arrivalRate == 0) return;
+
+        double targetLatency = properties.getTargetLatency().toNanos() / 1e9;
+        double targetSize = arrivalRate * Math.min(residenceSeconds, targetLatency);
+        if (backlogged) {
+            targetSize = busyRate * targetLatency;
+            if (residenceSeconds < targetLatency) {
+                targetSize = Math.max(targetSize, fetchSize * (1 + properties.getProbe()));
+            }
+        }
+        fetchSize = resize(fetchSize, targetSize, maxStep, properties.getMinFetchSize(), properties.getMaxFetchSize());
+
+        if (!Double.isNaN(postSeconds)) {
+            flushSize = resize(flushSize, completionRate * postSeconds, maxStep,
+                properties.getMinFlushSize(), properties.getMaxFlushSize());
+        }
+    }
+
+    private int resize(int current, double target, double maxStep, int min, int max) {
+        int lower = Math.max(min, (int) Math.floor(current / maxStep));
+        int upper = Math.min(max, (int) Math.ceil(current * maxStep));
+        int next = clamp((int) Math.ceil(target), lower, upper);
+        if (Math.abs(next - current) <= current * properties.getHysteresis()) {
+            return current;
+        }
+        adjustments.incrementAndGet();
+        return next;
+    }
+
+    private static double smooth(double average, double sample, double weight) {
+        return Double.isNaN(average) ? sample : average + weight * (sample - average);
+    }
+
+    private static int clamp(int value, int min, int max) {
+        return Math.max(min, Math.min(max, value));
+    }
+
+    public void logMetrics() {
+        // Controllers of processors that do not run in the current mode have nothing to report
+        if (Double.isNaN(residenceSeconds)) return;
+
+        log.info("""
+            Batch Size Controller ({}):
+            - Fetch size: {}, flush size: {}, adjustments: {}
+            - Arrival rate: {} tx/s, completion rate: {} tx/s, busy throughput: {} tx/s, backlogged: {}
+            - Batch residence: {} ms, verdict post: {} ms
+            """,
+            name, fetchSize, flushSize, adjustments.get(),
+            Math.round(arrivalRate), Math.round(completionRate), Math.round(busyRate), backlogged,
+            Math.round(residenceSeconds * 1000), Math.round(postSeconds * 1000)
+        );
+    }
+}
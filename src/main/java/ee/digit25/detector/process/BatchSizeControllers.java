@@ -0,0 +1,65 @@
+package ee.digit25.detector.process;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hands every processor its own {@link BatchSizeController} and adjusts all of them from a dedicated thread,
+ * so the adjustment interval does not depend on how long the scheduled processing loops block.
+ */
+@Slf4j
+@Component
+public class BatchSizeControllers {
+
+    private static final long ADJUSTMENT_INTERVAL_MS = 1000;
+
+    private final BatchingProperties properties;
+    private final Map<String, BatchSizeController> controllers = new ConcurrentSkipListMap<>();
+    private final ScheduledExecutorService adjuster = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "batch-size-adjuster");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public BatchSizeControllers(BatchingProperties properties) {
+        this.properties = properties;
+        adjuster.scheduleAtFixedRate(this::adjustAll, ADJUSTMENT_INTERVAL_MS, ADJUSTMENT_INTERVAL_MS,
+            TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @return the controller of the named processor, created on first use
+     */
+    public BatchSizeController forProcessor(String name) {
+        return controllers.computeIfAbsent(name, ignored -> new BatchSizeController(name, properties));
+    }
+
+    private void adjustAll() {
+        for (BatchSizeController controller : controllers.values()) {
+            try {
+                controller.adjust();
+            } catch (RuntimeException e) {
+                // Keep the periodic task alive, an exception would cancel it
+                log.error("Could not adjust batch sizes of {}: {}", controller.getName(), e.getMessage(), e);
+            }
+        }
+    }
+
+    @Scheduled(fixedRate = 5000)
+    public void logMetrics() {
+        controllers.values().forEach(BatchSizeController::logMetrics);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        adjuster.shutdownNow();
+    }
+}
@@ -0,0 +1,68 @@
+package ee.digit25.detector.process;
+
+import jakarta.validation.constraints.DecimalMax;
+import jakarta.validation.constraints.DecimalMin;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotNull;
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+import org.springframework.validation.annotation.Validated;
+
+import java.time.Duration;
+
+@Getter
+@Setter
+@Component
+@Validated
+@ConfigurationProperties("detector.batching")
+public class BatchingProperties {
+
+    /**
+     * Fetch size used until the first measurements are in.
+     */
+    @Min(1)
+    private int initialFetchSize = 100;
+
+    @Min(1)
+    private int minFetchSize = 10;
+
+    @Min(1)
+    private int maxFetchSize = 1000;
+
+    @Min(1)
+    private int minFlushSize = 10;
+
+    @Min(1)
+    private int maxFlushSize = 500;
+
+    /**
+     * Batch residence time (fetch to verdicts posted) the controller sizes for; batches that take longer shrink
+     * the fetch size.
+     */
+    @NotNull
+    private Duration targetLatency = Duration.ofMillis(500);
+
+    /**
+     * Weight of the newest measurement in the moving averages.
+     */
+    @DecimalMin("0.05")
+    @DecimalMax("1.0")
+    private double smoothing = 0.3;
+
+    /**
+     * A new size is only applied when it differs from the current one by more than this share.
+     */
+    @DecimalMin("0.0")
+    @DecimalMax("1.0")
+    private double hysteresis = 0.15;
+
+    /**
+     * Share the fetch size grows by at least per adjustment while fetches come back full and batches finish
+     * within the target latency, to find out whether more throughput is available.
+     */
+    @DecimalMin("0.0")
+    @DecimalMax("1.0")
+    private double probe = 0.25;
+}
@@ -4,7 +4,6 @@ import ee.digit25.detector.domain.transaction.TransactionValidator;
 import ee.digit25.detector.domain.transaction.external.TransactionRequester;
 import ee.digit25.detector.domain.transaction.external.TransactionVerifier;
 import ee.digit25.detector.domain.transaction.external.api.Transaction;
-import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
@@ -16,53 +15,62 @@ import java.util.stream.Collectors;
 
 @Slf4j
 @Service
-@RequiredArgsConstructor
 public class HighPerformanceProcessor {
 
     private final TransactionRequester requester;
     private final TransactionValidator validator;
     private final TransactionVerifier verifier;
     private final Executor taskExecutor;
-    private final Semaphore apiRequestSemaphore;
-    private final int optimalBatchSize;
+    private final ProcessingProperties processingProperties;
+    private final BatchSizeController batchSizeController;
+    private final LookaheadPrefetcher lookaheadPrefetcher;
     
     private final AtomicLong totalTransactionsProcessed = new AtomicLong(0);
     private final AtomicLong totalProcessingTime = new AtomicLong(0);
     private final BlockingQueue<Transaction> transactionQueue = new LinkedBlockingQueue<>(10000);
+
+    public HighPerformanceProcessor(TransactionRequester requester, TransactionValidator validator,
+                                    TransactionVerifier verifier, Executor taskExecutor,
+                                    ProcessingProperties processingProperties,
+                                    BatchSizeControllers batchSizeControllers,
+                                    LookaheadPrefetcher lookaheadPrefetcher) {
+        this.requester = requester;
+        this.validator = validator;
+        this.verifier = verifier;
+        this.taskExecutor = taskExecutor;
+        this.processingProperties = processingProperties;
+        this.batchSizeController = batchSizeControllers.forProcessor("high-performance");
+        this.lookaheadPrefetcher = lookaheadPrefetcher;
+    }
     private volatile boolean isShuttingDown = false;
 
     @Scheduled(fixedDelay = 100) // Process every 100ms for maximum throughput
     public void process() {
-        if (isShuttingDown) return;
+        if (isShuttingDown || !processingProperties.getMode().runs(ProcessingMode.HIGH_PERFORMANCE)) return;
 
         try {
+            long start = System.nanoTime();
+            int batchSize = batchSizeController.fetchSize();
+
             // Fill the queue if it's getting low
-            if (transactionQueue.size() < optimalBatchSize) {
-                List<Transaction> newTransactions = requester.getUnverified(optimalBatchSize);
+            if (transactionQueue.size() < batchSize) {
+                List<Transaction> newTransactions = requester.getUnverified(batchSize);
+                batchSizeController.onFetched(batchSize, newTransactions.size());
                 transactionQueue.addAll(newTransactions);
+                lookaheadPrefetcher.onArrival(newTransactions);
             }
 
             // Process a batch of transactions
             List<Transaction> batch = new ArrayList<>();
-            transactionQueue.drainTo(batch, optimalBatchSize);
+            transactionQueue.drainTo(batch, batchSize);
 
             if (batch.isEmpty()) return;
 
-            // Process the batch in parallel with rate limiting
+            // Process the batch in parallel, the requesters limit the outbound calls
             List<CompletableFuture<Map.Entry<Boolean, Transaction>>> futures = batch.stream()
                 .map(transaction -> CompletableFuture.supplyAsync(() -> {
-                    try {
-                        apiRequestSemaphore.acquire();
-                        try {
-                            boolean isValid = validator.isLegitimate(transaction);
-                            return Map.entry(isValid, transaction);
-                        } finally {
-                            apiRequestSemaphore.release();
-                        }
-                    } catch (InterruptedException e) {
-                        Thread.currentThread().interrupt();
-                        return Map.entry(false, transaction);
-                    }
+                    boolean isValid = validator.isLegitimate(transaction);
+                    return Map.entry(isValid, transaction);
                 }, taskExecutor))
                 .collect(Collectors.toList());
 
@@ -83,15 +91,17 @@ public class HighPerformanceProcessor {
             List<Transaction> rejectedTransactions = groupedTransactions.getOrDefault(false, new ArrayList<>());
 
             if (!legitimateTransactions.isEmpty()) {
-                verifier.verify(legitimateTransactions);
+                batchSizeController.flush(legitimateTransactions, verifier::verify);
             }
 
             if (!rejectedTransactions.isEmpty()) {
-                verifier.reject(rejectedTransactions);
+                batchSizeController.flush(rejectedTransactions, verifier::reject);
             }
 
             // Update metrics
+            batchSizeController.onBatchCompleted(batch.size(), start);
             totalTransactionsProcessed.addAndGet(batch.size());
+            totalProcessingTime.addAndGet(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
             
         } catch (Exception e) {
             log.error("Error in transaction processing", e);
@@ -100,6 +110,8 @@ public class HighPerformanceProcessor {
 
     @Scheduled(fixedRate = 1000) // Log metrics every second
     public void logMetrics() {
+        if (!processingProperties.getMode().runs(ProcessingMode.HIGH_PERFORMANCE)) return;
+
         long processed = totalTransactionsProcessed.get();
         long time = totalProcessingTime.get();
         
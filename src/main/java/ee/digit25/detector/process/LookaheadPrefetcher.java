@@ -0,0 +1,100 @@
+package ee.digit25.detector.process;
+
+import ee.digit25.detector.common.BackgroundLookups;
+import ee.digit25.detector.domain.account.AccountValidator;
+import ee.digit25.detector.domain.device.DeviceValidator;
+import ee.digit25.detector.domain.person.PersonValidator;
+import ee.digit25.detector.domain.transaction.external.api.Transaction;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * Resolves the entities of queued transactions before a worker reaches them.
+ * <p>
+ * When transactions are queued, the first {@link LookaheadProperties#getDepth()} of them are scanned for
+ * parties, accounts and devices that are not cached yet, and these are loaded through the bulk endpoints as
+ * {@link BackgroundLookups}, so prefetching stays behind foreground validation in the concurrency budget.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class LookaheadPrefetcher {
+
+    private final PersonValidator personValidator;
+    private final AccountValidator accountValidator;
+    private final DeviceValidator deviceValidator;
+    private final BackgroundLookups backgroundLookups;
+    private final LookaheadProperties properties;
+
+    private final Set<String> pendingKeys = ConcurrentHashMap.newKeySet();
+    private final AtomicLong prefetchedKeys = new AtomicLong();
+    private final AtomicLong skippedForBudget = new AtomicLong();
+
+    public void onArrival(List<Transaction> transactions) {
+        if (!properties.isEnabled() || transactions.isEmpty()) return;
+
+        int scanned = Math.min(transactions.size(), properties.getDepth());
+        List<String> persons = new ArrayList<>();
+        List<String> accounts = new ArrayList<>();
+        List<String> devices = new ArrayList<>();
+
+        for (int i = 0; i < scanned; i++) {
+            Transaction transaction = transactions.get(i);
+            collect(transaction.getSender(), personValidator::isCached, persons);
+            collect(transaction.getRecipient(), personValidator::isCached, persons);
+            collect(transaction.getSenderAccount(), accountValidator::isCached, accounts);
+            collect(transaction.getRecipientAccount(), accountValidator::isCached, accounts);
+            collect(transaction.getDeviceMac(), deviceValidator::isCached, devices);
+        }
+
+        submit(persons, personValidator::prefetch);
+        submit(accounts, accountValidator::prefetch);
+        submit(devices, deviceValidator::prefetch);
+    }
+
+    private void collect(String key, Predicate<String> isCached, List<String> keys) {
+        if (key != null && !isCached.test(key) && pendingKeys.add(key)) {
+            keys.add(key);
+        }
+    }
+
+    private void submit(List<String> keys, Consumer<List<String>> prefetch) {
+        for (int from = 0; from < keys.size(); from += properties.getBulkSize()) {
+            List<String> chunk = keys.subList(from, Math.min(keys.size(), from + properties.getBulkSize()));
+            if (!backgroundLookups.execute(() -> load(chunk, prefetch))) {
+                skippedForBudget.addAndGet(chunk.size());
+                chunk.forEach(pendingKeys::remove);
+            }
+        }
+    }
+
+    private void load(List<String> keys, Consumer<List<String>> prefetch) {
+        try {
+            if (backgroundLookups.runWithSparePermit(() -> prefetch.accept(keys))) {
+                prefetchedKeys.addAndGet(keys.size());
+            } else {
+                skippedForBudget.addAndGet(keys.size());
+            }
+        } finally {
+            keys.forEach(pendingKeys::remove);
+        }
+    }
+
+    @Scheduled(fixedRate = 5000)
+    public void logMetrics() {
+        if (!properties.isEnabled()) return;
+
+        log.info("Lookahead prefetch: {} keys loaded ahead, {} skipped for lack of spare permits, {} in flight",
+            prefetchedKeys.get(), skippedForBudget.get(), pendingKeys.size());
+    }
+}
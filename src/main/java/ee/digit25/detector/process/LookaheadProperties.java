@@ -0,0 +1,30 @@
+package ee.digit25.detector.process;
+
+import jakarta.validation.constraints.Min;
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+import org.springframework.validation.annotation.Validated;
+
+@Getter
+@Setter
+@Component
+@Validated
+@ConfigurationProperties("detector.lookahead")
+public class LookaheadProperties {
+
+    private boolean enabled = true;
+
+    /**
+     * How many newly queued transactions are scanned per arrival.
+     */
+    @Min(1)
+    private int depth = 500;
+
+    /**
+     * Keys per bulk request.
+     */
+    @Min(1)
+    private int bulkSize = 100;
+}
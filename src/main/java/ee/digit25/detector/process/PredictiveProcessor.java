@@ -1,10 +1,9 @@
 package ee.digit25.detector.process;
 
-import ee.digit25.detector.domain.transaction.TransactionValidator;
 import ee.digit25.detector.domain.transaction.external.TransactionRequester;
 import ee.digit25.detector.domain.transaction.external.TransactionVerifier;
 import ee.digit25.detector.domain.transaction.external.api.Transaction;
-import lombok.RequiredArgsConstructor;
+import ee.digit25.detector.validation.HeuristicShadowEvaluator;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
@@ -16,40 +15,41 @@ import java.util.stream.Collectors;
 
 @Slf4j
 @Service
-@RequiredArgsConstructor
 public class PredictiveProcessor {
 
     private final TransactionRequester requester;
-    private final TransactionValidator validator;
     private final TransactionVerifier verifier;
     private final Executor taskExecutor;
-    private final Semaphore apiRequestSemaphore;
-    
-    // Performance tuning constants
-    private static final int INITIAL_BATCH_SIZE = 12;
-    private static final int MAX_BATCH_SIZE = 200;
-    private static final int MIN_BATCH_SIZE = 5;
-    private static final int ADJUSTMENT_INTERVAL = 5000; // 5 seconds
-    
-    // Dynamic batch size adjustment
-    private volatile int currentBatchSize = INITIAL_BATCH_SIZE;
+    private final ProcessingProperties processingProperties;
+    private final LookaheadPrefetcher lookaheadPrefetcher;
+    private final BatchSizeController batchSizeController;
+    private final HeuristicShadowEvaluator heuristicEvaluator;
+
     private final AtomicLong totalTransactionsProcessed = new AtomicLong(0);
     private final AtomicLong totalProcessingTime = new AtomicLong(0);
     private final BlockingQueue<Transaction> transactionQueue = new LinkedBlockingQueue<>(10000);
     
-    // Performance tracking
-    private final Queue<Long> processingTimes = new ConcurrentLinkedQueue<>();
-    private final Map<String, Integer> senderFrequency = new ConcurrentHashMap<>();
-    private final Map<String, Integer> recipientFrequency = new ConcurrentHashMap<>();
-    private final Set<String> knownLegitimateSenders = ConcurrentHashMap.newKeySet();
-    private final Set<String> knownLegitimateRecipients = ConcurrentHashMap.newKeySet();
-    
     // Prefetch buffer
     private final BlockingQueue<Transaction> prefetchBuffer = new LinkedBlockingQueue<>(2000);
     private volatile boolean isPrefetching = false;
 
+    public PredictiveProcessor(TransactionRequester requester, TransactionVerifier verifier, Executor taskExecutor,
+                               ProcessingProperties processingProperties, LookaheadPrefetcher lookaheadPrefetcher,
+                               BatchSizeControllers batchSizeControllers,
+                               HeuristicShadowEvaluator heuristicEvaluator) {
+        this.requester = requester;
+        this.verifier = verifier;
+        this.taskExecutor = taskExecutor;
+        this.processingProperties = processingProperties;
+        this.lookaheadPrefetcher = lookaheadPrefetcher;
+        this.batchSizeController = batchSizeControllers.forProcessor("predictive");
+        this.heuristicEvaluator = heuristicEvaluator;
+    }
+
     @Scheduled(fixedDelay = 100) // Process every 100ms
     public void process() {
+        if (!processingProperties.getMode().runs(ProcessingMode.PREDICTIVE)) return;
+
         try {
             // Ensure prefetch buffer is filled
             if (!isPrefetching && prefetchBuffer.size() < 1000) {
@@ -57,32 +57,18 @@ public class PredictiveProcessor {
             }
 
             // Get transactions from prefetch buffer
+            long start = System.nanoTime();
             List<Transaction> batch = new ArrayList<>();
-            prefetchBuffer.drainTo(batch, currentBatchSize);
+            prefetchBuffer.drainTo(batch, batchSizeController.fetchSize());
 
             if (batch.isEmpty()) return;
 
             // Process batch with optimized validation
             List<CompletableFuture<Map.Entry<Boolean, Transaction>>> futures = batch.stream()
                 .map(transaction -> CompletableFuture.supplyAsync(() -> {
-                    try {
-                        apiRequestSemaphore.acquire();
-                        try {
-                            // Quick check for known legitimate parties
-                            if (isLikelyLegitimate(transaction)) {
-                                return Map.entry(true, transaction);
-                            }
-                            
-                            boolean isValid = validator.isLegitimate(transaction);
-                            updateFrequencyMaps(transaction, isValid);
-                            return Map.entry(isValid, transaction);
-                        } finally {
-                            apiRequestSemaphore.release();
-                        }
-                    } catch (InterruptedException e) {
-                        Thread.currentThread().interrupt();
-                        return Map.entry(false, transaction);
-                    }
+                    // Heuristics only skip full validation once they proved precise enough
+                    boolean isValid = heuristicEvaluator.isLegitimate(transaction);
+                    return Map.entry(isValid, transaction);
                 }, taskExecutor))
                 .collect(Collectors.toList());
 
@@ -103,15 +89,16 @@ public class PredictiveProcessor {
             List<Transaction> rejectedTransactions = groupedTransactions.getOrDefault(false, new ArrayList<>());
 
             if (!legitimateTransactions.isEmpty()) {
-                verifier.verify(legitimateTransactions);
+                batchSizeController.flush(legitimateTransactions, verifier::verify);
             }
 
             if (!rejectedTransactions.isEmpty()) {
-                verifier.reject(rejectedTransactions);
+                batchSizeController.flush(rejectedTransactions, verifier::reject);
             }
 
             // Update metrics
-            updateMetrics(batch.size());
+            batchSizeController.onBatchCompleted(batch.size(), start);
+            updateMetrics(batch.size(), start);
 
         } catch (Exception e) {
             log.error("Error in transaction processing", e);
@@ -123,8 +110,12 @@ public class PredictiveProcessor {
         CompletableFuture.runAsync(() -> {
             try {
                 while (prefetchBuffer.size() < 1000 && !Thread.currentThread().isInterrupted()) {
-                    List<Transaction> newTransactions = requester.getUnverified(currentBatchSize);
+                    // Never ask for more than the buffer can take, addAll would throw past its capacity
+                    int batchSize = Math.min(batchSizeController.fetchSize(), prefetchBuffer.remainingCapacity());
+                    List<Transaction> newTransactions = requester.getUnverified(batchSize);
+                    batchSizeController.onFetched(batchSize, newTransactions.size());
                     prefetchBuffer.addAll(newTransactions);
+                    lookaheadPrefetcher.onArrival(newTransactions);
                 }
             } finally {
                 isPrefetching = false;
@@ -132,46 +123,15 @@ public class PredictiveProcessor {
         }, taskExecutor);
     }
 
-    private boolean isLikelyLegitimate(Transaction transaction) {
-        return knownLegitimateSenders.contains(transaction.getSender()) &&
-               knownLegitimateRecipients.contains(transaction.getRecipient());
-    }
-
-    private void updateFrequencyMaps(Transaction transaction, boolean isValid) {
-        if (isValid) {
-            knownLegitimateSenders.add(transaction.getSender());
-            knownLegitimateRecipients.add(transaction.getRecipient());
-        }
-        
-        senderFrequency.merge(transaction.getSender(), 1, Integer::sum);
-        recipientFrequency.merge(transaction.getRecipient(), 1, Integer::sum);
-    }
-
-    @Scheduled(fixedRate = ADJUSTMENT_INTERVAL)
-    public void adjustBatchSize() {
-        if (processingTimes.size() < 10) return;
-
-        long avgProcessingTime = processingTimes.stream()
-            .mapToLong(Long::longValue)
-            .sum() / processingTimes.size();
-
-        // Adjust batch size based on processing time
-        if (avgProcessingTime < 500 && currentBatchSize < MAX_BATCH_SIZE) {
-            currentBatchSize = Math.min(currentBatchSize + 10, MAX_BATCH_SIZE);
-        } else if (avgProcessingTime > 1000 && currentBatchSize > MIN_BATCH_SIZE) {
-            currentBatchSize = Math.max(currentBatchSize - 10, MIN_BATCH_SIZE);
-        }
-
-        processingTimes.clear();
-    }
-
-    private void updateMetrics(int batchSize) {
+    private void updateMetrics(int batchSize, long startNanos) {
         totalTransactionsProcessed.addAndGet(batchSize);
-        processingTimes.add(System.currentTimeMillis());
+        totalProcessingTime.addAndGet(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos));
     }
 
     @Scheduled(fixedRate = 1000)
     public void logMetrics() {
+        if (!processingProperties.getMode().runs(ProcessingMode.PREDICTIVE)) return;
+
         long processed = totalTransactionsProcessed.get();
         long time = totalProcessingTime.get();
         
@@ -180,16 +140,12 @@ public class PredictiveProcessor {
             - Total transactions processed: {}
             - Current batch size: {}
             - Prefetch buffer size: {}
-            - Known legitimate senders: {}
-            - Known legitimate recipients: {}
             - Transactions per second: {}
             - Average processing time: {} ms
             """,
             processed,
-            currentBatchSize,
+            batchSizeController.fetchSize(),
             prefetchBuffer.size(),
-            knownLegitimateSenders.size(),
-            knownLegitimateRecipients.size(),
             processed > 0 ? (processed * 1000.0) / time : 0,
             processed > 0 ? time / processed : 0
         );
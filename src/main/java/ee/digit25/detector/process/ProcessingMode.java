@@ -0,0 +1,26 @@
+package ee.digit25.detector.process;
+
+/**
+ * Selects which processors pull and decide transactions.
+ */
+public enum ProcessingMode {
+
+    /**
+     * {@link Processor}, {@link HighPerformanceProcessor} and {@link PredictiveProcessor} side by side.
+     */
+    COMBINED,
+    SIMPLE,
+    HIGH_PERFORMANCE,
+    PREDICTIVE,
+    /**
+     * {@link ShardedProcessor} only, with per sender account ordering.
+     */
+    SHARDED;
+
+    public boolean runs(ProcessingMode processor) {
+        if (this == processor) {
+            return true;
+        }
+        return this == COMBINED && (processor == SIMPLE || processor == HIGH_PERFORMANCE || processor == PREDICTIVE);
+    }
+}
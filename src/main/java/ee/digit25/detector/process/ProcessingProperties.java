@@ -0,0 +1,29 @@
+package ee.digit25.detector.process;
+
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotNull;
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+import org.springframework.validation.annotation.Validated;
+
+@Getter
+@Setter
+@Component
+@Validated
+@ConfigurationProperties("detector.processing")
+public class ProcessingProperties {
+
+    @NotNull
+    private ProcessingMode mode = ProcessingMode.COMBINED;
+
+    /**
+     * Number of single-writer shards in {@link ProcessingMode#SHARDED} mode. Every shard validates on its own
+     * thread, so this also bounds the concurrent entity lookups of the mode.
+     */
+    @Min(1)
+    @Max(45)
+    private int shards = 8;
+}
@@ -4,7 +4,6 @@ import ee.digit25.detector.domain.transaction.TransactionValidator;
 import ee.digit25.detector.domain.transaction.external.TransactionRequester;
 import ee.digit25.detector.domain.transaction.external.TransactionVerifier;
 import ee.digit25.detector.domain.transaction.external.api.Transaction;
-import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
@@ -16,21 +15,35 @@ import java.util.stream.Collectors;
 
 @Slf4j
 @Service
-@RequiredArgsConstructor
 public class Processor {
 
-    private static final int TRANSACTION_BATCH_SIZE = 50;
     private final TransactionRequester requester;
     private final TransactionValidator validator;
     private final TransactionVerifier verifier;
+    private final ProcessingProperties processingProperties;
+    private final BatchSizeController batchSizeController;
+
+    public Processor(TransactionRequester requester, TransactionValidator validator, TransactionVerifier verifier,
+                     ProcessingProperties processingProperties, BatchSizeControllers batchSizeControllers) {
+        this.requester = requester;
+        this.validator = validator;
+        this.verifier = verifier;
+        this.processingProperties = processingProperties;
+        this.batchSizeController = batchSizeControllers.forProcessor("simple");
+    }
 
     @Scheduled(fixedDelay = 1000)
     public void process() {
+        if (!processingProperties.getMode().runs(ProcessingMode.SIMPLE)) return;
+
+        int batchSize = batchSizeController.fetchSize();
         if (log.isInfoEnabled()) {
-            log.info("Starting to process a batch of transactions of size {}", TRANSACTION_BATCH_SIZE);
+            log.info("Starting to process a batch of transactions of size {}", batchSize);
         }
 
-        List<Transaction> transactions = requester.getUnverified(TRANSACTION_BATCH_SIZE);
+        long start = System.nanoTime();
+        List<Transaction> transactions = requester.getUnverified(batchSize);
+        batchSizeController.onFetched(batchSize, transactions.size());
         
         if (transactions.isEmpty()) {
             return;
@@ -41,6 +54,7 @@ public class Processor {
             .collect(Collectors.partitioningBy(validator::isLegitimate));
 
         processTransactionGroups(groupedTransactions);
+        batchSizeController.onBatchCompleted(transactions.size(), start);
     }
 
     private void processTransactionGroups(Map<Boolean, List<Transaction>> groupedTransactions) {
@@ -50,13 +64,13 @@ public class Processor {
         // Process legitimate transactions asynchronously if supported by verifier
         if (legitimateTransactions != null && !legitimateTransactions.isEmpty()) {
             logBatchSize("Bulk verifying {} legitimate transactions", legitimateTransactions.size());
-            verifier.verify(legitimateTransactions);
+            batchSizeController.flush(legitimateTransactions, verifier::verify);
         }
 
         // Process rejected transactions
         if (rejectedTransactions != null && !rejectedTransactions.isEmpty()) {
             logBatchSize("Bulk rejecting {} transactions", rejectedTransactions.size());
-            verifier.reject(rejectedTransactions);
+            batchSizeController.flush(rejectedTransactions, verifier::reject);
         }
     }
 
@@ -0,0 +1,240 @@
+package ee.digit25.detector.process;
+
+import ee.digit25.detector.config.CacheProperties;
+import ee.digit25.detector.domain.account.AccountValidator;
+import ee.digit25.detector.domain.account.BalanceCheck;
+import ee.digit25.detector.domain.account.external.api.Account;
+import ee.digit25.detector.domain.transaction.TransactionValidator;
+import ee.digit25.detector.domain.transaction.external.TransactionRequester;
+import ee.digit25.detector.domain.transaction.external.TransactionVerifier;
+import ee.digit25.detector.domain.transaction.external.api.Transaction;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Validates transactions on a fixed set of single-writer shards chosen by sender account.
+ * <p>
+ * Every shard runs on its own thread and is the only writer of the balance ledger for its accounts, so
+ * debits of one account are decided in fetch order and each approval is deducted before the next debit is
+ * checked, without locks. Different shards run in parallel.
+ * <p>
+ * A ledger only exists while it holds debits against an account snapshot the cache may still serve, i.e. for
+ * at most the longest jittered cache TTL after it was opened, so accounts that stop sending are forgotten.
+ */
+@Slf4j
+@Service
+public class ShardedProcessor {
+
+    private final TransactionRequester requester;
+    private final TransactionValidator validator;
+    private final TransactionVerifier verifier;
+    private final AccountValidator accountValidator;
+    private final TransactionBatchOptimizer optimizer;
+    private final ProcessingProperties properties;
+    private final BatchSizeController batchSizeController;
+    private final long ledgerLifetimeMillis;
+    private final Shard[] shards;
+
+    private final AtomicLong totalTransactionsProcessed = new AtomicLong(0);
+
+    public ShardedProcessor(TransactionRequester requester, TransactionValidator validator, TransactionVerifier verifier,
+                            AccountValidator accountValidator, TransactionBatchOptimizer optimizer,
+                            ProcessingProperties properties, CacheProperties cacheProperties,
+                            BatchSizeControllers batchSizeControllers) {
+        this.requester = requester;
+        this.validator = validator;
+        this.verifier = verifier;
+        this.accountValidator = accountValidator;
+        this.optimizer = optimizer;
+        this.properties = properties;
+        this.batchSizeController = batchSizeControllers.forProcessor("sharded");
+        this.ledgerLifetimeMillis = (long) (cacheProperties.getTtl().toMillis() * (1 + cacheProperties.getJitter()));
+        this.shards = new Shard[properties.getShards()];
+        for (int i = 0; i < shards.length; i++) {
+            shards[i] = new Shard(i);
+        }
+    }
+
+    @Scheduled(fixedDelay = 100)
+    public void process() {
+        if (!properties.getMode().runs(ProcessingMode.SHARDED)) return;
+
+        try {
+            long start = System.nanoTime();
+            int batchSize = batchSizeController.fetchSize();
+            List<Transaction> transactions = requester.getUnverified(batchSize);
+            batchSizeController.onFetched(batchSize, transactions.size());
+            if (transactions.isEmpty()) return;
+
+            List<List<Transaction>> partitions = optimizer.shardBySenderAccount(transactions, shards.length);
+            List<CompletableFuture<ShardResult>> futures = new ArrayList<>(shards.length);
+            for (int i = 0; i < shards.length; i++) {
+                List<Transaction> partition = partitions.get(i);
+                if (!partition.isEmpty()) {
+                    Shard shard = shards[i];
+                    futures.add(CompletableFuture.supplyAsync(() -> shard.validate(partition), shard.executor));
+                }
+            }
+
+            List<Transaction> legitimateTransactions = new ArrayList<>();
+            List<Transaction> rejectedTransactions = new ArrayList<>();
+            for (CompletableFuture<ShardResult> future : futures) {
+                ShardResult result = future.join();
+                legitimateTransactions.addAll(result.legitimate());
+                rejectedTransactions.addAll(result.rejected());
+            }
+
+            if (!legitimateTransactions.isEmpty()) {
+                batchSizeController.flush(legitimateTransactions, verifier::verify);
+            }
+
+            if (!rejectedTransactions.isEmpty()) {
+                batchSizeController.flush(rejectedTransactions, verifier::reject);
+            }
+
+            batchSizeController.onBatchCompleted(transactions.size(), start);
+            totalTransactionsProcessed.addAndGet(transactions.size());
+        } catch (Exception e) {
+            log.error("Error in sharded transaction processing", e);
+        }
+    }
+
+    @Scheduled(fixedRate = 5000)
+    public void logMetrics() {
+        if (!properties.getMode().runs(ProcessingMode.SHARDED)) return;
+
+        log.info("Sharded processing: {} transactions processed on {} shards",
+            totalTransactionsProcessed.get(), shards.length);
+    }
+
+    /**
+     * @return open balance ledgers over all shards; only consistent while no batch is being validated
+     */
+    int ledgerCount() {
+        int count = 0;
+        for (Shard shard : shards) {
+            count += shard.ledgerCount();
+        }
+        return count;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        for (Shard shard : shards) {
+            shard.executor.shutdownNow();
+        }
+    }
+
+    private record ShardResult(List<Transaction> legitimate, List<Transaction> rejected) {
+    }
+
+    /**
+     * One shard. {@link #ledgers} is only touched from {@link #executor}'s thread and is kept in the order the
+     * ledgers were opened, so expired ones are always at its head.
+     */
+    private final class Shard implements BalanceCheck {
+
+        private final ExecutorService executor;
+        private final Map<String, Ledger> ledgers = new LinkedHashMap<>();
+
+        private Shard(int index) {
+            this.executor = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "TransactionShard-" + index);
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+
+        private ShardResult validate(List<Transaction> partition) {
+            expireLedgers(System.currentTimeMillis());
+            List<Transaction> legitimate = new ArrayList<>(partition.size());
+            List<Transaction> rejected = new ArrayList<>();
+
+            for (Transaction transaction : partition) {
+                if (validator.isLegitimate(transaction, this)) {
+                    debit(transaction.getSenderAccount(), transaction.getAmount());
+                    legitimate.add(transaction);
+                } else {
+                    rejected.add(transaction);
+                }
+            }
+            return new ShardResult(legitimate, rejected);
+        }
+
+        @Override
+        public boolean hasSufficientBalance(String accountNumber, BigDecimal amount) {
+            Account account = accountValidator.findAccount(accountNumber);
+            if (account == null) {
+                return false;
+            }
+
+            Ledger ledger = ledgers.get(accountNumber);
+            BigDecimal debited = ledger != null && ledger.snapshot == account ? ledger.debited : BigDecimal.ZERO;
+            if (account.getBalance().subtract(debited).compareTo(amount) < 0) {
+                log.info("Account {} has insufficient balance after {} pending debits", accountNumber, debited);
+                return false;
+            }
+            return true;
+        }
+
+        /**
+         * Approved debits are tracked against the account snapshot they were checked with. A new snapshot
+         * carries the service's own view of the balance, so the local debits start over in a new ledger.
+         */
+        private void debit(String accountNumber, BigDecimal amount) {
+            Account account = accountValidator.findAccount(accountNumber);
+            if (account == null) {
+                return;
+            }
+
+            Ledger ledger = ledgers.get(accountNumber);
+            if (ledger == null || ledger.snapshot != account) {
+                // Re-insert, so the map stays ordered by the time each ledger was opened
+                ledgers.remove(accountNumber);
+                ledger = new Ledger(account, System.currentTimeMillis());
+                ledgers.put(accountNumber, ledger);
+            }
+            ledger.debited = ledger.debited.add(amount);
+        }
+
+        /**
+         * Drops ledgers whose snapshot has expired from the cache. Any later read returns a newer snapshot,
+         * so their debits no longer count.
+         */
+        private void expireLedgers(long now) {
+            Iterator<Ledger> oldestFirst = ledgers.values().iterator();
+            while (oldestFirst.hasNext() && now - oldestFirst.next().openedAt >= ledgerLifetimeMillis) {
+                oldestFirst.remove();
+            }
+        }
+
+        private int ledgerCount() {
+            return ledgers.size();
+        }
+    }
+
+    private static final class Ledger {
+
+        private final Account snapshot;
+        private final long openedAt;
+        private BigDecimal debited = BigDecimal.ZERO;
+
+        private Ledger(Account snapshot, long openedAt) {
+            this.snapshot = snapshot;
+            this.openedAt = openedAt;
+        }
+    }
+}
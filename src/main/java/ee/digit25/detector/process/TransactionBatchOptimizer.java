@@ -11,13 +11,6 @@ import java.util.stream.Collectors;
 @Component
 public class TransactionBatchOptimizer {
     
-    private static final int OPTIMAL_BATCH_SIZE = 100;
-    private static final int MAX_BATCH_SIZE = 200;
-    private static final int MIN_BATCH_SIZE = 50;
-    
-    private final Queue<Long> processingTimes = new LinkedList<>();
-    private int currentBatchSize = OPTIMAL_BATCH_SIZE;
-    
     public List<List<Transaction>> optimizeBatch(List<Transaction> transactions) {
         // Group transactions by sender for parallel processing
         Map<String, List<Transaction>> senderGroups = transactions.stream()
@@ -29,31 +22,24 @@ public class TransactionBatchOptimizer {
             .collect(Collectors.toList());
     }
     
-    public void updateBatchSize(long processingTime) {
-        processingTimes.add(processingTime);
-        if (processingTimes.size() > 10) {
-            processingTimes.poll();
-        }
-        
-        if (processingTimes.size() == 10) {
-            adjustBatchSize();
+    /**
+     * Splits the batch into {@code shards} partitions by sender account, keeping the fetch order within each
+     * partition. All debits of an account always land in the same partition.
+     */
+    public List<List<Transaction>> shardBySenderAccount(List<Transaction> transactions, int shards) {
+        List<List<Transaction>> partitions = new ArrayList<>(shards);
+        for (int i = 0; i < shards; i++) {
+            partitions.add(new ArrayList<>());
         }
-    }
-    
-    private void adjustBatchSize() {
-        double avgProcessingTime = processingTimes.stream()
-            .mapToLong(Long::longValue)
-            .average()
-            .orElse(0);
-            
-        if (avgProcessingTime < 500 && currentBatchSize < MAX_BATCH_SIZE) {
-            currentBatchSize = Math.min(currentBatchSize + 10, MAX_BATCH_SIZE);
-        } else if (avgProcessingTime > 1000 && currentBatchSize > MIN_BATCH_SIZE) {
-            currentBatchSize = Math.max(currentBatchSize - 10, MIN_BATCH_SIZE);
+
+        for (Transaction transaction : transactions) {
+            partitions.get(shardOf(transaction.getSenderAccount(), shards)).add(transaction);
         }
+        return partitions;
     }
-    
-    public int getCurrentBatchSize() {
-        return currentBatchSize;
+
+    static int shardOf(String senderAccount, int shards) {
+        int hash = senderAccount == null ? 0 : senderAccount.hashCode();
+        return Math.floorMod(hash ^ (hash >>> 16), shards);
     }
-} 
\ No newline at end of file
+}
@@ -0,0 +1,78 @@
+package ee.digit25.detector.validation;
+
+import jakarta.validation.constraints.DecimalMax;
+import jakarta.validation.constraints.DecimalMin;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotNull;
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+import org.springframework.validation.annotation.Validated;
+
+@Getter
+@Setter
+@Component
+@Validated
+@ConfigurationProperties("detector.heuristics")
+public class HeuristicProperties {
+
+    public enum Mode {
+        /**
+         * Heuristics are not consulted.
+         */
+        OFF,
+        /**
+         * Heuristics run next to full validation and are only measured. Every transaction is still fully
+         * validated, so this mode costs the heuristics' own work and saves nothing; it is the default so that
+         * precision is already measured when {@link #GATED} is switched on.
+         */
+        SHADOW,
+        /**
+         * A heuristic may approve transactions without full validation once its precision passed the threshold.
+         */
+        GATED
+    }
+
+    @NotNull
+    private Mode mode = Mode.SHADOW;
+
+    /**
+     * Share of a heuristic's approvals that must be right before it may skip full validation.
+     */
+    @DecimalMin("0.5")
+    @DecimalMax("1.0")
+    private double precisionThreshold = 0.995;
+
+    /**
+     * Approvals that must have been checked against full validation before the gate can open.
+     */
+    @Min(1)
+    private int minSamples = 1000;
+
+    /**
+     * The precision is measured over roughly this many recent approvals of the heuristic; older ones are halved
+     * away. Predicted rejections do not count towards it.
+     */
+    @Min(100)
+    private int window = 20_000;
+
+    /**
+     * Share of a trusted heuristic's approvals that are still fully validated, so its precision stays measured.
+     */
+    @DecimalMin("0.0")
+    @DecimalMax("1.0")
+    private double auditRate = 0.05;
+
+    /**
+     * Counters per row of the heuristics' frequency sketches.
+     */
+    @Min(1024)
+    private int sketchWidth = 16_384;
+
+    /**
+     * Observations after which the heuristics' frequency sketches are halved.
+     */
+    @Min(1000)
+    private long decayPeriod = 200_000;
+}
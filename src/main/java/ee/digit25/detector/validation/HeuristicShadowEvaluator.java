@@ -0,0 +1,184 @@
+package ee.digit25.detector.validation;
+
+import ee.digit25.detector.domain.account.AccountValidator;
+import ee.digit25.detector.domain.device.DeviceValidator;
+import ee.digit25.detector.domain.person.PersonValidator;
+import ee.digit25.detector.domain.transaction.TransactionValidator;
+import ee.digit25.detector.domain.transaction.external.api.Transaction;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs the {@link TransactionHeuristic}s next to full validation and keeps a confusion matrix per heuristic,
+ * where a positive is a predicted approval, together with the uncached entity lookups its approvals would
+ * have saved.
+ * <p>
+ * In {@link HeuristicProperties.Mode#GATED} mode a heuristic whose approval precision over the recent window
+ * passed the threshold may approve transactions without full validation. A sample of its approvals is still
+ * validated, so a heuristic that drifts loses the gate again.
+ */
+@Slf4j
+@Service
+public class HeuristicShadowEvaluator {
+
+    private final TransactionValidator validator;
+    private final PersonValidator personValidator;
+    private final AccountValidator accountValidator;
+    private final DeviceValidator deviceValidator;
+    private final HeuristicProperties properties;
+    private final List<Evaluation> evaluations;
+
+    public HeuristicShadowEvaluator(TransactionValidator validator, PersonValidator personValidator,
+                                    AccountValidator accountValidator, DeviceValidator deviceValidator,
+                                    HeuristicProperties properties, List<TransactionHeuristic> heuristics) {
+        this.validator = validator;
+        this.personValidator = personValidator;
+        this.accountValidator = accountValidator;
+        this.deviceValidator = deviceValidator;
+        this.properties = properties;
+        this.evaluations = heuristics.stream().map(Evaluation::new).toList();
+    }
+
+    public boolean isLegitimate(Transaction transaction) {
+        if (properties.getMode() == HeuristicProperties.Mode.OFF || evaluations.isEmpty()) {
+            return validator.isLegitimate(transaction);
+        }
+
+        boolean[] predictions = new boolean[evaluations.size()];
+        boolean anyApproval = false;
+        for (int i = 0; i < predictions.length; i++) {
+            predictions[i] = evaluations.get(i).heuristic.isLikelyLegitimate(transaction);
+            anyApproval |= predictions[i];
+        }
+
+        if (properties.getMode() == HeuristicProperties.Mode.GATED) {
+            for (int i = 0; i < predictions.length; i++) {
+                Evaluation evaluation = evaluations.get(i);
+                if (predictions[i] && evaluation.isTrusted()
+                    && ThreadLocalRandom.current().nextDouble() >= properties.getAuditRate()) {
+                    evaluation.shortCircuited.incrementAndGet();
+                    return true;
+                }
+            }
+        }
+
+        int uncachedLookups = anyApproval ? uncachedLookups(transaction) : 0;
+        boolean legitimate = validator.isLegitimate(transaction);
+        for (int i = 0; i < predictions.length; i++) {
+            Evaluation evaluation = evaluations.get(i);
+            evaluation.record(predictions[i], legitimate, uncachedLookups);
+            evaluation.heuristic.record(transaction, legitimate);
+        }
+        return legitimate;
+    }
+
+    double precision(String heuristic) {
+        return evaluation(heuristic).precision();
+    }
+
+    boolean isTrusted(String heuristic) {
+        return evaluation(heuristic).isTrusted();
+    }
+
+    private Evaluation evaluation(String heuristic) {
+        return evaluations.stream()
+            .filter(evaluation -> evaluation.heuristic.name().equals(heuristic))
+            .findFirst()
+            .orElseThrow();
+    }
+
+    private int uncachedLookups(Transaction transaction) {
+        int uncached = 0;
+        if (!deviceValidator.isCached(transaction.getDeviceMac())) uncached++;
+        if (!personValidator.isCached(transaction.getSender())) uncached++;
+        if (!personValidator.isCached(transaction.getRecipient())) uncached++;
+        if (!accountValidator.isCached(transaction.getSenderAccount())) uncached++;
+        if (!accountValidator.isCached(transaction.getRecipientAccount())) uncached++;
+        return uncached;
+    }
+
+    @Scheduled(fixedRate = 10000)
+    public void logMetrics() {
+        if (properties.getMode() == HeuristicProperties.Mode.OFF) return;
+
+        for (Evaluation evaluation : evaluations) {
+            log.info("""
+                Heuristic {} ({} mode):
+                - Confusion matrix: TP {}, FP {}, TN {}, FN {}
+                - Recent approval precision: {} over {} approvals, trusted: {}
+                - Uncached lookups saved by correct approvals: {}, approved without validation: {}
+                """,
+                evaluation.heuristic.name(), properties.getMode(),
+                evaluation.truePositives.get(), evaluation.falsePositives.get(),
+                evaluation.trueNegatives.get(), evaluation.falseNegatives.get(),
+                String.format("%.4f", evaluation.precision()), evaluation.recentApprovals(), evaluation.isTrusted(),
+                evaluation.lookupsSaved.get(), evaluation.shortCircuited.get()
+            );
+        }
+    }
+
+    private final class Evaluation {
+
+        private final TransactionHeuristic heuristic;
+
+        private final AtomicLong truePositives = new AtomicLong();
+        private final AtomicLong falsePositives = new AtomicLong();
+        private final AtomicLong trueNegatives = new AtomicLong();
+        private final AtomicLong falseNegatives = new AtomicLong();
+        private final AtomicLong lookupsSaved = new AtomicLong();
+        private final AtomicLong shortCircuited = new AtomicLong();
+
+        // Recent approvals for the gate, halved together when the window is full; guarded by this
+        private long recentApprovals;
+        private long recentCorrectApprovals;
+
+        private Evaluation(TransactionHeuristic heuristic) {
+            this.heuristic = heuristic;
+        }
+
+        private void record(boolean predicted, boolean legitimate, int uncachedLookups) {
+            if (!predicted) {
+                (legitimate ? falseNegatives : trueNegatives).incrementAndGet();
+                return;
+            }
+
+            if (legitimate) {
+                truePositives.incrementAndGet();
+                lookupsSaved.addAndGet(uncachedLookups);
+            } else {
+                falsePositives.incrementAndGet();
+            }
+            recordApproval(legitimate);
+        }
+
+        private synchronized void recordApproval(boolean correct) {
+            recentApprovals++;
+            if (correct) recentCorrectApprovals++;
+
+            if (recentApprovals >= properties.getWindow()) {
+                // Scale both by the same factor so halving does not move the precision
+                long halved = recentApprovals >> 1;
+                recentCorrectApprovals = Math.round((double) recentCorrectApprovals * halved / recentApprovals);
+                recentApprovals = halved;
+            }
+        }
+
+        private synchronized long recentApprovals() {
+            return recentApprovals;
+        }
+
+        private synchronized double precision() {
+            return recentApprovals == 0 ? 0 : (double) recentCorrectApprovals / recentApprovals;
+        }
+
+        private synchronized boolean isTrusted() {
+            return recentApprovals >= properties.getMinSamples()
+                && precision() >= properties.getPrecisionThreshold();
+        }
+    }
+}
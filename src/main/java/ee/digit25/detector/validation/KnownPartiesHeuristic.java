@@ -0,0 +1,40 @@
+package ee.digit25.detector.validation;
+
+import ee.digit25.detector.common.DecayingCountMinSketch;
+import ee.digit25.detector.domain.transaction.external.api.Transaction;
+import org.springframework.stereotype.Component;
+
+/**
+ * Approves transactions between a sender and a recipient that both took part in legitimate transactions
+ * recently.
+ */
+@Component
+public class KnownPartiesHeuristic implements TransactionHeuristic {
+
+    private final DecayingCountMinSketch legitimateSenders;
+    private final DecayingCountMinSketch legitimateRecipients;
+
+    public KnownPartiesHeuristic(HeuristicProperties properties) {
+        this.legitimateSenders = new DecayingCountMinSketch(properties.getSketchWidth(), properties.getDecayPeriod());
+        this.legitimateRecipients = new DecayingCountMinSketch(properties.getSketchWidth(), properties.getDecayPeriod());
+    }
+
+    @Override
+    public String name() {
+        return "known-legitimate-parties";
+    }
+
+    @Override
+    public boolean isLikelyLegitimate(Transaction transaction) {
+        return legitimateSenders.estimate(transaction.getSender()) > 0
+            && legitimateRecipients.estimate(transaction.getRecipient()) > 0;
+    }
+
+    @Override
+    public void record(Transaction transaction, boolean legitimate) {
+        if (legitimate) {
+            legitimateSenders.increment(transaction.getSender());
+            legitimateRecipients.increment(transaction.getRecipient());
+        }
+    }
+}
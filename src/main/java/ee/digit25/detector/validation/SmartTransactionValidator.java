@@ -1,40 +1,44 @@
 package ee.digit25.detector.validation;
 
+import ee.digit25.detector.common.DecayingAverageSketch;
+import ee.digit25.detector.common.DecayingCountMinSketch;
 import ee.digit25.detector.domain.transaction.external.api.Transaction;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
 
 import java.math.BigDecimal;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.atomic.AtomicInteger;
 
 @Slf4j
 @Component
-public class SmartTransactionValidator {
+public class SmartTransactionValidator implements TransactionHeuristic {
     
-    // Pattern recognition maps
-    private final Map<String, AtomicInteger> senderFrequency = new ConcurrentHashMap<>();
-    private final Map<String, AtomicInteger> recipientFrequency = new ConcurrentHashMap<>();
-    private final Map<String, BigDecimal> averageAmounts = new ConcurrentHashMap<>();
-    private final Map<String, Integer> transactionCounts = new ConcurrentHashMap<>();
+    // Pattern recognition sketches
+    private final DecayingCountMinSketch senderFrequency;
+    private final DecayingCountMinSketch recipientFrequency;
+    // Average amount per sender in cents
+    private final DecayingAverageSketch amounts;
     
     // Trust thresholds
     private static final int TRUST_THRESHOLD = 5;
     private static final BigDecimal AMOUNT_VARIANCE_THRESHOLD = new BigDecimal("1000.00");
-    
+
+    public SmartTransactionValidator(HeuristicProperties properties) {
+        this.senderFrequency = new DecayingCountMinSketch(properties.getSketchWidth(), properties.getDecayPeriod());
+        this.recipientFrequency = new DecayingCountMinSketch(properties.getSketchWidth(), properties.getDecayPeriod());
+        this.amounts = new DecayingAverageSketch(properties.getSketchWidth(), properties.getDecayPeriod());
+    }
+
+    @Override
+    public String name() {
+        return "frequent-parties-and-amount";
+    }
+
+    @Override
     public boolean isLikelyLegitimate(Transaction transaction) {
         String sender = transaction.getSender();
         String recipient = transaction.getRecipient();
         BigDecimal amount = transaction.getAmount();
         
-        // Update frequency maps
-        senderFrequency.computeIfAbsent(sender, k -> new AtomicInteger(0)).incrementAndGet();
-        recipientFrequency.computeIfAbsent(recipient, k -> new AtomicInteger(0)).incrementAndGet();
-        
-        // Update amount statistics
-        updateAmountStatistics(sender, amount);
-        
         // Check for trusted patterns
         if (isTrustedSender(sender) && isTrustedRecipient(recipient)) {
             return true;
@@ -47,26 +51,39 @@ public class SmartTransactionValidator {
         
         return true;
     }
+
+    @Override
+    public void record(Transaction transaction, boolean legitimate) {
+        // Only legitimate transactions build trust and the usual amount; a rejected one must not teach the
+        // heuristic to approve the next attempt of the same parties
+        if (!legitimate) return;
+
+        // Update frequency sketches
+        senderFrequency.increment(transaction.getSender());
+        recipientFrequency.increment(transaction.getRecipient());
+        
+        // Update amount statistics
+        updateAmountStatistics(transaction.getSender(), transaction.getAmount());
+    }
     
     private void updateAmountStatistics(String sender, BigDecimal amount) {
-        transactionCounts.merge(sender, 1, Integer::sum);
-        averageAmounts.merge(sender, amount, (oldAvg, newAmount) -> 
-            oldAvg.add(newAmount).divide(new BigDecimal("2")));
+        amounts.add(sender, amount.movePointRight(2).longValue());
     }
     
     private boolean isTrustedSender(String sender) {
-        return senderFrequency.getOrDefault(sender, new AtomicInteger(0)).get() >= TRUST_THRESHOLD;
+        return senderFrequency.estimate(sender) >= TRUST_THRESHOLD;
     }
     
     private boolean isTrustedRecipient(String recipient) {
-        return recipientFrequency.getOrDefault(recipient, new AtomicInteger(0)).get() >= TRUST_THRESHOLD;
+        return recipientFrequency.estimate(recipient) >= TRUST_THRESHOLD;
     }
     
     private boolean isSuspiciousAmount(String sender, BigDecimal amount) {
-        BigDecimal avgAmount = averageAmounts.get(sender);
-        if (avgAmount == null) return false;
+        double averageCents = amounts.average(sender);
+        if (Double.isNaN(averageCents)) return false;
         
+        BigDecimal avgAmount = BigDecimal.valueOf((long) averageCents, 2);
         BigDecimal difference = amount.subtract(avgAmount).abs();
         return difference.compareTo(AMOUNT_VARIANCE_THRESHOLD) > 0;
     }
-} 
\ No newline at end of file
+}
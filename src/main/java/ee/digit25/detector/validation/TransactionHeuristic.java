@@ -0,0 +1,22 @@
+package ee.digit25.detector.validation;
+
+import ee.digit25.detector.domain.transaction.external.api.Transaction;
+
+/**
+ * A cheap guess of a transaction's verdict that needs no entity lookups. Heuristics only decide real
+ * transactions once {@link HeuristicShadowEvaluator} has measured them to be precise enough.
+ */
+public interface TransactionHeuristic {
+
+    String name();
+
+    /**
+     * @return whether the transaction looks legitimate; must not change the heuristic's state
+     */
+    boolean isLikelyLegitimate(Transaction transaction);
+
+    /**
+     * Learns from a verdict of full validation.
+     */
+    void record(Transaction transaction, boolean legitimate);
+}
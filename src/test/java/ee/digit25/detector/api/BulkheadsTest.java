@@ -0,0 +1,114 @@
+package ee.digit25.detector.api;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BulkheadsTest {
+
+    private final BulkheadProperties properties = new BulkheadProperties();
+    private final List<Thread> waiters = new CopyOnWriteArrayList<>();
+
+    @AfterEach
+    void stopWaiters() {
+        waiters.forEach(Thread::interrupt);
+    }
+
+    @Test
+    void keepsMinimumOfHigherClassesFree() {
+        Bulkheads bulkheads = bulkheads(4, 1, 0, 1, 0);
+
+        // Lookups may borrow idle permits, except the one verdict posts are guaranteed
+        assertThat(bulkheads.tryAcquire(CallClass.LOOKUP)).isTrue();
+        assertThat(bulkheads.tryAcquire(CallClass.LOOKUP)).isTrue();
+        assertThat(bulkheads.tryAcquire(CallClass.LOOKUP)).isTrue();
+        assertThat(bulkheads.tryAcquire(CallClass.LOOKUP)).isFalse();
+        assertThat(bulkheads.tryAcquire(CallClass.BACKGROUND)).isFalse();
+
+        assertThat(bulkheads.tryAcquire(CallClass.VERDICT)).isTrue();
+    }
+
+    @Test
+    void keepsBackgroundOutOfForegroundMinimums() {
+        Bulkheads bulkheads = bulkheads(2, 0, 0, 1, 0);
+
+        assertThat(bulkheads.tryAcquire(CallClass.BACKGROUND)).isTrue();
+        assertThat(bulkheads.tryAcquire(CallClass.BACKGROUND)).isFalse();
+
+        assertThat(bulkheads.tryAcquire(CallClass.LOOKUP)).isTrue();
+    }
+
+    @Test
+    void handsReleasedPermitToHighestPriorityWaiter() throws InterruptedException {
+        Bulkheads bulkheads = bulkheads(1, 0, 0, 0, 0);
+        assertThat(bulkheads.tryAcquire(CallClass.LOOKUP)).isTrue();
+        List<CallClass> admitted = new CopyOnWriteArrayList<>();
+
+        Thread background = waiter(bulkheads, CallClass.BACKGROUND, admitted, new AtomicReference<>());
+        Thread verdict = waiter(bulkheads, CallClass.VERDICT, admitted, new AtomicReference<>());
+
+        bulkheads.release(CallClass.LOOKUP);
+        verdict.join(5_000);
+        assertThat(admitted).containsExactly(CallClass.VERDICT);
+        assertThat(background.isAlive()).isTrue();
+
+        bulkheads.release(CallClass.VERDICT);
+        background.join(5_000);
+        assertThat(admitted).containsExactly(CallClass.VERDICT, CallClass.BACKGROUND);
+    }
+
+    @Test
+    void interruptedWaiterDoesNotKeepOthersWaiting() throws InterruptedException {
+        Bulkheads bulkheads = bulkheads(1, 0, 0, 0, 0);
+        assertThat(bulkheads.tryAcquire(CallClass.LOOKUP)).isTrue();
+        List<CallClass> admitted = new CopyOnWriteArrayList<>();
+        AtomicReference<Throwable> interruptedFailure = new AtomicReference<>();
+
+        Thread interrupted = waiter(bulkheads, CallClass.LOOKUP, admitted, interruptedFailure);
+        Thread other = waiter(bulkheads, CallClass.LOOKUP, admitted, new AtomicReference<>());
+
+        interrupted.interrupt();
+        interrupted.join(5_000);
+        bulkheads.release(CallClass.LOOKUP);
+        other.join(5_000);
+
+        assertThat(interruptedFailure.get()).isInstanceOf(InterruptedException.class);
+        assertThat(admitted).containsExactly(CallClass.LOOKUP);
+        assertThat(other.isAlive()).isFalse();
+    }
+
+    private Bulkheads bulkheads(int total, int verdict, int fetch, int lookup, int background) {
+        properties.setTotal(total);
+        properties.setVerdict(verdict);
+        properties.setFetch(fetch);
+        properties.setLookup(lookup);
+        properties.setBackground(background);
+        return new Bulkheads(new LocalRequestPermits(total), properties);
+    }
+
+    /**
+     * Starts a thread that waits for a permit and returns once it is blocked.
+     */
+    private Thread waiter(Bulkheads bulkheads, CallClass callClass, List<CallClass> admitted,
+                          AtomicReference<Throwable> failure) throws InterruptedException {
+        Thread thread = new Thread(() -> {
+            try {
+                bulkheads.acquire(callClass);
+                admitted.add(callClass);
+            } catch (InterruptedException e) {
+                failure.set(e);
+            }
+        });
+        waiters.add(thread);
+        thread.start();
+        while (thread.getState() != Thread.State.WAITING) {
+            Thread.sleep(1);
+        }
+        return thread;
+    }
+}
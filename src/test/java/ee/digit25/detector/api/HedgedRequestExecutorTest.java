@@ -0,0 +1,190 @@
+package ee.digit25.detector.api;
+
+import okhttp3.Request;
+import okio.Timeout;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import retrofit2.Call;
+import retrofit2.Callback;
+import retrofit2.Response;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class HedgedRequestExecutorTest {
+
+    private static final String ENDPOINT = "persons";
+
+    private final HedgingProperties properties = new HedgingProperties();
+    private final BulkheadProperties bulkheadProperties = new BulkheadProperties();
+    private Bulkheads bulkheads;
+    private HedgedRequestExecutor executor;
+
+    @BeforeEach
+    void warmUp() {
+        properties.setEnabled(true);
+        properties.setMinSamples(1);
+        properties.setMinDelay(Duration.ofMillis(50));
+        properties.setBudgetBurst(1);
+        // One permit beyond the minimums: background work can borrow it, but nothing more
+        bulkheadProperties.setTotal(31);
+        bulkheads = new Bulkheads(new LocalRequestPermits(31), bulkheadProperties);
+        executor = new HedgedRequestExecutor(bulkheads, properties);
+
+        // Enough fast calls for a p95, which puts the hedge delay at its 50 ms minimum
+        for (int i = 0; i < 64; i++) {
+            executor.execute(ENDPOINT, new StubCall("warm-up", 0, 0));
+        }
+    }
+
+    @AfterEach
+    void shutdown() {
+        executor.shutdown();
+    }
+
+    @Test
+    void doesNotHedgeCallsFasterThanDelay() {
+        StubCall call = new StubCall("primary", 0, 0);
+
+        assertThat(executor.execute(ENDPOINT, call)).isEqualTo("primary");
+        assertThat(call.clones.get()).isZero();
+    }
+
+    @Test
+    void hedgesSlowCallAndCancelsLoser() {
+        StubCall call = new StubCall("primary", 10_000, 0);
+
+        long start = System.nanoTime();
+        String result = executor.execute(ENDPOINT, call);
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        assertThat(result).isEqualTo("hedge");
+        assertThat(elapsedMillis).isGreaterThanOrEqualTo(50).isLessThan(5_000);
+        assertThat(call.clones.get()).isOne();
+        assertThat(call.isCanceled()).isTrue();
+    }
+
+    @Test
+    void keepsPrimaryWhenItWinsAfterHedging() {
+        StubCall call = new StubCall("primary", 100, 10_000);
+
+        assertThat(executor.execute(ENDPOINT, call)).isEqualTo("primary");
+        assertThat(call.clones.get()).isOne();
+        assertThat(call.hedge.isCanceled()).isTrue();
+    }
+
+    @Test
+    void stopsHedgingWhenBudgetIsSpent() {
+        // The warm-up saved up more than the single hedge the burst allows
+        assertThat(executor.execute(ENDPOINT, new StubCall("primary", 10_000, 0))).isEqualTo("hedge");
+
+        StubCall second = new StubCall("primary", 100, 0);
+        assertThat(executor.execute(ENDPOINT, second)).isEqualTo("primary");
+        assertThat(second.clones.get()).isZero();
+    }
+
+    @Test
+    void keepsBudgetWhenTheHedgeCannotBeSent() {
+        StubCall call = new StubCall("primary", 100, 0);
+        call.failClone = true;
+
+        assertThat(executor.execute(ENDPOINT, call)).isEqualTo("primary");
+        assertThat(call.clones.get()).isOne();
+
+        // The single hedge the burst allows is still there
+        assertThat(executor.execute(ENDPOINT, new StubCall("primary", 10_000, 0))).isEqualTo("hedge");
+    }
+
+    @Test
+    void hedgesBackgroundCallsOnlyWithBackgroundPermits() {
+        StubCall call = new StubCall("primary", 100, 0);
+
+        String result = bulkheads.call(CallClass.BACKGROUND, () -> executor.execute(ENDPOINT, call));
+
+        // Lookup permits are free, but the only background permit is the caller's
+        assertThat(result).isEqualTo("primary");
+        assertThat(call.clones.get()).isZero();
+    }
+
+    /**
+     * Answers after a fixed latency unless cancelled first; its clone is the hedge and answers "hedge".
+     */
+    private static final class StubCall implements Call<String> {
+
+        private final String value;
+        private final long latencyMillis;
+        private final long hedgeLatencyMillis;
+        private final CountDownLatch cancelled = new CountDownLatch(1);
+        private final AtomicInteger clones = new AtomicInteger();
+        private volatile boolean executed;
+        private volatile boolean failClone;
+        private volatile StubCall hedge;
+
+        private StubCall(String value, long latencyMillis, long hedgeLatencyMillis) {
+            this.value = value;
+            this.latencyMillis = latencyMillis;
+            this.hedgeLatencyMillis = hedgeLatencyMillis;
+        }
+
+        @Override
+        public Response<String> execute() throws IOException {
+            executed = true;
+            try {
+                if (cancelled.await(latencyMillis, TimeUnit.MILLISECONDS)) {
+                    throw new IOException("Canceled");
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException();
+            }
+            return Response.success(value);
+        }
+
+        @Override
+        public void enqueue(Callback<String> callback) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public boolean isExecuted() {
+            return executed;
+        }
+
+        @Override
+        public void cancel() {
+            cancelled.countDown();
+        }
+
+        @Override
+        public boolean isCanceled() {
+            return cancelled.getCount() == 0;
+        }
+
+        @Override
+        public StubCall clone() {
+            clones.incrementAndGet();
+            if (failClone) {
+                throw new IllegalStateException("Cannot clone");
+            }
+            hedge = new StubCall("hedge", hedgeLatencyMillis, hedgeLatencyMillis);
+            return hedge;
+        }
+
+        @Override
+        public Request request() {
+            return new Request.Builder().url("http://localhost/").build();
+        }
+
+        @Override
+        public Timeout timeout() {
+            return Timeout.NONE;
+        }
+    }
+}
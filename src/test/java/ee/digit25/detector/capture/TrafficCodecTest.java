@@ -0,0 +1,100 @@
+package ee.digit25.detector.capture;
+
+import ee.digit25.detector.domain.account.external.api.Account;
+import ee.digit25.detector.domain.device.external.api.Device;
+import ee.digit25.detector.domain.person.external.api.Person;
+import ee.digit25.detector.domain.transaction.external.api.Transaction;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TrafficCodecTest {
+
+    @Test
+    void roundTripsTransactions() throws IOException {
+        Transaction transaction = new Transaction("tx-1", new BigDecimal("1234.50"), "sender", "recipient",
+            "EE01", "EE02", "00:11:22:33:44:55",
+            LocalDateTime.of(2025, 3, 1, 12, 0, 5, 123_000_000), LocalDateTime.of(2025, 3, 1, 12, 0, 15));
+        Transaction sparse = new Transaction("tx-2", null, null, "recipient", null, null, null, null, null);
+
+        assertThat(roundTrip(transaction, TrafficCodec::writeTransaction,
+            TrafficCodec::readTransaction)).usingRecursiveComparison().isEqualTo(transaction);
+        assertThat(roundTrip(sparse, TrafficCodec::writeTransaction,
+            TrafficCodec::readTransaction)).usingRecursiveComparison().isEqualTo(sparse);
+    }
+
+    @Test
+    void roundTripsEntities() throws IOException {
+        Person person = new Person("Mari", "Maasikas", "49001010000", false, true, null);
+        Account account = new Account("EE01", "49001010000", null, new BigDecimal("-0.01"));
+        Device device = new Device();
+        device.setMac("00:11:22:33:44:55");
+        device.setIsBlacklisted(true);
+
+        assertThat(roundTrip(person, EntityKind.PERSON.writer, EntityKind.PERSON.reader))
+            .usingRecursiveComparison().isEqualTo(person);
+        assertThat(roundTrip(account, EntityKind.ACCOUNT.writer, EntityKind.ACCOUNT.reader))
+            .usingRecursiveComparison().isEqualTo(account);
+        assertThat(roundTrip(device, EntityKind.DEVICE.writer, EntityKind.DEVICE.reader))
+            .usingRecursiveComparison().isEqualTo(device);
+    }
+
+    @Test
+    void writesVerdictPostsWithTheirTransactionIds(@TempDir Path directory) throws IOException {
+        CaptureProperties properties = new CaptureProperties();
+        properties.setMode(CaptureProperties.Mode.RECORD);
+        properties.setFile(directory.resolve("session.capture.gz"));
+        TrafficCapture capture = new TrafficCapture(properties);
+        Transaction first = new Transaction("tx-1", null, null, null, null, null, null, null, null);
+        Transaction second = new Transaction("tx-2", null, null, null, null, null, null, null, null);
+        capture.recordVerdict(List.of(first, second), 1_500_000);
+        capture.close();
+
+        try (DataInputStream in = new DataInputStream(new GZIPInputStream(Files.newInputStream(properties.getFile())))) {
+            assertThat(in.readInt()).isEqualTo(TrafficCodec.MAGIC);
+            assertThat(in.readInt()).isEqualTo(TrafficCodec.VERSION);
+            in.readLong();
+            assertThat(in.readByte()).isEqualTo(TrafficCodec.VERDICT);
+            in.readLong();
+            assertThat(in.readLong()).isEqualTo(1_500_000);
+            assertThat(in.readInt()).isEqualTo(2);
+            assertThat(TrafficCodec.readString(in)).isEqualTo("tx-1");
+            assertThat(TrafficCodec.readString(in)).isEqualTo("tx-2");
+            assertThat(in.read()).isEqualTo(-1);
+        }
+    }
+
+    @Test
+    void copiesEntities() {
+        Person person = new Person("Mari", "Maasikas", "49001010000", false, true, false);
+
+        Person copy = EntityKind.PERSON.copy.apply(person);
+
+        assertThat(copy).isNotSameAs(person).usingRecursiveComparison().isEqualTo(person);
+    }
+
+    private static <T> T roundTrip(T value, EntityKind.Writer<T> writer, EntityKind.Reader<T> reader)
+        throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            writer.write(out, value);
+        }
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+        T read = reader.read(in);
+        assertThat(in.available()).isZero();
+        return read;
+    }
+}
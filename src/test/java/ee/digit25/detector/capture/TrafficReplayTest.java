@@ -0,0 +1,165 @@
+package ee.digit25.detector.capture;
+
+import ee.digit25.detector.domain.person.external.api.Person;
+import ee.digit25.detector.domain.transaction.external.api.Transaction;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TrafficReplayTest {
+
+    private static final String SENDER = "49001010000";
+
+    @TempDir
+    Path directory;
+
+    private Path file;
+
+    @BeforeEach
+    void record() {
+        file = directory.resolve("session.capture.gz");
+        CaptureProperties properties = new CaptureProperties();
+        properties.setMode(CaptureProperties.Mode.RECORD);
+        properties.setFile(file);
+
+        // The sender is clean while the first batch is processed and blacklisted by the second
+        TrafficCapture capture = new TrafficCapture(properties);
+        capture.recordTransactions(List.of(transaction("tx-1")), TimeUnit.MILLISECONDS.toNanos(5));
+        capture.recordEntity(EntityKind.PERSON, SENDER, person(false), 0);
+        capture.recordTransactions(List.of(transaction("tx-2")), TimeUnit.MILLISECONDS.toNanos(5));
+        capture.recordEntity(EntityKind.PERSON, SENDER, person(true), TimeUnit.MILLISECONDS.toNanos(40));
+        capture.recordVerdict(List.of(transaction("tx-1")), TimeUnit.MILLISECONDS.toNanos(30));
+        capture.close();
+    }
+
+    @Test
+    void tiesLookupsToBatchOfUndecidedTransaction() {
+        TrafficReplay replay = replay(0);
+
+        List<Transaction> first = replay.nextTransactions(10);
+        replay.onAdmitted(first);
+        List<Transaction> second = replay.nextTransactions(10);
+        replay.onAdmitted(second);
+
+        // The second batch is out, but the first one's transaction still waits for its verdict
+        assertThat(blacklisted(replay)).isFalse();
+
+        replay.onDecided(first);
+        assertThat(blacklisted(replay)).isTrue();
+
+        replay.onDecided(second);
+        assertThat(blacklisted(replay)).isTrue();
+    }
+
+    @Test
+    void seesSameEntityStateHoweverBatchesAreReleased() {
+        assertThat(lookupsWhileDeciding(replay(0))).containsExactly(false, true, true);
+        // Releases both batches in one poll
+        assertThat(lookupsWhileDeciding(replay(1e12))).containsExactly(false, true, true);
+    }
+
+    @Test
+    void fallsBackToFirstVersionForKeysOfNoAdmittedTransaction() {
+        TrafficReplay replay = replay(0);
+
+        assertThat(blacklisted(replay)).isFalse();
+        assertThat(replay.entity(EntityKind.PERSON, "unknown")).isNull();
+    }
+
+    @Test
+    void answersAfterRecordedLatency() {
+        TrafficReplay replay = replay(0);
+        List<Transaction> transactions = replay.nextTransactions(10);
+        replay.onAdmitted(transactions);
+        replay.onDecided(transactions);
+        transactions = replay.nextTransactions(10);
+        replay.onAdmitted(transactions);
+        replay.onDecided(transactions);
+
+        long start = System.nanoTime();
+        Person person = replay.entity(EntityKind.PERSON, SENDER);
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        assertThat(person.getBlacklisted()).isTrue();
+        assertThat(elapsedMillis).isGreaterThanOrEqualTo(40);
+    }
+
+    @Test
+    void postsVerdictsAfterRecordedLatency() {
+        TrafficReplay replay = replay(0);
+        List<Transaction> first = replay.nextTransactions(10);
+        List<Transaction> second = replay.nextTransactions(10);
+
+        // The second transaction's post was not recorded, it takes the mean of the recorded ones
+        assertThat(millisToPost(replay, first)).isGreaterThanOrEqualTo(30);
+        assertThat(millisToPost(replay, second)).isGreaterThanOrEqualTo(30);
+    }
+
+    @Test
+    void stopsHoldingLookupsBackForAbandonedTransactions() {
+        TrafficReplay replay = replay(0);
+        List<Transaction> first = replay.nextTransactions(10);
+        replay.onAdmitted(first);
+        List<Transaction> second = replay.nextTransactions(10);
+        replay.onAdmitted(second);
+
+        replay.onAbandoned(first);
+
+        assertThat(blacklisted(replay)).isTrue();
+    }
+
+    private static long millisToPost(TrafficReplay replay, List<Transaction> transactions) {
+        long start = System.nanoTime();
+        replay.postVerdict(transactions);
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    }
+
+    /**
+     * Fetches until both batches are out, looking the sender up after each step of admitting and deciding.
+     */
+    private static List<Boolean> lookupsWhileDeciding(TrafficReplay replay) {
+        List<Transaction> fetched = new ArrayList<>();
+        List<Boolean> seen = new ArrayList<>();
+        while (fetched.size() < 2) {
+            List<Transaction> transactions = replay.nextTransactions(10);
+            replay.onAdmitted(transactions);
+            fetched.addAll(transactions);
+        }
+        seen.add(blacklisted(replay));
+
+        replay.onDecided(fetched.subList(0, 1));
+        seen.add(blacklisted(replay));
+        replay.onDecided(fetched.subList(1, 2));
+        seen.add(blacklisted(replay));
+        return seen;
+    }
+
+    private static boolean blacklisted(TrafficReplay replay) {
+        return replay.entity(EntityKind.PERSON, SENDER).getBlacklisted();
+    }
+
+    private TrafficReplay replay(double speed) {
+        CaptureProperties properties = new CaptureProperties();
+        properties.setMode(CaptureProperties.Mode.REPLAY);
+        properties.setFile(file);
+        properties.setSpeed(speed);
+        return new TrafficReplay(properties);
+    }
+
+    private static Transaction transaction(String id) {
+        return new Transaction(id, new BigDecimal("10.00"), SENDER, "49002020000", "EE01", "EE02",
+            "00:11:22:33:44:55", null, null);
+    }
+
+    private static Person person(boolean blacklisted) {
+        return new Person("Mari", "Maasikas", SENDER, false, true, blacklisted);
+    }
+}
@@ -0,0 +1,50 @@
+package ee.digit25.detector.common;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class DecayingAverageSketchTest {
+
+    @Test
+    void averagesValuesPerKey() {
+        DecayingAverageSketch sketch = new DecayingAverageSketch(1024, 1000);
+
+        sketch.add("sender-1", 100);
+        sketch.add("sender-1", 200);
+        sketch.add("sender-1", 600);
+        sketch.add("sender-2", 50);
+
+        assertThat(sketch.average("sender-1")).isEqualTo(300.0);
+        assertThat(sketch.average("sender-2")).isEqualTo(50.0);
+        assertThat(sketch.average("unknown")).isNaN();
+    }
+
+    @Test
+    void keepsAveragesWhenDecaying() {
+        DecayingAverageSketch sketch = new DecayingAverageSketch(1024, 1000);
+        sketch.add("sender-1", 100);
+        sketch.add("sender-1", 100);
+        sketch.add("sender-1", 400);
+
+        // Count 3 halves to 1, the sum is scaled along instead of halved on its own
+        sketch.decay();
+
+        assertThat(sketch.average("sender-1")).isCloseTo(200.0, within(0.5));
+    }
+
+    @Test
+    void forgetsKeysAfterEnoughDecays() {
+        DecayingAverageSketch sketch = new DecayingAverageSketch(1024, 2);
+
+        sketch.add("sender-1", 100);
+        sketch.add("sender-2", 100);
+        assertThat(sketch.average("sender-1")).isNaN();
+
+        sketch.add("sender-2", 100);
+        sketch.add("sender-2", 100);
+
+        assertThat(sketch.average("sender-2")).isEqualTo(100.0);
+    }
+}
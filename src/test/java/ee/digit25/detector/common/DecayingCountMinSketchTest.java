@@ -0,0 +1,35 @@
+package ee.digit25.detector.common;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class DecayingCountMinSketchTest {
+
+    @Test
+    void countsAdditionsPerKey() {
+        DecayingCountMinSketch sketch = new DecayingCountMinSketch(1024, 1000);
+
+        sketch.add("sender-1", 3);
+        sketch.increment("sender-1");
+        sketch.increment("sender-2");
+
+        assertThat(sketch.estimate("sender-1")).isEqualTo(4);
+        assertThat(sketch.estimate("sender-2")).isEqualTo(1);
+        assertThat(sketch.estimate("unknown")).isZero();
+    }
+
+    @Test
+    void halvesCountersEveryDecayPeriod() {
+        DecayingCountMinSketch sketch = new DecayingCountMinSketch(1024, 4);
+
+        sketch.add("sender-1", 40);
+        sketch.add("sender-1", 40);
+        sketch.add("sender-1", 40);
+        assertThat(sketch.estimate("sender-1")).isEqualTo(120);
+
+        sketch.add("sender-1", 40);
+
+        assertThat(sketch.estimate("sender-1")).isEqualTo(80);
+    }
+}
@@ -0,0 +1,170 @@
+package ee.digit25.detector.common;
+
+import ee.digit25.detector.config.CacheProperties;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class EntityCacheTest {
+
+    private static final long START = 1_000_000;
+    private static final long REFRESH_AT = START + 80_000;
+    private static final long EXPIRES_AT = START + 100_000;
+    private static final long GRACE_ENDS_AT = EXPIRES_AT + 60_000;
+
+    private final AtomicLong now = new AtomicLong(START);
+    private final AtomicInteger version = new AtomicInteger();
+    private final List<String> loads = new ArrayList<>();
+    private final List<List<String>> bulkLoads = new ArrayList<>();
+    private final List<String> refreshed = new ArrayList<>();
+    private final BackgroundLookups backgroundLookups = mock(BackgroundLookups.class);
+    private final CacheProperties properties = new CacheProperties();
+
+    private EntityCache<String> cache;
+
+    @BeforeEach
+    void setUp() {
+        properties.setTtl(Duration.ofSeconds(100));
+        properties.setJitter(0);
+        properties.setRefreshAhead(0.8);
+        properties.setStaleGrace(Duration.ofSeconds(60));
+
+        // Background work runs on the calling thread, so every refresh has happened when the read returns
+        when(backgroundLookups.execute(any())).thenAnswer(invocation -> {
+            invocation.<Runnable>getArgument(0).run();
+            return true;
+        });
+        when(backgroundLookups.runWithSparePermit(any())).thenAnswer(invocation -> {
+            invocation.<Runnable>getArgument(0).run();
+            return true;
+        });
+
+        cache = new EntityCache<>("item",
+            key -> {
+                loads.add(key);
+                return key + "@" + version.incrementAndGet();
+            },
+            keys -> {
+                bulkLoads.add(List.copyOf(keys));
+                return keys.stream().map(key -> key + "@" + version.incrementAndGet()).toList();
+            },
+            value -> value.substring(0, value.indexOf('@')),
+            properties, backgroundLookups, now::get);
+        cache.addRefreshListener(refreshed::add);
+    }
+
+    @Test
+    void answersFreshReadsFromTheCache() {
+        assertThat(cache.get("a", false)).isEqualTo("a@1");
+
+        now.set(REFRESH_AT - 1);
+
+        assertThat(cache.get("a", false)).isEqualTo("a@1");
+        assertThat(cache.isFresh("a")).isTrue();
+        assertThat(loads).containsExactly("a");
+        assertThat(bulkLoads).isEmpty();
+    }
+
+    @Test
+    void reloadsInTheBackgroundOnceRefreshAtIsReached() {
+        cache.get("a", false);
+
+        now.set(REFRESH_AT);
+
+        assertThat(cache.get("a", false)).isEqualTo("a@1");
+        assertThat(bulkLoads).containsExactly(List.of("a"));
+        assertThat(cache.get("a", false)).isEqualTo("a@2");
+        assertThat(loads).containsExactly("a");
+    }
+
+    @Test
+    void touchSchedulesTheSameRefreshAsARead() {
+        cache.get("a", false);
+
+        now.set(REFRESH_AT);
+
+        assertThat(cache.touch("a")).isTrue();
+        assertThat(bulkLoads).containsExactly(List.of("a"));
+    }
+
+    @Test
+    void servesStaleValuesWithinTheGraceWhileReloading() {
+        cache.get("a", true);
+
+        now.set(GRACE_ENDS_AT - 1);
+
+        assertThat(cache.isFresh("a")).isFalse();
+        assertThat(cache.get("a", true)).isEqualTo("a@1");
+        assertThat(bulkLoads).containsExactly(List.of("a"));
+        assertThat(loads).containsExactly("a");
+    }
+
+    @Test
+    void loadsSynchronouslyWhenStaleValuesAreNotAccepted() {
+        cache.get("a", false);
+
+        now.set(EXPIRES_AT);
+
+        assertThat(cache.get("a", false)).isEqualTo("a@2");
+        assertThat(cache.touch("a")).isTrue();
+        assertThat(loads).containsExactly("a", "a");
+        assertThat(bulkLoads).isEmpty();
+    }
+
+    @Test
+    void loadsSynchronouslyOnceTheGraceHasPassed() {
+        cache.get("a", true);
+
+        now.set(GRACE_ENDS_AT);
+
+        assertThat(cache.get("a", true)).isEqualTo("a@2");
+        assertThat(loads).containsExactly("a", "a");
+        assertThat(bulkLoads).isEmpty();
+    }
+
+    @Test
+    void keepsKeysQueuedWhenThereIsNoSparePermit() {
+        when(backgroundLookups.runWithSparePermit(any())).thenReturn(false);
+        cache.get("a", false);
+
+        now.set(REFRESH_AT);
+        cache.get("a", false);
+
+        assertThat(bulkLoads).isEmpty();
+        assertThat(cache.stats()).endsWith("1 queued");
+    }
+
+    @Test
+    void notifiesListenersOfEveryLoad() {
+        cache.get("a", false);
+        cache.loadMissing(List.of("a", "b", "c", "b"));
+
+        now.set(REFRESH_AT);
+        cache.get("b", false);
+
+        assertThat(bulkLoads).containsExactly(List.of("b", "c"), List.of("b"));
+        assertThat(refreshed).containsExactly("a", "b", "c", "b");
+    }
+
+    @Test
+    void answersNullWhenTheLoadFails() {
+        EntityCache<String> failing = new EntityCache<>("item",
+            key -> {
+                throw new IllegalStateException("unavailable");
+            },
+            keys -> List.of(), value -> value, properties, backgroundLookups, now::get);
+
+        assertThat(failing.get("a", true)).isNull();
+        assertThat(failing.isFresh("a")).isFalse();
+    }
+}
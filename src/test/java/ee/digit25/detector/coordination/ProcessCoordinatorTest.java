@@ -0,0 +1,233 @@
+package ee.digit25.detector.coordination;
+
+import ee.digit25.detector.common.IdHash;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ProcessCoordinatorTest {
+
+    @TempDir
+    Path directory;
+
+    private final Set<Long> alive = ConcurrentHashMap.newKeySet();
+    private final List<ProcessCoordinator> coordinators = new ArrayList<>();
+
+    @AfterEach
+    void shutdown() throws IOException {
+        for (ProcessCoordinator coordinator : coordinators) {
+            coordinator.shutdown();
+        }
+    }
+
+    @Test
+    void concurrentClaimsOfTheSameIdHaveExactlyOneWinner() throws Exception {
+        CoordinationProperties properties = properties("same-ids");
+        properties.setRegistryPartitionCapacity(8192);
+        ProcessCoordinator first = coordinator(properties, 101);
+        ProcessCoordinator second = coordinator(properties, 102);
+
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            ids.add("tx-" + i);
+        }
+
+        assertSingleWinners(ids, first, second);
+    }
+
+    @Test
+    void concurrentClaimsOfCollidingIdsHaveExactlyOneWinner() throws Exception {
+        List<String> colliding = collidingIds(12);
+
+        for (int round = 0; round < 50; round++) {
+            CoordinationProperties properties = properties("colliding-" + round);
+            ProcessCoordinator first = coordinator(properties, 201);
+            ProcessCoordinator second = coordinator(properties, 202);
+
+            assertSingleWinners(colliding, first, second);
+        }
+    }
+
+    @Test
+    void claimOfADeadProcessCanBeTakenOver() throws IOException {
+        CoordinationProperties properties = properties("takeover");
+        ProcessCoordinator first = coordinator(properties, 301);
+        ProcessCoordinator second = coordinator(properties, 302);
+
+        assertThat(first.claim("tx-1")).isTrue();
+        assertThat(second.claim("tx-1")).isFalse();
+
+        alive.remove(301L);
+        second.renewLease();
+
+        assertThat(second.claim("tx-1")).isTrue();
+        assertThat(second.claim("tx-1")).isTrue();
+    }
+
+    @Test
+    void releasedClaimCanBeTakenByAnotherProcess() throws IOException {
+        CoordinationProperties properties = properties("release");
+        ProcessCoordinator first = coordinator(properties, 351);
+        ProcessCoordinator second = coordinator(properties, 352);
+
+        assertThat(first.claim("tx-1")).isTrue();
+        second.release("tx-1");
+        assertThat(second.claim("tx-1")).isFalse();
+
+        first.release("tx-1");
+
+        assertThat(second.claim("tx-1")).isTrue();
+        assertThat(first.claim("tx-1")).isFalse();
+    }
+
+    @Test
+    void claimOfADeadProcessStaysExpiredAfterItsSlotWasRegisteredAgain256Times() throws IOException {
+        CoordinationProperties properties = properties("generation-wrap");
+        ProcessCoordinator first = coordinator(properties, 401);
+        assertThat(first.claim("tx-1")).isTrue();
+
+        alive.remove(401L);
+        alive.add(499L);
+        try (SharedCoordinationFile file = new SharedCoordinationFile(properties)) {
+            int slot = 0;
+            while (file.pid(slot) != 401) {
+                slot++;
+            }
+            for (int registration = 0; registration < 256; registration++) {
+                file.reclaim(slot, file.pid(slot));
+                assertThat(file.register(slot, 499, System.currentTimeMillis(), 0)).isPositive();
+            }
+        }
+
+        ProcessCoordinator second = coordinator(properties, 402);
+        assertThat(second.claim("tx-1")).isTrue();
+    }
+
+    @Test
+    void permitsAreSharedBetweenProcesses() throws IOException {
+        CoordinationProperties properties = properties("permits");
+        properties.setPermits(2);
+        ProcessCoordinator first = coordinator(properties, 401);
+        ProcessCoordinator second = coordinator(properties, 402);
+
+        assertThat(first.permits().tryAcquire()).isTrue();
+        assertThat(first.permits().tryAcquire()).isTrue();
+        assertThat(second.permits().tryAcquire()).isFalse();
+
+        first.permits().release();
+
+        assertThat(second.permits().tryAcquire()).isTrue();
+        assertThat(second.sharedPermitsInUse()).isEqualTo(2);
+    }
+
+    @Test
+    void permitsAreCountedOnceAcrossALostLease() throws Exception {
+        CoordinationProperties properties = properties("lease-loss");
+        properties.setLeaseTimeout(Duration.ofMillis(50));
+        ProcessCoordinator first = coordinator(properties, 501);
+        ProcessCoordinator second = coordinator(properties, 502);
+
+        first.permits().tryAcquire();
+        first.permits().tryAcquire();
+        assertThat(second.sharedPermitsInUse()).isEqualTo(2);
+
+        // The first process misses its heartbeats and the second one reclaims its slot and permits
+        Thread.sleep(100);
+        second.renewLease();
+        assertThat(second.sharedPermitsInUse()).isZero();
+
+        // Released under the lost lease: must not go below zero or touch another slot
+        first.permits().release();
+        assertThat(second.sharedPermitsInUse()).isZero();
+        assertThat(first.permits().tryAcquire()).isFalse();
+
+        // Registering again carries the permit that is still in use
+        first.renewLease();
+        assertThat(second.sharedPermitsInUse()).isEqualTo(1);
+
+        first.permits().release();
+        assertThat(second.sharedPermitsInUse()).isZero();
+        assertThat(first.permits().tryAcquire()).isTrue();
+        assertThat(second.sharedPermitsInUse()).isEqualTo(1);
+    }
+
+    private void assertSingleWinners(List<String> ids, ProcessCoordinator first, ProcessCoordinator second)
+        throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            Future<boolean[]> firstClaims = executor.submit(() -> claimAll(first, ids, start));
+            Future<boolean[]> secondClaims = executor.submit(() -> claimAll(second, ids, start));
+            start.countDown();
+
+            boolean[] firstWon = firstClaims.get();
+            boolean[] secondWon = secondClaims.get();
+            for (int i = 0; i < ids.size(); i++) {
+                assertThat(firstWon[i] ^ secondWon[i]).as("exactly one claim of %s", ids.get(i)).isTrue();
+
+                // The winner keeps its claim, the loser keeps being refused
+                ProcessCoordinator winner = firstWon[i] ? first : second;
+                ProcessCoordinator loser = firstWon[i] ? second : first;
+                assertThat(winner.claim(ids.get(i))).isTrue();
+                assertThat(loser.claim(ids.get(i))).isFalse();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static boolean[] claimAll(ProcessCoordinator coordinator, List<String> ids, CountDownLatch start)
+        throws InterruptedException {
+        start.await();
+        boolean[] won = new boolean[ids.size()];
+        for (int i = 0; i < ids.size(); i++) {
+            won[i] = coordinator.claim(ids.get(i));
+        }
+        return won;
+    }
+
+    /**
+     * @return ids whose probe chains start at the same entry of a 64-entry partition
+     */
+    private static List<String> collidingIds(int count) {
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; ids.size() < count; i++) {
+            String id = "collision-" + i;
+            if ((IdHash.of(id) & 63) == 7) {
+                ids.add(id);
+            }
+        }
+        return ids;
+    }
+
+    private CoordinationProperties properties(String name) {
+        CoordinationProperties properties = new CoordinationProperties();
+        properties.setEnabled(true);
+        properties.setFile(directory.resolve(name + ".mmap"));
+        properties.setMaxProcesses(4);
+        properties.setRegistryPartitions(1);
+        properties.setRegistryPartitionCapacity(64);
+        return properties;
+    }
+
+    private ProcessCoordinator coordinator(CoordinationProperties properties, long pid) {
+        alive.add(pid);
+        ProcessCoordinator coordinator = new ProcessCoordinator(properties, pid, alive::contains, false);
+        coordinators.add(coordinator);
+        return coordinator;
+    }
+}
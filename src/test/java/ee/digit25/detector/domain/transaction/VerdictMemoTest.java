@@ -0,0 +1,159 @@
+package ee.digit25.detector.domain.transaction;
+
+import ee.digit25.detector.common.EntityCache;
+import ee.digit25.detector.domain.account.AccountValidator;
+import ee.digit25.detector.domain.device.DeviceValidator;
+import ee.digit25.detector.domain.person.PersonValidator;
+import ee.digit25.detector.domain.transaction.external.api.Transaction;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class VerdictMemoTest {
+
+    private final PersonValidator personValidator = mock(PersonValidator.class);
+    private final AccountValidator accountValidator = mock(AccountValidator.class);
+    private final DeviceValidator deviceValidator = mock(DeviceValidator.class);
+    private final VerdictMemoProperties properties = new VerdictMemoProperties();
+    private final AtomicInteger validations = new AtomicInteger();
+
+    @BeforeEach
+    void freshEntities() {
+        when(personValidator.touch(anyString())).thenReturn(true);
+        when(accountValidator.touch(anyString())).thenReturn(true);
+        when(deviceValidator.touch(anyString())).thenReturn(true);
+    }
+
+    @Test
+    void answersMemoisedChecksWithoutValidating() {
+        VerdictMemo memo = memo();
+        runChecks(memo, transaction("a"));
+        assertThat(validations.get()).isEqualTo(5);
+
+        runChecks(memo, transaction("a"));
+
+        assertThat(validations.get()).isEqualTo(5);
+        verify(deviceValidator).touch("mac-a");
+        verify(personValidator).touch("sender-a");
+        verify(accountValidator).touch("recipient-account-a");
+    }
+
+    @Test
+    void validatesAgainAfterAnEntityReload() {
+        ArgumentCaptor<EntityCache.RefreshListener> listener = ArgumentCaptor.forClass(EntityCache.RefreshListener.class);
+        VerdictMemo memo = memo();
+        verify(personValidator).addRefreshListener(listener.capture());
+        runChecks(memo, transaction("a"));
+
+        listener.getValue().onRefresh("recipient-a");
+        runChecks(memo, transaction("a"));
+
+        assertThat(validations.get()).isEqualTo(10);
+    }
+
+    @Test
+    void validatesAgainWhenTheEntityIsNoLongerFreshInItsCache() {
+        VerdictMemo memo = memo();
+        runChecks(memo, transaction("a"));
+
+        when(deviceValidator.touch("mac-a")).thenReturn(false);
+        runChecks(memo, transaction("a"));
+
+        // Only the device check is run again, the other results are still backed by fresh entities
+        assertThat(validations.get()).isEqualTo(6);
+    }
+
+    @Test
+    void answersWithoutTouchingUntilAnEntityIsDueForRefresh() {
+        long later = System.currentTimeMillis() + 60_000;
+        when(personValidator.refreshAt(anyString())).thenReturn(later);
+        when(accountValidator.refreshAt(anyString())).thenReturn(later);
+        when(deviceValidator.refreshAt(anyString())).thenReturn(later);
+        VerdictMemo memo = memo();
+        runChecks(memo, transaction("a"));
+
+        runChecks(memo, transaction("a"));
+
+        assertThat(validations.get()).isEqualTo(5);
+        verify(deviceValidator, never()).touch(anyString());
+        verify(personValidator, never()).touch(anyString());
+        verify(accountValidator, never()).touch(anyString());
+    }
+
+    @Test
+    void touchesEveryEntityOnceOneIsDueForRefresh() {
+        long later = System.currentTimeMillis() + 60_000;
+        when(personValidator.refreshAt(anyString())).thenReturn(later);
+        when(accountValidator.refreshAt(anyString())).thenReturn(later);
+        when(deviceValidator.refreshAt("mac-a")).thenReturn(System.currentTimeMillis() - 1);
+        VerdictMemo memo = memo();
+        runChecks(memo, transaction("a"));
+
+        runChecks(memo, transaction("a"));
+
+        assertThat(validations.get()).isEqualTo(5);
+        verify(deviceValidator).touch("mac-a");
+        verify(personValidator).touch("sender-a");
+        verify(accountValidator).touch("sender-account-a");
+    }
+
+    @Test
+    void doesNotAnswerExpiredTuplesAndPurgesThem() {
+        properties.setTtl(Duration.ZERO);
+        VerdictMemo memo = memo();
+        runChecks(memo, transaction("a"));
+        runChecks(memo, transaction("a"));
+
+        assertThat(validations.get()).isEqualTo(10);
+
+        memo.purgeExpired();
+        assertThat(memo.size()).isZero();
+    }
+
+    @Test
+    void evictsASmallBatchInsteadOfClearingAtTheBound() {
+        properties.setMaxEntries(1000);
+        VerdictMemo memo = memo();
+        for (int i = 0; i < 1000; i++) {
+            runChecks(memo, transaction("t" + i));
+        }
+        assertThat(memo.size()).isEqualTo(1000);
+
+        runChecks(memo, transaction("overflow"));
+
+        assertThat(memo.size()).isBetween(950, 1000);
+    }
+
+    private VerdictMemo memo() {
+        return new VerdictMemo(properties, personValidator, accountValidator, deviceValidator);
+    }
+
+    private void runChecks(VerdictMemo memo, Transaction transaction) {
+        VerdictMemo.Checks checks = memo.begin(transaction);
+        for (int check = VerdictMemo.DEVICE; check <= VerdictMemo.RECIPIENT_ACCOUNT; check++) {
+            checks.check(check, () -> {
+                validations.incrementAndGet();
+                return true;
+            }, () -> true);
+        }
+        checks.save();
+    }
+
+    private static Transaction transaction(String tuple) {
+        LocalDateTime now = LocalDateTime.now();
+        return new Transaction("tx-" + tuple, BigDecimal.ONE, "sender-" + tuple, "recipient-" + tuple,
+            "sender-account-" + tuple, "recipient-account-" + tuple, "mac-" + tuple, now, now.plusMinutes(1));
+    }
+}
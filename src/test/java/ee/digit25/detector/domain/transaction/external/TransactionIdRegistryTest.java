@@ -0,0 +1,118 @@
+package ee.digit25.detector.domain.transaction.external;
+
+import ee.digit25.detector.common.IdHash;
+import ee.digit25.detector.domain.transaction.external.api.Transaction;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TransactionIdRegistryTest {
+
+    private final DeduplicationProperties properties = new DeduplicationProperties();
+
+    @Test
+    void dropsRedeliveryWhileInFlight() {
+        TransactionIdRegistry registry = new TransactionIdRegistry(properties);
+
+        assertThat(retainNew(registry, "tx-1", "tx-2")).containsExactly("tx-1", "tx-2");
+        assertThat(retainNew(registry, "tx-2", "tx-3")).containsExactly("tx-3");
+    }
+
+    @Test
+    void acceptsRedeliveryOnceInFlightTtlExpired() {
+        properties.setInFlightTtl(Duration.ZERO);
+        TransactionIdRegistry registry = new TransactionIdRegistry(properties);
+
+        retainNew(registry, "tx-1");
+
+        assertThat(retainNew(registry, "tx-1")).containsExactly("tx-1");
+    }
+
+    @Test
+    void dropsRedeliveryWithinDecidedTtl() {
+        // In flight expires at once, so only the decided stamp can block the redelivery
+        properties.setInFlightTtl(Duration.ZERO);
+        TransactionIdRegistry registry = new TransactionIdRegistry(properties);
+
+        retainNew(registry, "tx-1", "tx-2");
+        registry.markDecided(transactions("tx-1"));
+
+        assertThat(retainNew(registry, "tx-1", "tx-2")).containsExactly("tx-2");
+    }
+
+    @Test
+    void acceptsRedeliveryOnceDecidedTtlExpired() {
+        properties.setDecidedTtl(Duration.ZERO);
+        TransactionIdRegistry registry = new TransactionIdRegistry(properties);
+
+        retainNew(registry, "tx-1");
+        registry.markDecided(transactions("tx-1"));
+
+        assertThat(retainNew(registry, "tx-1")).containsExactly("tx-1");
+    }
+
+    @Test
+    void releaseMakesIdFetchableAgain() {
+        TransactionIdRegistry registry = new TransactionIdRegistry(properties);
+
+        retainNew(registry, "tx-1", "tx-2");
+        registry.release(transactions("tx-1"));
+
+        assertThat(retainNew(registry, "tx-1", "tx-2")).containsExactly("tx-1");
+    }
+
+    @Test
+    void reusesExpiredSlotInMiddleOfProbeChain() {
+        properties.setCapacity(1024);
+        TransactionIdRegistry registry = new TransactionIdRegistry(properties);
+        String[] ids = collidingIds(4, 1023);
+        String first = ids[0], middle = ids[1], last = ids[2], reusing = ids[3];
+
+        retainNew(registry, first, middle, last);
+        registry.release(transactions(middle));
+
+        // Takes the released slot between first and last, which must stay reachable behind it
+        assertThat(retainNew(registry, reusing)).containsExactly(reusing);
+        assertThat(retainNew(registry, first, last, reusing)).isEmpty();
+
+        // The released id lost its slot, so it is registered anew
+        assertThat(retainNew(registry, middle)).containsExactly(middle);
+        assertThat(retainNew(registry, middle)).isEmpty();
+    }
+
+    private static List<String> retainNew(TransactionIdRegistry registry, String... ids) {
+        List<Transaction> transactions = transactions(ids);
+        registry.retainNew(transactions);
+        return transactions.stream().map(Transaction::getId).toList();
+    }
+
+    private static List<Transaction> transactions(String... ids) {
+        List<Transaction> transactions = new ArrayList<>();
+        for (String id : ids) {
+            Transaction transaction = new Transaction();
+            transaction.setId(id);
+            transactions.add(transaction);
+        }
+        return transactions;
+    }
+
+    /**
+     * @return ids whose hashes share the same home slot, so they form one probe chain
+     */
+    private static String[] collidingIds(int count, int mask) {
+        String[] ids = new String[count];
+        int found = 0;
+        int home = (int) IdHash.of("tx-0") & mask;
+        for (int i = 0; found < count; i++) {
+            String id = "tx-" + i;
+            if (((int) IdHash.of(id) & mask) == home) {
+                ids[found++] = id;
+            }
+        }
+        return ids;
+    }
+}
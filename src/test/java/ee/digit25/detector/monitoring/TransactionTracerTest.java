@@ -0,0 +1,92 @@
+package ee.digit25.detector.monitoring;
+
+import ee.digit25.detector.domain.transaction.external.api.Transaction;
+import ee.digit25.detector.monitoring.TransactionTracer.Stage;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TransactionTracerTest {
+
+    @Test
+    void recordsOnlyTheStagesThatWereMarked() throws InterruptedException {
+        TransactionTracer tracer = tracer(1024);
+        Transaction transaction = transaction("tx-1");
+
+        tracer.begin(List.of(transaction));
+        Thread.sleep(5);
+        tracer.mark(transaction, Stage.DEVICE_CHECKED);
+        tracer.mark(List.of(transaction), Stage.VERDICT_ENQUEUED);
+        tracer.complete(List.of(transaction));
+
+        assertThat(tracer.stageLatency(Stage.DEVICE_CHECKED).getCount()).isEqualTo(1);
+        assertThat(tracer.stageLatency(Stage.DEVICE_CHECKED).percentile(0.5)).isGreaterThanOrEqualTo(4_000);
+        assertThat(tracer.stageLatency(Stage.SENDER_CHECKED).getCount()).isZero();
+        assertThat(tracer.stageLatency(Stage.VERDICT_ENQUEUED).getCount()).isEqualTo(1);
+        assertThat(tracer.stageLatency(Stage.VERDICT_ACKNOWLEDGED).getCount()).isEqualTo(1);
+        assertThat(tracer.endToEnd().getCount()).isEqualTo(1);
+        assertThat(tracer.endToEnd().percentile(0.5)).isGreaterThanOrEqualTo(4_000);
+    }
+
+    @Test
+    void reusedSlotDoesNotInheritMarksOfThePreviousOwner() {
+        // Two slots, so the second pair of transactions has to reuse the slots of the first
+        TransactionTracer tracer = tracer(1);
+        List<Transaction> first = List.of(transaction("a"), transaction("b"));
+        tracer.begin(first);
+        tracer.mark(first, Stage.DEVICE_CHECKED);
+        tracer.mark(first, Stage.SENDER_CHECKED);
+        tracer.complete(first);
+
+        List<Transaction> second = List.of(transaction("c"), transaction("d"));
+        tracer.begin(second);
+        tracer.complete(second);
+
+        assertThat(tracer.untraced()).isZero();
+        assertThat(tracer.endToEnd().getCount()).isEqualTo(4);
+        assertThat(tracer.stageLatency(Stage.DEVICE_CHECKED).getCount()).isEqualTo(2);
+        assertThat(tracer.stageLatency(Stage.SENDER_CHECKED).getCount()).isEqualTo(2);
+        assertThat(tracer.stageLatency(Stage.VERDICT_ACKNOWLEDGED).getCount()).isEqualTo(4);
+    }
+
+    @Test
+    void countsTransactionsWithoutAFreeSlotAsUntraced() {
+        TransactionTracer tracer = tracer(1);
+
+        tracer.begin(List.of(transaction("a"), transaction("b"), transaction("c")));
+
+        assertThat(tracer.untraced()).isEqualTo(1);
+    }
+
+    @Test
+    void abandonedSlotCanBeTakenAgain() {
+        TransactionTracer tracer = tracer(1);
+        List<Transaction> first = List.of(transaction("a"), transaction("b"));
+        tracer.begin(first);
+        tracer.abandon(first);
+
+        List<Transaction> second = List.of(transaction("c"), transaction("d"));
+        tracer.begin(second);
+        tracer.complete(second);
+
+        assertThat(tracer.untraced()).isZero();
+        assertThat(tracer.endToEnd().getCount()).isEqualTo(2);
+    }
+
+    private static TransactionTracer tracer(int slots) {
+        TracingProperties properties = new TracingProperties();
+        properties.setSlots(slots);
+        return new TransactionTracer(properties);
+    }
+
+    private static Transaction transaction(String id) {
+        LocalDateTime now = LocalDateTime.now(ZoneOffset.UTC);
+        return new Transaction(id, BigDecimal.TEN, "sender", "recipient", "EE01", "EE02", "mac",
+            now, now.plusMinutes(1));
+    }
+}
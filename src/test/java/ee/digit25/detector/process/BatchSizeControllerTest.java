@@ -0,0 +1,144 @@
+package ee.digit25.detector.process;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BatchSizeControllerTest {
+
+    private static final long SECOND = 1_000_000_000L;
+
+    private final BatchingProperties properties = new BatchingProperties();
+    private final long start = System.nanoTime();
+
+    @Test
+    void keepsInitialSizesWhileIdle() {
+        BatchSizeController controller = controller();
+
+        controller.adjust(start + SECOND);
+
+        assertThat(controller.fetchSize()).isEqualTo(100);
+        assertThat(controller.flushSize()).isEqualTo(500);
+    }
+
+    @Test
+    void growsAtMostByFactorOfTwoPerSecond() {
+        BatchSizeController controller = controller();
+
+        // Backlogged, 10000 transactions decided in half a second of residence: target size 10000
+        window(controller, 10_000, 10_000);
+        controller.adjust(start + SECOND);
+
+        assertThat(controller.fetchSize()).isEqualTo(200);
+    }
+
+    @Test
+    void scalesStepBoundWithMeasuredInterval() {
+        BatchSizeController controller = controller();
+        window(controller, 10_000, 10_000);
+        controller.adjust(start + SECOND);
+
+        // A quarter second window allows 2^0.25 instead of a full doubling
+        window(controller, 10_000, 10_000);
+        controller.adjust(start + SECOND + SECOND / 4);
+
+        assertThat(controller.fetchSize()).isEqualTo(238);
+    }
+
+    @Test
+    void shrinksAtMostByHalfPerSecondDownToMinimum() {
+        BatchSizeController controller = controller();
+        window(controller, 100, 1);
+
+        int[] sizes = new int[4];
+        for (int i = 0; i < sizes.length; i++) {
+            if (i > 0) controller.onFetched(100, 1);
+            controller.adjust(start + (i + 1) * SECOND);
+            sizes[i] = controller.fetchSize();
+        }
+
+        assertThat(sizes).containsExactly(50, 25, 12, 10);
+    }
+
+    @Test
+    void staysWithinMaximum() {
+        properties.setMaxFetchSize(150);
+        BatchSizeController controller = controller();
+
+        window(controller, 10_000, 10_000);
+        controller.adjust(start + SECOND);
+
+        assertThat(controller.fetchSize()).isEqualTo(150);
+    }
+
+    @Test
+    void ignoresChangesWithinHysteresis() {
+        BatchSizeController controller = controller();
+
+        // 220 per second for half a second: 110, within 15% of 100
+        window(controller, 1000, 220);
+        controller.adjust(start + SECOND);
+
+        assertThat(controller.fetchSize()).isEqualTo(100);
+    }
+
+    @Test
+    void followsChangesBeyondHysteresis() {
+        BatchSizeController controller = controller();
+
+        window(controller, 1000, 240);
+        controller.adjust(start + SECOND);
+
+        assertThat(controller.fetchSize()).isEqualTo(120);
+    }
+
+    @Test
+    void growsTowardsTheTargetLatencyInAFixedDelayLoopUnderBacklog() {
+        BatchSizeController controller = controller();
+        // Every fetch comes back full; a batch of n takes 50 ms plus 1 ms per transaction, then the loop waits
+        // 100 ms, so batches reach the 500 ms target latency at 450 transactions
+        double elapsed = 0;
+        double nextAdjustment = 1;
+        int smallest = controller.fetchSize();
+        while (elapsed < 30) {
+            int size = controller.fetchSize();
+            double residence = 0.05 + size / 1000.0;
+            controller.onFetched(size, size);
+            controller.onBatchCompleted(size, System.nanoTime() - (long) (residence * SECOND));
+            elapsed += residence + 0.1;
+
+            if (elapsed >= nextAdjustment) {
+                controller.adjust(start + (long) (elapsed * SECOND));
+                nextAdjustment += 1;
+                smallest = Math.min(smallest, controller.fetchSize());
+            }
+        }
+
+        assertThat(smallest).isEqualTo(100);
+        assertThat(controller.fetchSize()).isBetween(400, 500);
+    }
+
+    @Test
+    void holdsWhenBackloggedBatchesAlreadyTakeTheTargetLatency() {
+        BatchSizeController controller = controller();
+
+        // 100 transactions in 550 ms: 91 fit the target latency, within the hysteresis
+        controller.onFetched(100, 100);
+        controller.onBatchCompleted(100, System.nanoTime() - 550_000_000L);
+        controller.adjust(start + SECOND);
+
+        assertThat(controller.fetchSize()).isEqualTo(100);
+    }
+
+    private BatchSizeController controller() {
+        return new BatchSizeController("test", properties, start);
+    }
+
+    /**
+     * Records one fetch and a completed batch that stayed in the service for the target latency.
+     */
+    private static void window(BatchSizeController controller, int requested, int received) {
+        controller.onFetched(requested, received);
+        controller.onBatchCompleted(received, System.nanoTime() - 500_000_000L);
+    }
+}
@@ -0,0 +1,26 @@
+package ee.digit25.detector.process;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BatchSizeControllersTest {
+
+    private final BatchSizeControllers controllers = new BatchSizeControllers(new BatchingProperties());
+
+    @AfterEach
+    void shutdown() {
+        controllers.shutdown();
+    }
+
+    @Test
+    void givesEveryProcessorItsOwnController() {
+        BatchSizeController simple = controllers.forProcessor("simple");
+        BatchSizeController predictive = controllers.forProcessor("predictive");
+
+        assertThat(controllers.forProcessor("simple")).isSameAs(simple);
+        assertThat(predictive).isNotSameAs(simple);
+        assertThat(predictive.getName()).isEqualTo("predictive");
+    }
+}
@@ -0,0 +1,151 @@
+package ee.digit25.detector.process;
+
+import ee.digit25.detector.config.CacheProperties;
+import ee.digit25.detector.domain.account.AccountValidator;
+import ee.digit25.detector.domain.account.BalanceCheck;
+import ee.digit25.detector.domain.account.external.api.Account;
+import ee.digit25.detector.domain.transaction.TransactionValidator;
+import ee.digit25.detector.domain.transaction.external.TransactionRequester;
+import ee.digit25.detector.domain.transaction.external.TransactionVerifier;
+import ee.digit25.detector.domain.transaction.external.api.Transaction;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ShardedProcessorTest {
+
+    private final TransactionRequester requester = mock(TransactionRequester.class);
+    private final TransactionValidator validator = mock(TransactionValidator.class);
+    private final TransactionVerifier verifier = mock(TransactionVerifier.class);
+    private final AccountValidator accountValidator = mock(AccountValidator.class);
+    private final ProcessingProperties properties = new ProcessingProperties();
+    private final CacheProperties cacheProperties = new CacheProperties();
+    private final BatchSizeControllers batchSizeControllers = new BatchSizeControllers(new BatchingProperties());
+    private final List<Transaction> verified = new ArrayList<>();
+    private final List<Transaction> rejected = new ArrayList<>();
+
+    private ShardedProcessor processor;
+
+    @BeforeEach
+    void setUp() {
+        properties.setMode(ProcessingMode.SHARDED);
+        properties.setShards(4);
+
+        // Only the balance is left to the shard, every other check passes
+        when(validator.isLegitimate(any(Transaction.class), any(BalanceCheck.class))).thenAnswer(invocation -> {
+            Transaction transaction = invocation.getArgument(0);
+            BalanceCheck balanceCheck = invocation.getArgument(1);
+            return balanceCheck.hasSufficientBalance(transaction.getSenderAccount(), transaction.getAmount());
+        });
+        doAnswer(invocation -> verified.addAll(invocation.getArgument(0))).when(verifier).verify(anyList());
+        doAnswer(invocation -> rejected.addAll(invocation.getArgument(0))).when(verifier).reject(anyList());
+    }
+
+    @AfterEach
+    void shutdown() {
+        processor.shutdown();
+        batchSizeControllers.shutdown();
+    }
+
+    @Test
+    void rejectsTheDebitThatWouldOverdrawTheAccount() {
+        account("acc-1", 100);
+        Transaction first = transaction("t1", "acc-1", 60);
+        Transaction second = transaction("t2", "acc-1", 60);
+
+        process(first, second);
+
+        assertThat(verified).containsExactly(first);
+        assertThat(rejected).containsExactly(second);
+    }
+
+    @Test
+    void decidesDebitsOfOneAccountInFetchOrder() {
+        account("acc-1", 100);
+        account("acc-2", 100);
+        Transaction small = transaction("t1", "acc-1", 30);
+        Transaction other = transaction("t2", "acc-2", 90);
+        Transaction large = transaction("t3", "acc-1", 80);
+        Transaction fits = transaction("t4", "acc-1", 70);
+
+        process(small, other, large, fits);
+
+        assertThat(verified).containsExactlyInAnyOrder(small, other, fits);
+        assertThat(rejected).containsExactly(large);
+    }
+
+    @Test
+    void keepsDebitsUntilTheAccountIsReloaded() {
+        account("acc-1", 100);
+        process(transaction("t1", "acc-1", 60));
+        Transaction sameSnapshot = transaction("t2", "acc-1", 60);
+        process(sameSnapshot);
+
+        account("acc-1", 100);
+        Transaction newSnapshot = transaction("t3", "acc-1", 60);
+        process(newSnapshot);
+
+        assertThat(rejected).containsExactly(sameSnapshot);
+        assertThat(verified).extracting(Transaction::getId).containsExactly("t1", "t3");
+    }
+
+    @Test
+    void opensLedgersOnlyForApprovedDebits() {
+        account("acc-1", 100);
+
+        process(transaction("t1", "acc-1", 500));
+
+        assertThat(rejected).hasSize(1);
+        assertThat(processor.ledgerCount()).isZero();
+    }
+
+    @Test
+    void forgetsLedgersOnceTheirSnapshotCanNoLongerBeServed() throws InterruptedException {
+        cacheProperties.setTtl(Duration.ofMillis(5));
+        cacheProperties.setJitter(0);
+        properties.setShards(1);
+        account("acc-1", 100);
+        account("acc-2", 100);
+        process(transaction("t1", "acc-1", 60));
+        assertThat(processor.ledgerCount()).isEqualTo(1);
+
+        Thread.sleep(20);
+        process(transaction("t2", "acc-2", 500));
+
+        assertThat(processor.ledgerCount()).isZero();
+    }
+
+    private void process(Transaction... transactions) {
+        if (processor == null) {
+            processor = new ShardedProcessor(requester, validator, verifier, accountValidator,
+                new TransactionBatchOptimizer(), properties, cacheProperties, batchSizeControllers);
+        }
+        when(requester.getUnverified(anyInt())).thenReturn(List.of(transactions));
+        processor.process();
+    }
+
+    private void account(String number, int balance) {
+        Account account = new Account(number, "owner", false, BigDecimal.valueOf(balance));
+        when(accountValidator.findAccount(number)).thenReturn(account);
+    }
+
+    private static Transaction transaction(String id, String senderAccount, int amount) {
+        LocalDateTime now = LocalDateTime.now();
+        return new Transaction(id, BigDecimal.valueOf(amount), "sender", "recipient", senderAccount,
+            "recipient-account", "mac", now, now.plusSeconds(30));
+    }
+}
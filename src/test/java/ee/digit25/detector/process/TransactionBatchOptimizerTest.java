@@ -0,0 +1,57 @@
+package ee.digit25.detector.process;
+
+import ee.digit25.detector.domain.transaction.external.api.Transaction;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TransactionBatchOptimizerTest {
+
+    private final TransactionBatchOptimizer optimizer = new TransactionBatchOptimizer();
+
+    @Test
+    void keepsEveryAccountInOneShardInFetchOrder() {
+        List<Transaction> transactions = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            transactions.add(transaction("t" + i, "acc-" + (i % 13)));
+        }
+
+        List<List<Transaction>> partitions = optimizer.shardBySenderAccount(transactions, 4);
+
+        assertThat(partitions).hasSize(4);
+        assertThat(partitions.stream().mapToInt(List::size).sum()).isEqualTo(200);
+        for (int account = 0; account < 13; account++) {
+            String senderAccount = "acc-" + account;
+            List<Transaction> expected = transactions.stream()
+                .filter(transaction -> transaction.getSenderAccount().equals(senderAccount))
+                .toList();
+            assertThat(partitions)
+                .filteredOn(partition -> partition.stream().anyMatch(t -> t.getSenderAccount().equals(senderAccount)))
+                .singleElement()
+                .satisfies(partition -> assertThat(partition)
+                    .filteredOn(t -> t.getSenderAccount().equals(senderAccount))
+                    .containsExactlyElementsOf(expected));
+        }
+    }
+
+    @Test
+    void sendsTransactionsWithoutAccountToOneShard() {
+        List<List<Transaction>> partitions = optimizer.shardBySenderAccount(
+            List.of(transaction("t1", null), transaction("t2", null)), 3);
+
+        assertThat(partitions).filteredOn(partition -> !partition.isEmpty()).singleElement()
+            .satisfies(partition -> assertThat(partition).extracting(Transaction::getId).containsExactly("t1", "t2"));
+    }
+
+    private static Transaction transaction(String id, String senderAccount) {
+        Transaction transaction = new Transaction();
+        transaction.setId(id);
+        transaction.setAmount(BigDecimal.TEN);
+        transaction.setSenderAccount(senderAccount);
+        return transaction;
+    }
+}
@@ -0,0 +1,98 @@
+package ee.digit25.detector.validation;
+
+import ee.digit25.detector.domain.account.AccountValidator;
+import ee.digit25.detector.domain.device.DeviceValidator;
+import ee.digit25.detector.domain.person.PersonValidator;
+import ee.digit25.detector.domain.transaction.TransactionValidator;
+import ee.digit25.detector.domain.transaction.external.api.Transaction;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class HeuristicShadowEvaluatorTest {
+
+    private static final String HEURISTIC = "approves-everything";
+
+    private final TransactionValidator validator = mock(TransactionValidator.class);
+    private final HeuristicProperties properties = new HeuristicProperties();
+    private final Transaction transaction = new Transaction();
+    private HeuristicShadowEvaluator evaluator;
+
+    @BeforeEach
+    void gated() {
+        properties.setMode(HeuristicProperties.Mode.GATED);
+        properties.setMinSamples(8);
+        properties.setWindow(10);
+        properties.setPrecisionThreshold(0.75);
+        properties.setAuditRate(0);
+        evaluator = new HeuristicShadowEvaluator(validator, mock(PersonValidator.class),
+            mock(AccountValidator.class), mock(DeviceValidator.class), properties, List.of(new ApprovesEverything()));
+    }
+
+    @Test
+    void validatesUntilEnoughApprovalsWereChecked() {
+        when(validator.isLegitimate(any(Transaction.class))).thenReturn(true);
+
+        for (int i = 0; i < 8; i++) {
+            evaluator.isLegitimate(transaction);
+        }
+        assertThat(evaluator.isTrusted(HEURISTIC)).isTrue();
+
+        // The gate is open, so this one is approved without validation
+        when(validator.isLegitimate(any(Transaction.class))).thenReturn(false);
+        assertThat(evaluator.isLegitimate(transaction)).isTrue();
+        verify(validator, times(8)).isLegitimate(transaction);
+    }
+
+    @Test
+    void keepsImpreciseHeuristicGated() {
+        when(validator.isLegitimate(any(Transaction.class))).thenReturn(true, false);
+
+        for (int i = 0; i < 9; i++) {
+            evaluator.isLegitimate(transaction);
+        }
+
+        assertThat(evaluator.isTrusted(HEURISTIC)).isFalse();
+        verify(validator, times(9)).isLegitimate(transaction);
+    }
+
+    @Test
+    void halvesApprovalsWithoutMovingPrecision() {
+        when(validator.isLegitimate(any(Transaction.class)))
+            .thenReturn(false, false, true, true, true, true, true, true, true, true);
+        properties.setPrecisionThreshold(0.5);
+        properties.setMinSamples(20);
+
+        for (int i = 0; i < 10; i++) {
+            evaluator.isLegitimate(transaction);
+        }
+
+        // 8 of 10 approvals were right; the window was full, so the pair was halved to 4 of 5
+        assertThat(evaluator.precision(HEURISTIC)).isEqualTo(0.8);
+    }
+
+    private static final class ApprovesEverything implements TransactionHeuristic {
+
+        @Override
+        public String name() {
+            return HEURISTIC;
+        }
+
+        @Override
+        public boolean isLikelyLegitimate(Transaction transaction) {
+            return true;
+        }
+
+        @Override
+        public void record(Transaction transaction, boolean legitimate) {
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package ee.digit25.detector.validation;
+
+import ee.digit25.detector.domain.transaction.external.api.Transaction;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SmartTransactionValidatorTest {
+
+    private final SmartTransactionValidator heuristic = new SmartTransactionValidator(new HeuristicProperties());
+
+    @Test
+    void trustsPartiesOfRepeatedLegitimateTransactions() {
+        for (int i = 0; i < 5; i++) {
+            heuristic.record(transaction("5000.00"), true);
+        }
+
+        // Far from the usual amount, but both parties are trusted
+        assertThat(heuristic.isLikelyLegitimate(transaction("10.00"))).isTrue();
+    }
+
+    @Test
+    void learnsNothingFromRejectedTransactions() {
+        heuristic.record(transaction("10.00"), true);
+        for (int i = 0; i < 10; i++) {
+            heuristic.record(transaction("5000.00"), false);
+        }
+
+        // Still judged against the one legitimate amount, not trusted by the rejected attempts
+        assertThat(heuristic.isLikelyLegitimate(transaction("5000.00"))).isFalse();
+    }
+
+    private static Transaction transaction(String amount) {
+        Transaction transaction = new Transaction();
+        transaction.setSender("sender");
+        transaction.setRecipient("recipient");
+        transaction.setAmount(new BigDecimal(amount));
+        return transaction;
+    }
+}